@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer.japex;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+import com.sun.xml.stream.buffer.XMLStreamBuffer;
+import com.sun.xml.stream.buffer.stax.FlushPolicy;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferProcessor;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a buffer to an {@link XMLStreamWriter} over an output stream that
+ * counts the writes and flushes, as a socket would see them.
+ *
+ * <p>
+ * The flush policy is set with the <code>xsb.flushPolicy</code> parameter:
+ * <code>never</code>, <code>topLevel</code> (the default), <code>atEnd</code>,
+ * <code>items:N</code> or <code>characters:N</code>. The number of writes and
+ * flushes of the last run are reported as the <code>xsb.writes</code> and
+ * <code>xsb.flushes</code> parameters of the test case.
+ */
+public class StAXWriterProcessorDriver extends JapexDriverBase {
+    XMLStreamBuffer _buffer;
+    StreamWriterBufferProcessor _processor;
+    XMLOutputFactory _outputFactory;
+    CountingOutputStream _out;
+
+    public void initializeDriver() {
+        _processor = new StreamWriterBufferProcessor();
+        _outputFactory = XMLOutputFactory.newInstance();
+        _out = new CountingOutputStream();
+    }
+
+    public void prepare(TestCase testCase) {
+        String xmlFile = TestCaseUtil.getXmlFile(testCase);
+
+        try {
+            _buffer = TestCaseUtil.createXMLStreamBufferFromStream(new FileInputStream(xmlFile));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void run(TestCase testCase) {
+        try {
+            _out.reset();
+            XMLStreamWriter writer = _outputFactory.createXMLStreamWriter(_out, "UTF-8");
+            _processor.setXMLStreamBuffer(_buffer, false);
+            _processor.setFlushPolicy(getFlushPolicy());
+            _processor.process(writer);
+            writer.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void finish(TestCase testCase) {
+        testCase.setLongParam("xsb.writes", _out.writes);
+        testCase.setLongParam("xsb.flushes", _out.flushes);
+    }
+
+    private FlushPolicy getFlushPolicy() {
+        String policy = hasParam("xsb.flushPolicy") ? getParam("xsb.flushPolicy") : "topLevel";
+        if (policy.equals("never")) {
+            return FlushPolicy.NEVER;
+        } else if (policy.equals("topLevel")) {
+            return FlushPolicy.TOP_LEVEL;
+        } else if (policy.equals("atEnd")) {
+            return FlushPolicy.AT_END;
+        } else if (policy.startsWith("items:")) {
+            return FlushPolicy.everyItems(Integer.parseInt(policy.substring(6)));
+        } else if (policy.startsWith("characters:")) {
+            return FlushPolicy.everyCharacters(Integer.parseInt(policy.substring(11)));
+        }
+        throw new RuntimeException("Unknown flush policy " + policy);
+    }
+
+    /**
+     * An output stream that discards the bytes, counting the writes and flushes.
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long bytes;
+        long writes;
+        long flushes;
+
+        void reset() {
+            bytes = writes = flushes = 0;
+        }
+
+        public void write(int b) {
+            bytes++;
+            writes++;
+        }
+
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            writes++;
+        }
+
+        public void flush() {
+            flushes++;
+        }
+    }
+}
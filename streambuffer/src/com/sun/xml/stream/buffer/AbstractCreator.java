@@ -47,6 +47,72 @@ package com.sun.xml.stream.buffer;
 public class AbstractCreator extends AbstractCreatorProcessor {
     
     protected MutableXMLStreamBuffer _buffer;
+
+    /**
+     * The pool new fragments are taken from, may be null.
+     */
+    private FragmentPool _fragmentPool;
+
+    /**
+     * The size up to which the arrays of appended fragments grow.
+     */
+    private int _maxArraySize;
+
+    /**
+     * True if Latin-1 text is stored packed, two characters per char.
+     */
+    private boolean _compactCharacters;
+
+    /**
+     * True if adjacent text is coalesced, in which case the text is held in
+     * <code>_pendingText</code> until an information item other than
+     * text is stored.
+     */
+    private boolean _coalescing;
+    private char[] _pendingText;
+    private int _pendingTextLength;
+
+    /**
+     * True if text that is whitespace only is not stored.
+     */
+    private boolean _stripWhitespace;
+
+    /**
+     * The number of entries used of the fragments before the current
+     * fragments, and the number and total length of the copied character
+     * arrays, for the statistics of the buffer.
+     */
+    private long _structureUsed;
+    private long _structureStringsUsed;
+    private long _contentCharactersUsed;
+    private long _contentObjectsUsed;
+    private int _charArrayCopyCount;
+    private long _charArrayCopyLength;
+
+    /**
+     * True if the buffer has a budget, in which case the limits of the
+     * budget are checked against the usage of the buffer.
+     */
+    private boolean _budgeted;
+    private long _maxBytes;
+    private int _maxDepth;
+    private int _maxAttributes;
+    private int _maxTextLength;
+    private int _maxFragments;
+
+    private long _bytes;
+    private int _fragments;
+    private int _depth;
+    private int _attributes;
+    private long _textLength;
+
+    /**
+     * The size of the smallest subtree recorded in the skip index, and
+     * the stack of positions of the items of the elements that are open.
+     */
+    private int _skipIndexThreshold;
+    private long[] _elementPositions;
+    private int _elementPositionsPtr;
     
     public void setXMLStreamBuffer(MutableXMLStreamBuffer buffer) {
         if (buffer == null) {
@@ -73,6 +139,15 @@ public class AbstractCreator extends AbstractCreatorProcessor {
 
     protected final void setBuffer(MutableXMLStreamBuffer buffer) {
         _buffer = buffer;
+        _buffer.allocateFragments();
+        _fragmentPool = _buffer.getFragmentPool();
+        _maxArraySize = _buffer.getMaxArraySize();
+        _symbolTable = _buffer._symbolTable;
+        _compactCharacters = _buffer.isCompactCharactersEnabled();
+        _stripWhitespace = _buffer.isStripWhitespaceEnabled();
+        // Text must be complete to know if it is whitespace only
+        _coalescing = _buffer.isCoalescingEnabled() || _stripWhitespace;
+        _pendingTextLength = 0;
         
         _currentStructureFragment = _buffer.getStructure();
         _structure = _currentStructureFragment.getArray();
@@ -89,6 +164,36 @@ public class AbstractCreator extends AbstractCreatorProcessor {
         _currentContentObjectFragment = _buffer.getContentObjects();
         _contentObjects = _currentContentObjectFragment.getArray();
         _contentObjectsPtr = 0;
+
+        _structureUsed = _structureStringsUsed = _contentCharactersUsed = _contentObjectsUsed = 0;
+        _charArrayCopyCount = 0;
+        _charArrayCopyLength = 0;
+        updateStatistics();
+
+        _skipIndexThreshold = _buffer.getSkipIndexThreshold();
+        // A new index is taken since marks share the index of a previous creation
+        _skipIndex = (_skipIndexThreshold == 0) ? null : new SkipIndex();
+        _buffer._skipIndex = _skipIndex;
+        _elementPositionsPtr = 0;
+
+        final BufferBudget budget = _buffer.getBudget();
+        _budgeted = (budget != null);
+        if (_budgeted) {
+            _maxBytes = budget.getMaxBytes();
+            _maxDepth = budget.getMaxDepth();
+            _maxAttributes = budget.getMaxAttributes();
+            _maxTextLength = budget.getMaxTextLength();
+            _maxFragments = budget.getMaxFragments();
+
+            final BufferStatistics statistics = _buffer.getStatistics();
+            _bytes = statistics.getRetainedBytes();
+            _fragments = statistics.getStructure().getFragmentCount() +
+                    statistics.getStructureStrings().getFragmentCount() +
+                    statistics.getContentCharacters().getFragmentCount() +
+                    statistics.getContentObjects().getFragmentCount();
+            _depth = _attributes = 0;
+            _textLength = 0;
+        }
     }
     
     protected final void setHasInternedStrings(boolean hasInternedStrings) {
@@ -102,56 +207,321 @@ public class AbstractCreator extends AbstractCreatorProcessor {
         }
     }
     
+    /**
+     * Store the end of an element or document, and update the statistics
+     * and skip index of the buffer.
+     */
+    protected final void storeEnd() {
+        if (_pendingTextLength > 0) {
+            flushText();
+        }
+        if (_budgeted) {
+            if (_depth > 0) {
+                _depth--;
+            }
+            _textLength = 0;
+        }
+        storeStructure(T_END);
+        updateStatistics();
+        if (_skipIndex != null && _elementPositionsPtr > 0) {
+            indexElement(_elementPositions[--_elementPositionsPtr]);
+        }
+    }
+
+    /**
+     * Record the ends of an element that has ended in the skip index,
+     * if the element is large enough.
+     */
+    private void indexElement(long position) {
+        final long structureEnd = _currentStructureFragment.getOffset() + _structurePtr;
+        if (structureEnd - position >= _skipIndexThreshold) {
+            _skipIndex.add(position, structureEnd,
+                    _currentStructureStringFragment.getOffset() + _structureStringsPtr,
+                    _currentContentCharactersBufferFragment.getOffset() + _contentCharactersBufferPtr,
+                    _currentContentObjectFragment.getOffset() + _contentObjectsPtr);
+        }
+    }
+
+    private void pushElementPosition() {
+        if (_elementPositions == null) {
+            _elementPositions = new long[16];
+        } else if (_elementPositionsPtr == _elementPositions.length) {
+            final long[] elementPositions = new long[_elementPositionsPtr * 2];
+            System.arraycopy(_elementPositions, 0, elementPositions, 0, _elementPositionsPtr);
+            _elementPositions = elementPositions;
+        }
+        _elementPositions[_elementPositionsPtr++] = _currentStructureFragment.getOffset() + _structurePtr;
+    }
+
+    /**
+     * Store the item of an element or attribute, which is followed by
+     * its names.
+     */
+    protected final void storeNameItem(int item) {
+        if (_pendingTextLength > 0) {
+            flushText();
+        }
+        if (_budgeted) {
+            checkNameItem(item);
+        }
+        if (_skipIndex != null && (item & TYPE_MASK) == T_ELEMENT) {
+            pushElementPosition();
+        }
+        storeStructure(item);
+    }
+
+    /**
+     * Store the item of a processing instruction or unexpanded entity
+     * reference, which ends the preceding text.
+     */
+    protected final void storeMarkupItem(int item) {
+        if (_pendingTextLength > 0) {
+            flushText();
+        }
+        if (_budgeted) {
+            _textLength = 0;
+        }
+        storeStructure(item);
+    }
+
+    private void checkNameItem(int item) {
+        _textLength = 0;
+        if ((item & TYPE_MASK) == T_ELEMENT) {
+            _attributes = 0;
+            if (++_depth > _maxDepth) {
+                throw new BufferBudgetExceededException(BufferBudget.Limit.DEPTH, _maxDepth);
+            }
+        } else if (++_attributes > _maxAttributes) {
+            throw new BufferBudgetExceededException(BufferBudget.Limit.ATTRIBUTES, _maxAttributes);
+        }
+    }
+
+    /**
+     * Check the budget for character content, which is part of the
+     * preceding text if it is text.
+     */
+    private void checkCharacters(int type, int length) {
+        final long textLength;
+        if ((type & TYPE_MASK) == T_TEXT) {
+            textLength = (_textLength += length);
+        } else {
+            // A comment ends the preceding text
+            textLength = length;
+            _textLength = 0;
+        }
+        if (textLength > _maxTextLength) {
+            throw new BufferBudgetExceededException(BufferBudget.Limit.TEXT_LENGTH, _maxTextLength);
+        }
+    }
+
+    /**
+     * Check the budget for memory allocated for the buffer.
+     */
+    private void checkAllocation(long bytes, boolean fragment) {
+        if (fragment && ++_fragments > _maxFragments) {
+            throw new BufferBudgetExceededException(BufferBudget.Limit.FRAGMENTS, _maxFragments);
+        }
+        _bytes += bytes;
+        if (_bytes > _maxBytes) {
+            throw new BufferBudgetExceededException(BufferBudget.Limit.TOTAL_BYTES, _maxBytes);
+        }
+    }
+
+    /**
+     * Update the statistics of the buffer with the entries used so far.
+     */
+    private void updateStatistics() {
+        final MutableXMLStreamBuffer buffer = _buffer;
+        buffer._structureUsed = _structureUsed + _structurePtr;
+        buffer._structureStringsUsed = _structureStringsUsed + _structureStringsPtr;
+        buffer._contentCharactersUsed = _contentCharactersUsed + _contentCharactersBufferPtr;
+        buffer._contentObjectsUsed = _contentObjectsUsed + _contentObjectsPtr;
+        buffer._charArrayCopyCount = _charArrayCopyCount;
+        buffer._charArrayCopyLength = _charArrayCopyLength;
+    }
+
     protected final void resizeStructure() {
+        _structureUsed += _structurePtr;
         _structurePtr = 0;
         if (_currentStructureFragment.getNext() != null) {
             _currentStructureFragment = _currentStructureFragment.getNext();
             _structure = _currentStructureFragment.getArray();
         } else {
-            _structure = new byte[_structure.length];
+            final int length = nextArraySize(_structure.length);
+            if (_budgeted) {
+                checkAllocation(length, true);
+            }
+            _structure = (_fragmentPool != null) ?
+                    _fragmentPool.allocateBytes(length) : new byte[length];
             _currentStructureFragment = new FragmentedArray(_structure, _currentStructureFragment);
         }
     }
     
     protected final void storeStructureString(String s) {
+        if (_symbolTable != null) {
+            storeSymbol(s);
+            return;
+        }
+
         _structureStrings[_structureStringsPtr++] = s;
         if (_structureStringsPtr == _structureStrings.length) {
             resizeStructureStrings();
         }
     }
     
+    /**
+     * Store the index of a String in the symbol table in the structure.
+     */
+    private void storeSymbol(String s) {
+        int index = _symbolTable.add(s);
+        while (index >= 0x80) {
+            storeStructure((index & 0x7F) | 0x80);
+            index >>>= 7;
+        }
+        storeStructure(index);
+    }
+
     protected final void resizeStructureStrings() {
+        _structureStringsUsed += _structureStringsPtr;
         _structureStringsPtr = 0;
         if (_currentStructureStringFragment.getNext() != null) {
             _currentStructureStringFragment = _currentStructureStringFragment.getNext();
             _structureStrings = _currentStructureStringFragment.getArray();
         } else {
-            _structureStrings = new String[_structureStrings.length];
+            final int length = nextArraySize(_structureStrings.length);
+            if (_budgeted) {
+                checkAllocation((long)BufferCompactor.REFERENCE_SIZE * length, true);
+            }
+            _structureStrings = (_fragmentPool != null) ?
+                    _fragmentPool.allocateStrings(length) : new String[length];
             _currentStructureStringFragment = new FragmentedArray(_structureStrings, _currentStructureStringFragment);
         }
     }
     
     protected final void storeContentString(String s) {
+        if (_budgeted) {
+            checkAllocation(2L * s.length(), false);
+        }
         storeContentObject(s);
     }
     
+    /**
+     * Store the item and String of character content.
+     */
+    protected final void storeContentString(int type, String s) {
+        if (_budgeted) {
+            checkCharacters(type, s.length());
+        }
+        if (_coalescing) {
+            if (type == T_TEXT_AS_STRING) {
+                final int length = s.length();
+                s.getChars(0, length, ensurePendingText(length), _pendingTextLength);
+                _pendingTextLength += length;
+                return;
+            }
+            if (_pendingTextLength > 0) {
+                flushText();
+            }
+        }
+        storeStructure(type);
+        storeContentString(s);
+    }
+
+    /**
+     * Store the item and object of content.
+     */
+    protected final void storeContentObject(int type, Object o) {
+        if (_pendingTextLength > 0) {
+            flushText();
+        }
+        storeStructure(type);
+        storeContentObject(o);
+    }
+
     protected final void storeContentCharacters(int type, char[] ch, int start, int length) {        
+        if (_budgeted) {
+            checkCharacters(type, length);
+        }
+        if (_coalescing) {
+            if (type == T_TEXT_AS_CHAR_ARRAY) {
+                System.arraycopy(ch, start, ensurePendingText(length), _pendingTextLength, length);
+                _pendingTextLength += length;
+                return;
+            }
+            if (_pendingTextLength > 0) {
+                flushText();
+            }
+        }
+        storeCharacters(type, ch, start, length);
+    }
+
+    /**
+     * Get the array holding the pending text, which has room for
+     * <code>length</code> more characters.
+     */
+    private char[] ensurePendingText(int length) {
+        final int required = _pendingTextLength + length;
+        if (_pendingText == null || required > _pendingText.length) {
+            final char[] pendingText = new char[Math.max(required, (_pendingText == null) ? 256 : _pendingText.length * 2)];
+            if (_pendingTextLength > 0) {
+                System.arraycopy(_pendingText, 0, pendingText, 0, _pendingTextLength);
+            }
+            _pendingText = pendingText;
+        }
+        return _pendingText;
+    }
+
+    /**
+     * Store the text held while coalescing adjacent text.
+     *
+     * <p>
+     * Creators must call this method before storing an information item
+     * other than text without using the methods of this class that store
+     * items, so that the text is stored first.
+     */
+    protected final void flushText() {
+        final int length = _pendingTextLength;
+        if (length > 0) {
+            _pendingTextLength = 0;
+            if (_stripWhitespace && isWhitespace(_pendingText, 0, length)) {
+                return;
+            }
+            storeCharacters(T_TEXT_AS_CHAR_ARRAY, _pendingText, 0, length);
+        }
+    }
+
+    private void storeCharacters(int type, char[] ch, int start, int length) {
+        // The item of characters stored in the buffer of characters
+        int arrayType = type;
+        if (type == T_TEXT_AS_CHAR_ARRAY && length < CHAR_ARRAY_LENGTH_MEDIUM_SIZE) {
+            if (isWhitespace(ch, start, length)) {
+                if (_compactCharacters) {
+                    storeContentLatin1(T_TEXT_AS_WHITESPACE_LATIN1_SMALL, ch, start, length);
+                    return;
+                }
+                arrayType = T_TEXT_AS_WHITESPACE;
+            } else if (_compactCharacters && isLatin1(ch, start, length)) {
+                storeContentLatin1(T_TEXT_AS_LATIN1_SMALL, ch, start, length);
+                return;
+            }
+        }
+
         if (_contentCharactersBufferPtr + length >= _contentCharactersBuffer.length) {
             if (length >= 512) {
                 storeStructure(type | CONTENT_TYPE_CHAR_ARRAY_COPY);
                 storeContentCharactersCopy(ch, start, length);
                 return;
             }
-            resizeContentCharacters();            
+            resizeContentCharacters(length);
         }
 
         if (length < CHAR_ARRAY_LENGTH_SMALL_SIZE) {
-            storeStructure(type);
+            storeStructure(arrayType);
             storeStructure(length);
             System.arraycopy(ch, start, _contentCharactersBuffer, _contentCharactersBufferPtr, length);
             _contentCharactersBufferPtr += length;
         } else if (length < CHAR_ARRAY_LENGTH_MEDIUM_SIZE) {
-            storeStructure(type | CHAR_ARRAY_LENGTH_MEDIUM);
+            storeStructure(arrayType | CHAR_ARRAY_LENGTH_MEDIUM);
             storeStructure(length >> 8);
             storeStructure(length & 255);
             System.arraycopy(ch, start, _contentCharactersBuffer, _contentCharactersBufferPtr, length);
@@ -162,22 +532,112 @@ public class AbstractCreator extends AbstractCreatorProcessor {
         }
     }
     
+    private static boolean isWhitespace(char[] ch, int start, int length) {
+        final int end = start + length;
+        for (int i = start; i < end; i++) {
+            final char c = ch[i];
+            if (c != 0x20 && c != 0x9 && c != 0xD && c != 0xA) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLatin1(char[] ch, int start, int length) {
+        final int end = start + length;
+        for (int i = start; i < end; i++) {
+            if (ch[i] > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store Latin-1 text, packing two characters in each char.
+     *
+     * @param item
+     * The item of small text, either {@link #T_TEXT_AS_LATIN1_SMALL}
+     * or {@link #T_TEXT_AS_WHITESPACE_LATIN1_SMALL}.
+     */
+    private void storeContentLatin1(int item, char[] ch, int start, int length) {
+        final int packedLength = (length + 1) >> 1;
+        if (_contentCharactersBufferPtr + packedLength >= _contentCharactersBuffer.length) {
+            resizeContentCharacters(packedLength);
+        }
+
+        if (length < CHAR_ARRAY_LENGTH_SMALL_SIZE) {
+            storeStructure(item);
+            storeStructure(length);
+        } else {
+            storeStructure(item | CHAR_ARRAY_LENGTH_MEDIUM);
+            storeStructure(length >> 8);
+            storeStructure(length & 255);
+        }
+
+        final char[] packed = _contentCharactersBuffer;
+        int ptr = _contentCharactersBufferPtr;
+        final int end = start + (length & ~1);
+        for (int i = start; i < end; i += 2) {
+            packed[ptr++] = (char)((ch[i] << 8) | ch[i + 1]);
+        }
+        if ((length & 1) != 0) {
+            packed[ptr++] = (char)(ch[end] << 8);
+        }
+        _contentCharactersBufferPtr = ptr;
+    }
+
     protected final void resizeContentCharacters() {
+        resizeContentCharacters(0);
+    }
+
+    /**
+     * Move to the next fragment of character content, which has room
+     * for more than <code>required</code> characters.
+     */
+    private void resizeContentCharacters(int required) {
+        _contentCharactersUsed += _contentCharactersBufferPtr;
         _contentCharactersBufferPtr = 0;
-        if (_currentContentCharactersBufferFragment.getNext() != null) {
-            _currentContentCharactersBufferFragment = _currentContentCharactersBufferFragment.getNext();
+        final FragmentedArray<char[]> next = _currentContentCharactersBufferFragment.getNext();
+        if (next != null && required < next.getArray().length) {
+            _currentContentCharactersBufferFragment = next;
             _contentCharactersBuffer = _currentContentCharactersBufferFragment.getArray();
         } else {
-            _contentCharactersBuffer = new char[_contentCharactersBuffer.length];
+            int length = Math.max(nextArraySize(_contentCharactersBuffer.length), 1);
+            while (length <= required) {
+                length <<= 1;
+            }
+            if (_budgeted) {
+                checkAllocation(2L * length, true);
+            }
+            _contentCharactersBuffer = (_fragmentPool != null) ?
+                    _fragmentPool.allocateChars(length) : new char[length];
+            // Any smaller fragments that follow are replaced
             _currentContentCharactersBufferFragment = new FragmentedArray(_contentCharactersBuffer, 
                     _currentContentCharactersBufferFragment);
         }
     }
     
+    /**
+     * Get the size of the array of a fragment appended after a fragment
+     * whose array is of a given size.
+     */
+    private int nextArraySize(int length) {
+        if (length >= _maxArraySize) {
+            return length;
+        }
+        return (length > _maxArraySize >> 1) ? _maxArraySize : length << 1;
+    }
+
     protected final void storeContentCharactersCopy(char[] ch, int start, int length) {
+        if (_budgeted) {
+            checkAllocation(2L * length, false);
+        }
         char[] copyOfCh = new char[length];
         System.arraycopy(ch, start, copyOfCh, 0, length);
         storeContentObject(copyOfCh);
+        _charArrayCopyCount++;
+        _charArrayCopyLength += length;
     }
 
     protected final Object peekAtContentObject() {
@@ -192,12 +652,18 @@ public class AbstractCreator extends AbstractCreatorProcessor {
     }
     
     protected final void resizeContentObjects() {
+        _contentObjectsUsed += _contentObjectsPtr;
         _contentObjectsPtr = 0;
         if (_currentContentObjectFragment.getNext() != null) {
             _currentContentObjectFragment = _currentContentObjectFragment.getNext();
             _contentObjects = _currentContentObjectFragment.getArray();
         } else {
-            _contentObjects = new Object[_contentObjects.length];
+            final int length = nextArraySize(_contentObjects.length);
+            if (_budgeted) {
+                checkAllocation((long)BufferCompactor.REFERENCE_SIZE * length, true);
+            }
+            _contentObjects = (_fragmentPool != null) ?
+                    _fragmentPool.allocateObjects(length) : new Object[length];
             _currentContentObjectFragment = new FragmentedArray(_contentObjects, _currentContentObjectFragment);
         }
     }    
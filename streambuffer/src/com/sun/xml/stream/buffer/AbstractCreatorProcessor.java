@@ -74,6 +74,25 @@ public abstract class AbstractCreatorProcessor {
     protected static final int CHAR_ARRAY_LENGTH_MEDIUM       = 1;
     protected static final int CHAR_ARRAY_LENGTH_SMALL_SIZE   = 1 << 8;
     protected static final int CHAR_ARRAY_LENGTH_MEDIUM_SIZE  = 1 << 16;
+
+    /*
+     * Encoding of character content for CONTENT_TYPE_CHAR_ARRAY of T_TEXT,
+     * where the characters are Latin-1 and two are packed in each char
+     * <p>
+     * Third bit of lower nibble is used.
+     */
+    protected static final int CHAR_ARRAY_LATIN1             = 1 << 1;
+
+    /*
+     * Flags on T_TEXT to indicate the text is whitespace only, stored as
+     * character content of CONTENT_TYPE_CHAR_ARRAY, or, for
+     * TEXT_WHITESPACE_LATIN1, as Latin-1 character content
+     * <p>
+     * CHAR_ARRAY_LATIN1 with CONTENT_TYPE_STRING and with
+     * CONTENT_TYPE_CHAR_ARRAY_COPY, which are otherwise not used, are used.
+     */
+    protected static final int TEXT_WHITESPACE               = CONTENT_TYPE_STRING | CHAR_ARRAY_LATIN1;
+    protected static final int TEXT_WHITESPACE_LATIN1        = CONTENT_TYPE_CHAR_ARRAY_COPY | CHAR_ARRAY_LATIN1;
     
     /*
      * Types of value for T_ATTRIBUTE
@@ -130,6 +149,13 @@ public abstract class AbstractCreatorProcessor {
     protected static final int T_TEXT_AS_CHAR_ARRAY_COPY     = T_TEXT | CONTENT_TYPE_CHAR_ARRAY_COPY;
     protected static final int T_TEXT_AS_STRING              = T_TEXT | CONTENT_TYPE_STRING;
     protected static final int T_TEXT_AS_OBJECT              = T_TEXT | CONTENT_TYPE_OBJECT;
+    protected static final int T_TEXT_AS_LATIN1_SMALL        = T_TEXT | CHAR_ARRAY_LATIN1 | CHAR_ARRAY_LENGTH_SMALL;
+    protected static final int T_TEXT_AS_LATIN1_MEDIUM       = T_TEXT | CHAR_ARRAY_LATIN1 | CHAR_ARRAY_LENGTH_MEDIUM;
+    protected static final int T_TEXT_AS_WHITESPACE          = T_TEXT | TEXT_WHITESPACE;
+    protected static final int T_TEXT_AS_WHITESPACE_SMALL    = T_TEXT | TEXT_WHITESPACE | CHAR_ARRAY_LENGTH_SMALL;
+    protected static final int T_TEXT_AS_WHITESPACE_MEDIUM   = T_TEXT | TEXT_WHITESPACE | CHAR_ARRAY_LENGTH_MEDIUM;
+    protected static final int T_TEXT_AS_WHITESPACE_LATIN1_SMALL  = T_TEXT | TEXT_WHITESPACE_LATIN1 | CHAR_ARRAY_LENGTH_SMALL;
+    protected static final int T_TEXT_AS_WHITESPACE_LATIN1_MEDIUM = T_TEXT | TEXT_WHITESPACE_LATIN1 | CHAR_ARRAY_LENGTH_MEDIUM;
     
     protected static final int T_COMMENT_AS_CHAR_ARRAY        = T_COMMENT;
     protected static final int T_COMMENT_AS_CHAR_ARRAY_SMALL  = T_COMMENT | CHAR_ARRAY_LENGTH_SMALL;
@@ -154,4 +180,15 @@ public abstract class AbstractCreatorProcessor {
     protected FragmentedArray<Object[]> _currentContentObjectFragment;
     protected Object[] _contentObjects;
     protected int _contentObjectsPtr;        
+
+    /**
+     * The symbol table of the structure strings, or null if the structure
+     * strings are held by _structureStrings.
+     */
+    SymbolTable _symbolTable;
+
+    /**
+     * The index of the ends of large subtrees, or null if there is no index.
+     */
+    SkipIndex _skipIndex;
 }
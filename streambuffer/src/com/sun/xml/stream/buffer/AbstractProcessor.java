@@ -40,6 +40,8 @@
 
 package com.sun.xml.stream.buffer;
 
+import java.util.Map;
+
 /**
  * Base class for classes that processes {@link XMLStreamBuffer}
  * and produces infoset in API-specific form.
@@ -64,6 +66,10 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
     protected  static final int STATE_COMMENT_AS_STRING             = 15;
     protected  static final int STATE_PROCESSING_INSTRUCTION        = 16;
     protected  static final int STATE_END                           = 17;
+    protected  static final int STATE_TEXT_AS_LATIN1_SMALL          = 18;
+    protected  static final int STATE_TEXT_AS_LATIN1_MEDIUM         = 19;
+    protected  static final int STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL = 20;
+    protected  static final int STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM = 21;
     private  static final int[] _eiiStateTable = new int[256];
     
     protected  static final int STATE_NAMESPACE_ATTRIBUTE           = 1;
@@ -100,6 +106,14 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         _eiiStateTable[T_TEXT_AS_CHAR_ARRAY_COPY] = STATE_TEXT_AS_CHAR_ARRAY_COPY;
         _eiiStateTable[T_TEXT_AS_STRING] = STATE_TEXT_AS_STRING;
         _eiiStateTable[T_TEXT_AS_OBJECT] = STATE_TEXT_AS_OBJECT;
+        _eiiStateTable[T_TEXT_AS_LATIN1_SMALL] = STATE_TEXT_AS_LATIN1_SMALL;
+        _eiiStateTable[T_TEXT_AS_LATIN1_MEDIUM] = STATE_TEXT_AS_LATIN1_MEDIUM;
+        // Whitespace only text is read as any other text unless the
+        // processor checks the item
+        _eiiStateTable[T_TEXT_AS_WHITESPACE_SMALL] = STATE_TEXT_AS_CHAR_ARRAY_SMALL;
+        _eiiStateTable[T_TEXT_AS_WHITESPACE_MEDIUM] = STATE_TEXT_AS_CHAR_ARRAY_MEDIUM;
+        _eiiStateTable[T_TEXT_AS_WHITESPACE_LATIN1_SMALL] = STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL;
+        _eiiStateTable[T_TEXT_AS_WHITESPACE_LATIN1_MEDIUM] = STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM;
         _eiiStateTable[T_COMMENT_AS_CHAR_ARRAY_SMALL] = STATE_COMMENT_AS_CHAR_ARRAY_SMALL;
         _eiiStateTable[T_COMMENT_AS_CHAR_ARRAY_MEDIUM] = STATE_COMMENT_AS_CHAR_ARRAY_MEDIUM;
         _eiiStateTable[T_COMMENT_AS_CHAR_ARRAY_COPY] = STATE_COMMENT_AS_CHAR_ARRAY_COPY;
@@ -131,12 +145,50 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         
     protected boolean _stringInterningFeature = false;
 
+    /**
+     * The symbols of the symbol table of the buffer, or null if the
+     * structure strings are held by _structureStrings.
+     */
+    private String[] _symbols;
+
+    /**
+     * The names of the dictionary the symbol table is pre-seeded with.
+     */
+    private String[] _dictionaryNames;
+
+    /**
+     * The scratch buffer Latin-1 character content is inflated into.
+     */
+    private char[] _latin1Buffer = new char[0];
+
+    /**
+     * The position in the structure of the last item read by
+     * {@link #readEiiState}, maintained if the buffer has a skip index.
+     */
+    private long _itemPosition;
+
+    /**
+     * The position of the last element item recorded by
+     * {@link #recordElementStart}.
+     */
+    private final Position _elementPosition = new Position();
+
     /**
      * Number of remaining XML element trees that should be visible
      * through this {@link AbstractProcessor}.
      */
     protected int _treeCount;
 
+    /**
+     * The pool the processor is borrowed from, if any.
+     */
+    ProcessorPool _pool;
+
+    /**
+     * The thread that borrowed the processor from {@link #_pool}.
+     */
+    Thread _borrower;
+
     /**
      * @deprecated
      *      Use {@link #setBuffer(XMLStreamBuffer, boolean)}
@@ -164,9 +216,71 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         _contentObjects = _currentContentObjectFragment.getArray();
         _contentObjectsPtr = _buffer.getContentObjectsPtr();
         
+        _symbolTable = _buffer._symbolTable;
+        if (_symbolTable != null) {
+            _symbols = _symbolTable.getSymbols();
+            _dictionaryNames = _symbolTable.getDictionaryNames();
+        } else {
+            _symbols = _dictionaryNames = null;
+        }
+
+        _skipIndex = _buffer._skipIndex;
+
         _stringInterningFeature = _buffer.hasInternedStrings();
         _treeCount = _buffer.treeCount;
     }
+
+    /**
+     * Drop the references to the buffer being processed, so that the
+     * processor does not retain the buffer while it is held by a
+     * {@link ProcessorPool}.
+     *
+     * <p>
+     * Subclasses that hold references to the buffer, or any state of the
+     * processing, should override this method and call the super method.
+     */
+    protected void clearBuffer() {
+        _buffer = null;
+
+        _currentStructureFragment = null;
+        _structure = null;
+        _currentStructureStringFragment = null;
+        _structureStrings = null;
+        _currentContentCharactersBufferFragment = null;
+        _contentCharactersBuffer = null;
+        _currentContentObjectFragment = null;
+        _contentObjects = null;
+
+        _symbolTable = null;
+        _symbols = _dictionaryNames = null;
+        _skipIndex = null;
+
+        _elementPosition.clear();
+
+        _treeCount = 0;
+    }
+
+    /**
+     * Return the processor to the {@link ProcessorPool} it is borrowed from.
+     *
+     * <p>
+     * The processor must not be used after it is returned. If the processor
+     * is not borrowed from a pool, or has already been returned, this
+     * method does nothing.
+     *
+     * <p>
+     * The processor is only returned by the thread that borrowed it. When
+     * called by another thread this method does nothing, and the processor
+     * is not reused. Otherwise a second call by a previous borrower of the
+     * processor could return the processor while it is used by the thread
+     * that borrowed it since.
+     */
+    protected final void returnToPool() {
+        final ProcessorPool pool = _pool;
+        if (pool != null && _borrower == Thread.currentThread()) {
+            pool.release(this);
+        }
+    }
     
     protected final int peekStructure() {
         if (_structurePtr < _structure.length) {
@@ -185,9 +299,162 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
     }
 
     protected final int readEiiState() {
+        if (_skipIndex != null) {
+            _itemPosition = _currentStructureFragment.getOffset() + _structurePtr;
+        }
         return _eiiStateTable[readStructure()];
     }
 
+    /**
+     * Record the position of the element item that was last read by
+     * {@link #readEiiState}, so that a mark can later be created at the
+     * element using {@link #createElementMark}.
+     *
+     * <p>
+     * This must be called before any property of the element is read.
+     */
+    protected final void recordElementStart() {
+        savePosition(_elementPosition);
+        // The item is always in the current fragment, as the item
+        // read from the next fragment is the first of that fragment
+        _elementPosition.structurePtr--;
+    }
+
+    /**
+     * Create a mark at the element whose position was last recorded by
+     * {@link #recordElementStart}.
+     *
+     * @param inscopeNamespaces
+     * The in-scope namespaces of the element.
+     */
+    protected final XMLStreamBufferMark createElementMark(Map<String,String> inscopeNamespaces) {
+        return new XMLStreamBufferMark(inscopeNamespaces, _buffer, _elementPosition, _symbolTable, _skipIndex);
+    }
+
+    /**
+     * Save the position of the processor in the buffer.
+     *
+     * @param p
+     * The position to save to.
+     */
+    protected final void savePosition(Position p) {
+        p.structureFragment = _currentStructureFragment;
+        p.structurePtr = _structurePtr;
+        p.structureStringsFragment = _currentStructureStringFragment;
+        p.structureStringsPtr = _structureStringsPtr;
+        p.contentCharactersBufferFragment = _currentContentCharactersBufferFragment;
+        p.contentCharactersBufferPtr = _contentCharactersBufferPtr;
+        p.contentObjectsFragment = _currentContentObjectFragment;
+        p.contentObjectsPtr = _contentObjectsPtr;
+    }
+
+    /**
+     * Restore a position of the processor in the buffer previously saved
+     * by {@link #savePosition}.
+     *
+     * @param p
+     * The position to restore.
+     */
+    protected final void restorePosition(Position p) {
+        _currentStructureFragment = p.structureFragment;
+        _structure = _currentStructureFragment.getArray();
+        _structurePtr = p.structurePtr;
+        _currentStructureStringFragment = p.structureStringsFragment;
+        _structureStrings = _currentStructureStringFragment.getArray();
+        _structureStringsPtr = p.structureStringsPtr;
+        _currentContentCharactersBufferFragment = p.contentCharactersBufferFragment;
+        _contentCharactersBuffer = _currentContentCharactersBufferFragment.getArray();
+        _contentCharactersBufferPtr = p.contentCharactersBufferPtr;
+        _currentContentObjectFragment = p.contentObjectsFragment;
+        _contentObjects = _currentContentObjectFragment.getArray();
+        _contentObjectsPtr = p.contentObjectsPtr;
+    }
+
+    /**
+     * Save the state of the processor in the buffer, so that the processor
+     * may later be rewound to the state.
+     *
+     * <p>
+     * In addition to the position of the processor, the state includes the
+     * position of the last item and element read, and the number of
+     * remaining trees.
+     *
+     * @param s
+     * The state to save to.
+     */
+    protected final void saveState(State s) {
+        savePosition(s.position);
+        s.elementPosition.set(_elementPosition);
+        s.itemPosition = _itemPosition;
+        s.treeCount = _treeCount;
+    }
+
+    /**
+     * Restore a state of the processor previously saved by {@link #saveState}.
+     *
+     * @param s
+     * The state to restore.
+     */
+    protected final void restoreState(State s) {
+        restorePosition(s.position);
+        _elementPosition.set(s.elementPosition);
+        _itemPosition = s.itemPosition;
+        _treeCount = s.treeCount;
+    }
+
+    /**
+     * Skip the information items of the element whose item was last read
+     * by {@link #readEiiState}, if the element is recorded in the skip
+     * index of the buffer.
+     *
+     * <p>
+     * If the element is skipped the next item read is the item following
+     * the end of the element.
+     *
+     * @return
+     * <code>true</code> if the element is skipped, otherwise
+     * <code>false</code> and no item is read.
+     */
+    protected final boolean skipElementUsingIndex() {
+        final int slot = (_skipIndex != null) ? _skipIndex.find(_itemPosition) : -1;
+        if (slot < 0) {
+            return false;
+        }
+
+        long position = _skipIndex.getStructureEnd(slot);
+        while (position >= _currentStructureFragment.getOffset() + _structure.length
+                && _currentStructureFragment.getNext() != null) {
+            _currentStructureFragment = _currentStructureFragment.getNext();
+            _structure = _currentStructureFragment.getArray();
+        }
+        _structurePtr = (int)(position - _currentStructureFragment.getOffset());
+
+        position = _skipIndex.getStructureStringsEnd(slot);
+        while (position >= _currentStructureStringFragment.getOffset() + _structureStrings.length
+                && _currentStructureStringFragment.getNext() != null) {
+            _currentStructureStringFragment = _currentStructureStringFragment.getNext();
+            _structureStrings = _currentStructureStringFragment.getArray();
+        }
+        _structureStringsPtr = (int)(position - _currentStructureStringFragment.getOffset());
+
+        position = _skipIndex.getContentCharactersEnd(slot);
+        while (position >= _currentContentCharactersBufferFragment.getOffset() + _contentCharactersBuffer.length
+                && _currentContentCharactersBufferFragment.getNext() != null) {
+            _currentContentCharactersBufferFragment = _currentContentCharactersBufferFragment.getNext();
+            _contentCharactersBuffer = _currentContentCharactersBufferFragment.getArray();
+        }
+        _contentCharactersBufferPtr = (int)(position - _currentContentCharactersBufferFragment.getOffset());
+
+        position = _skipIndex.getContentObjectsEnd(slot);
+        while (position >= _currentContentObjectFragment.getOffset() + _contentObjects.length
+                && _currentContentObjectFragment.getNext() != null) {
+            _currentContentObjectFragment = _currentContentObjectFragment.getNext();
+            _contentObjects = _currentContentObjectFragment.getArray();
+        }
+        _contentObjectsPtr = (int)(position - _currentContentObjectFragment.getOffset());
+        return true;
+    }
+
     protected static int getEIIState(int item) {
         return _eiiStateTable[item];
     }
@@ -212,6 +479,12 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
     }
     
     protected final String readStructureString() {
+        if (_symbols != null) {
+            final int index = readSymbolIndex();
+            return (index < _dictionaryNames.length) ?
+                    _dictionaryNames[index] : _symbols[index - _dictionaryNames.length];
+        }
+
         if (_structureStringsPtr < _structureStrings.length) {
             return _structureStrings[_structureStringsPtr++];
         }
@@ -222,6 +495,48 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         return _structureStrings[0];
     }
     
+    /**
+     * Read the index of a String in the symbol table from the structure.
+     */
+    private int readSymbolIndex() {
+        int b = readStructure();
+        if (b < 0x80) {
+            return b;
+        }
+
+        int index = b & 0x7F;
+        int shift = 7;
+        do {
+            b = readStructure();
+            index |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b >= 0x80);
+        return index;
+    }
+
+    /**
+     * Skip Strings of the structure without reading them.
+     *
+     * @param count
+     * The number of Strings to skip.
+     */
+    protected final void skipStructureStrings(int count) {
+        if (_symbols != null) {
+            // Skip the bytes of each index
+            for (int i = 0; i < count; i++) {
+                while (readStructure() >= 0x80);
+            }
+            return;
+        }
+
+        _structureStringsPtr += count;
+        while (_structureStringsPtr > _structureStrings.length) {
+            _structureStringsPtr -= _structureStrings.length;
+            _currentStructureStringFragment = _currentStructureStringFragment.getNext();
+            _structureStrings = _currentStructureStringFragment.getArray();
+        }
+    }
+
     protected final String readContentString() {
         return (String)readContentObject();
     }
@@ -243,6 +558,45 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         return 0;
     }
     
+    /**
+     * Read Latin-1 character content and inflate it into a scratch buffer
+     * that is reused for each read.
+     *
+     * @param length
+     * The number of characters.
+     * @return
+     * The scratch buffer, holding the characters from index 0.
+     */
+    protected final char[] readContentLatin1(int length) {
+        final int start = readContentCharactersBuffer((length + 1) >> 1);
+        return inflateLatin1(_contentCharactersBuffer, start, length);
+    }
+
+    /**
+     * Inflate packed Latin-1 characters into a scratch buffer that is reused
+     * for each inflation.
+     *
+     * @return
+     * The scratch buffer, holding the characters from index 0.
+     */
+    protected final char[] inflateLatin1(char[] packed, int start, int length) {
+        if (_latin1Buffer.length < length) {
+            _latin1Buffer = new char[Math.max(length, _latin1Buffer.length * 2)];
+        }
+
+        final char[] ch = _latin1Buffer;
+        final int end = length & ~1;
+        for (int i = 0; i < end; i += 2) {
+            final char c = packed[start++];
+            ch[i] = (char)(c >> 8);
+            ch[i + 1] = (char)(c & 0xFF);
+        }
+        if (end < length) {
+            ch[end] = (char)(packed[start] >> 8);
+        }
+        return ch;
+    }
+
     protected final Object readContentObject() {
         if (_contentObjectsPtr < _contentObjects.length) {
             return _contentObjects[_contentObjectsPtr++];
@@ -254,14 +608,47 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
         return _contentObjects[0];
     }
     
+    protected final void skipContentObject() {
+        if (_contentObjectsPtr < _contentObjects.length) {
+            _contentObjectsPtr++;
+            return;
+        }
+
+        _contentObjectsPtr = 1;
+        _currentContentObjectFragment = _currentContentObjectFragment.getNext();
+        _contentObjects = _currentContentObjectFragment.getArray();
+    }
+
     protected final StringBuilder _qNameBuffer = new StringBuilder();
+
+    /**
+     * The qualified names built by {@link #getQName}, created when the
+     * first name is built. The cache is kept when the processor is reused,
+     * for example by a {@link ProcessorPool}.
+     */
+    private QualifiedNameCache _qualifiedNames;
     
     protected final String getQName(String prefix, String localName) {
+        QualifiedNameCache cache = _qualifiedNames;
+        if (cache == null) {
+            _qualifiedNames = cache = new QualifiedNameCache();
+        } else {
+            final String qName = cache.get(prefix, localName, _stringInterningFeature);
+            if (qName != null) {
+                return qName;
+            }
+        }
+
         _qNameBuffer.append(prefix).append(':').append(localName);
-        final String qName = _qNameBuffer.toString();
+        String qName = _qNameBuffer.toString();
         _qNameBuffer.setLength(0);
-        return (_stringInterningFeature) ? qName.intern() : qName;
-    }        
+        if (_stringInterningFeature) {
+            qName = qName.intern();
+        }
+
+        cache.put(prefix, localName, qName, _stringInterningFeature);
+        return qName;
+    }
    
     protected final String getPrefixFromQName(String qName) {
         int pIndex = qName.indexOf(':');
@@ -271,4 +658,72 @@ public abstract class AbstractProcessor extends AbstractCreatorProcessor {
             return (pIndex != -1) ? qName.substring(0,pIndex) : "";
         }
     }
+
+    /**
+     * A position of a processor in the four streams of a buffer.
+     *
+     * @see AbstractProcessor#savePosition
+     * @see AbstractProcessor#restorePosition
+     */
+    protected static final class Position {
+        FragmentedArray<byte[]> structureFragment;
+        int structurePtr;
+        FragmentedArray<String[]> structureStringsFragment;
+        int structureStringsPtr;
+        FragmentedArray<char[]> contentCharactersBufferFragment;
+        int contentCharactersBufferPtr;
+        FragmentedArray<Object[]> contentObjectsFragment;
+        int contentObjectsPtr;
+
+        public Position() {
+        }
+
+        /**
+         * Set to another position.
+         */
+        public void set(Position p) {
+            structureFragment = p.structureFragment;
+            structurePtr = p.structurePtr;
+            structureStringsFragment = p.structureStringsFragment;
+            structureStringsPtr = p.structureStringsPtr;
+            contentCharactersBufferFragment = p.contentCharactersBufferFragment;
+            contentCharactersBufferPtr = p.contentCharactersBufferPtr;
+            contentObjectsFragment = p.contentObjectsFragment;
+            contentObjectsPtr = p.contentObjectsPtr;
+        }
+
+        /**
+         * Drop the references to the fragments of the buffer.
+         */
+        public void clear() {
+            structureFragment = null;
+            structureStringsFragment = null;
+            contentCharactersBufferFragment = null;
+            contentObjectsFragment = null;
+        }
+    }
+
+    /**
+     * A state of a processor in a buffer.
+     *
+     * @see AbstractProcessor#saveState
+     * @see AbstractProcessor#restoreState
+     */
+    protected static final class State {
+        final Position position = new Position();
+        final Position elementPosition = new Position();
+        long itemPosition;
+        int treeCount;
+
+        public State() {
+        }
+
+        /**
+         * Drop the references to the fragments of the buffer.
+         */
+        public void clear() {
+            position.clear();
+            elementPosition.clear();
+        }
+    }
 }
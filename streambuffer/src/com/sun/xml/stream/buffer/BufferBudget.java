@@ -0,0 +1,195 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * Limits on the memory and shape of the XML infoset that may be stored
+ * in a {@link MutableXMLStreamBuffer}.
+ *
+ * <p>
+ * A budget is set on a buffer using {@link MutableXMLStreamBuffer#setBudget}.
+ * Creators of the buffer check the budget as information items are stored,
+ * and throw a {@link BufferBudgetExceededException} as soon as a limit is
+ * exceeded, so that an oversized or hostile XML infoset is rejected before
+ * it exhausts the Java heap. Memory is checked when fragments, copies of
+ * large character content and content Strings are stored.
+ *
+ * <p>
+ * All limits are unlimited unless set. The limits are read when the creation
+ * of a buffer starts, so a budget may be shared by many buffers.
+ */
+public final class BufferBudget {
+
+    /**
+     * The limits of a budget.
+     */
+    public enum Limit {
+        /**
+         * The estimated memory retained by the buffer, in bytes.
+         */
+        TOTAL_BYTES,
+        /**
+         * The depth of nested elements.
+         */
+        DEPTH,
+        /**
+         * The number of attributes of an element.
+         */
+        ATTRIBUTES,
+        /**
+         * The length of text between markup, or of a comment.
+         */
+        TEXT_LENGTH,
+        /**
+         * The total number of fragments of the buffer.
+         */
+        FRAGMENTS
+    }
+
+    private long _maxBytes = Long.MAX_VALUE;
+    private int _maxDepth = Integer.MAX_VALUE;
+    private int _maxAttributes = Integer.MAX_VALUE;
+    private int _maxTextLength = Integer.MAX_VALUE;
+    private int _maxFragments = Integer.MAX_VALUE;
+
+    /**
+     * Set the maximum estimated memory retained by the buffer.
+     *
+     * <p>
+     * Memory is estimated in the same way as by {@link BufferStatistics}, with
+     * content Strings estimated at two bytes for a character.
+     *
+     * @param maxBytes
+     * The maximum memory in bytes.
+     * @throws IllegalArgumentException
+     * If the <code>maxBytes</code> argument is less than <code>1</code>.
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        _maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return _maxBytes;
+    }
+
+    /**
+     * Set the maximum depth of nested elements.
+     *
+     * @param maxDepth
+     * The maximum depth, where the outermost element is at depth <code>1</code>.
+     * @throws IllegalArgumentException
+     * If the <code>maxDepth</code> argument is less than <code>1</code>.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive");
+        }
+        _maxDepth = maxDepth;
+    }
+
+    public int getMaxDepth() {
+        return _maxDepth;
+    }
+
+    /**
+     * Set the maximum number of attributes of an element, not including
+     * namespace attributes.
+     *
+     * @param maxAttributes
+     * The maximum number of attributes.
+     * @throws IllegalArgumentException
+     * If the <code>maxAttributes</code> argument is negative.
+     */
+    public void setMaxAttributes(int maxAttributes) {
+        if (maxAttributes < 0) {
+            throw new IllegalArgumentException("maxAttributes cannot be negative");
+        }
+        _maxAttributes = maxAttributes;
+    }
+
+    public int getMaxAttributes() {
+        return _maxAttributes;
+    }
+
+    /**
+     * Set the maximum length of text between markup, which may be reported
+     * to the creator in more than one chunk, or of a comment.
+     *
+     * @param maxTextLength
+     * The maximum number of characters.
+     * @throws IllegalArgumentException
+     * If the <code>maxTextLength</code> argument is negative.
+     */
+    public void setMaxTextLength(int maxTextLength) {
+        if (maxTextLength < 0) {
+            throw new IllegalArgumentException("maxTextLength cannot be negative");
+        }
+        _maxTextLength = maxTextLength;
+    }
+
+    public int getMaxTextLength() {
+        return _maxTextLength;
+    }
+
+    /**
+     * Set the maximum total number of fragments of the four internal
+     * representations of the buffer.
+     *
+     * @param maxFragments
+     * The maximum number of fragments.
+     * @throws IllegalArgumentException
+     * If the <code>maxFragments</code> argument is less than <code>4</code>,
+     * the number of fragments of a buffer that is not empty.
+     */
+    public void setMaxFragments(int maxFragments) {
+        if (maxFragments < 4) {
+            throw new IllegalArgumentException("maxFragments must be at least 4");
+        }
+        _maxFragments = maxFragments;
+    }
+
+    public int getMaxFragments() {
+        return _maxFragments;
+    }
+}
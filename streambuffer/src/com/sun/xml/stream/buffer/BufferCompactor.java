@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * Coalesces the fragments of each of the internal representations of a
+ * {@link MutableXMLStreamBuffer} into one array of the exact size.
+ *
+ * <p>
+ * The information items of the buffer are walked twice, first to count
+ * the entries used of each of the internal representations, and then to
+ * copy the entries. Character content is copied by walking the information
+ * items since a fragment of character content may not be used up to its end.
+ *
+ * <p>
+ * The counting walk alone provides the statistics of buffers, such as marks,
+ * whose entries used are not maintained by a creator.
+ */
+final class BufferCompactor extends AbstractProcessor {
+    /**
+     * The assumed size of a reference, assuming compressed references.
+     */
+    static final int REFERENCE_SIZE = 4;
+
+    private byte[] _compactStructure;
+    private String[] _compactStructureStrings;
+    private char[] _compactContentCharacters;
+    private Object[] _compactContentObjects;
+
+    private int _structureCount;
+    private int _structureStringsCount;
+    private int _contentCharactersCount;
+    private int _contentObjectsCount;
+    private int _charArrayCopyCount;
+    private long _charArrayCopyLength;
+
+    /**
+     * The skip index of the compacted buffer, and the size of the smallest
+     * subtree recorded in the index, if the buffer has a skip index.
+     */
+    private SkipIndex _compactSkipIndex;
+    private int _skipIndexThreshold;
+
+    BufferCompactor(XMLStreamBuffer buffer) {
+        _buffer = buffer;
+    }
+
+    /**
+     * Compact the buffer.
+     *
+     * @return The number of bytes reclaimed.
+     */
+    long compact() {
+        final MutableXMLStreamBuffer buffer = (MutableXMLStreamBuffer)_buffer;
+        final long retained = buffer.getStatistics().getRetainedBytes();
+
+        // Count the entries used
+        walk(false);
+
+        // One entry more than used terminates the structure and is
+        // required by the reading of character content
+        _compactStructure = new byte[_structureCount + 1];
+        _compactStructureStrings = new String[Math.max(_structureStringsCount, 1)];
+        _compactContentCharacters = new char[_contentCharactersCount + 1];
+        _compactContentObjects = new Object[Math.max(_contentObjectsCount, 1)];
+
+        // The positions of the skip index change
+        if (buffer._skipIndex != null && buffer.getSkipIndexThreshold() > 0) {
+            _compactSkipIndex = new SkipIndex();
+            _skipIndexThreshold = buffer.getSkipIndexThreshold();
+        }
+        walk(true);
+        _compactStructure[_structureCount] = (byte)T_END;
+        if (_symbolTable != null) {
+            _symbolTable.trim();
+        }
+
+        buffer.setCompactFragments(
+                new FragmentedArray<byte[]>(_compactStructure),
+                new FragmentedArray<String[]>(_compactStructureStrings),
+                new FragmentedArray<char[]>(_compactContentCharacters),
+                new FragmentedArray<Object[]>(_compactContentObjects));
+        buffer._skipIndex = _compactSkipIndex;
+        buffer._structureUsed = _structureCount;
+        buffer._structureStringsUsed = _structureStringsCount;
+        buffer._contentCharactersUsed = _contentCharactersCount;
+        buffer._contentObjectsUsed = _contentObjectsCount;
+        buffer._charArrayCopyCount = _charArrayCopyCount;
+        buffer._charArrayCopyLength = _charArrayCopyLength;
+        return retained - buffer.getStatistics().getRetainedBytes();
+    }
+
+    /**
+     * Get the statistics of the buffer from the entries counted by walking
+     * the information items.
+     */
+    BufferStatistics getStatistics() {
+        walk(false);
+        return new BufferStatistics(_buffer, _structureCount, _structureStringsCount,
+                _contentCharactersCount, _contentObjectsCount,
+                _charArrayCopyCount, _charArrayCopyLength);
+    }
+
+    private void walk(boolean copy) {
+        setBuffer(_buffer, _buffer.isFragment());
+        _structureCount = _structureStringsCount = _contentCharactersCount = _contentObjectsCount = 0;
+        _charArrayCopyCount = 0;
+        _charArrayCopyLength = 0;
+
+        final boolean index = copy && _compactSkipIndex != null;
+        long[] elementPositions = null;
+        int elementDepth = 0;
+
+        final int treeCount = Math.max(_treeCount, 1);
+        int trees = 0;
+        int depth = 0;
+        do {
+            final int item = readItem(copy);
+            switch (item & TYPE_MASK) {
+                case T_DOCUMENT:
+                    depth++;
+                    break;
+                case T_ELEMENT:
+                    if (index) {
+                        if (elementPositions == null) {
+                            elementPositions = new long[16];
+                        } else if (elementDepth == elementPositions.length) {
+                            final long[] a = new long[elementDepth * 2];
+                            System.arraycopy(elementPositions, 0, a, 0, elementDepth);
+                            elementPositions = a;
+                        }
+                        elementPositions[elementDepth++] = _structureCount - 1;
+                    }
+                    readStrings(getNameStringCount(item), copy);
+                    depth++;
+                    break;
+                case T_ATTRIBUTE:
+                    readStrings(getNameStringCount(item) + 1, copy);
+                    readObject(copy);
+                    break;
+                case T_NAMESPACE_ATTRIBUTE:
+                    readStrings(Integer.bitCount(item & (FLAG_PREFIX | FLAG_URI)), copy);
+                    break;
+                case T_TEXT:
+                case T_COMMENT:
+                    final int content = item & ~(TYPE_MASK | CHAR_ARRAY_LENGTH_MEDIUM);
+                    if ((item & CONTENT_TYPE_OBJECT) == CONTENT_TYPE_CHAR_ARRAY ||
+                            content == TEXT_WHITESPACE || content == TEXT_WHITESPACE_LATIN1) {
+                        final int length = ((item & CHAR_ARRAY_LENGTH_MEDIUM) == 0) ?
+                                readItem(copy) : (readItem(copy) << 8) | readItem(copy);
+                        readCharacters((content == CHAR_ARRAY_LATIN1 || content == TEXT_WHITESPACE_LATIN1) ?
+                                (length + 1) >> 1 : length, copy);
+                    } else {
+                        readObject(copy);
+                    }
+                    break;
+                case T_PROCESSING_INSTRUCTION:
+                    readStrings(2, copy);
+                    break;
+                case T_UNEXPANDED_ENTITY_REFERENCE:
+                    readObject(copy);
+                    break;
+                case T_END:
+                    if (index && elementDepth > 0) {
+                        final long position = elementPositions[--elementDepth];
+                        if (_structureCount - position >= _skipIndexThreshold) {
+                            _compactSkipIndex.add(position, _structureCount, _structureStringsCount,
+                                    _contentCharactersCount, _contentObjectsCount);
+                        }
+                    }
+                    if (--depth == 0) {
+                        trees++;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid state " + item);
+            }
+        } while (depth > 0 || trees < treeCount);
+    }
+
+    private static int getNameStringCount(int item) {
+        return 1 + Integer.bitCount(item & (FLAG_PREFIX | FLAG_URI | FLAG_QUALIFIED_NAME));
+    }
+
+    private int readItem(boolean copy) {
+        final int b = readStructure();
+        if (copy) {
+            _compactStructure[_structureCount] = (byte)b;
+        }
+        _structureCount++;
+        return b;
+    }
+
+    private void readStrings(int count, boolean copy) {
+        if (_symbolTable != null) {
+            // Copy the indexes of the Strings in the symbol table
+            for (int i = 0; i < count; i++) {
+                while (readItem(copy) >= 0x80) {
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final String s = readStructureString();
+            if (copy) {
+                _compactStructureStrings[_structureStringsCount] = s;
+            }
+            _structureStringsCount++;
+        }
+    }
+
+    private void readCharacters(int length, boolean copy) {
+        final int start = readContentCharactersBuffer(length);
+        if (copy) {
+            System.arraycopy(_contentCharactersBuffer, start,
+                    _compactContentCharacters, _contentCharactersCount, length);
+        }
+        _contentCharactersCount += length;
+    }
+
+    private void readObject(boolean copy) {
+        final Object o = readContentObject();
+        if (copy) {
+            _compactContentObjects[_contentObjectsCount] = o;
+        }
+        _contentObjectsCount++;
+        if (o instanceof char[]) {
+            _charArrayCopyCount++;
+            _charArrayCopyLength += ((char[])o).length;
+        }
+    }
+}
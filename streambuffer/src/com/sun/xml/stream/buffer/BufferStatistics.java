@@ -0,0 +1,274 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import java.lang.reflect.Array;
+
+/**
+ * Statistics of the memory used by a {@link XMLStreamBuffer}.
+ *
+ * <p>
+ * A buffer holds its information items in four internal representations,
+ * each of which is a {@link FragmentedArray}: the structure, the structure
+ * strings, the character content and the content objects. The statistics
+ * report, for each internal representation, the number of fragments, the
+ * number of entries used and not used, and an estimate of the memory retained.
+ *
+ * <p>
+ * The entries used are maintained as the buffer is created, so obtaining
+ * the statistics of a {@link MutableXMLStreamBuffer} takes time proportional
+ * to the number of fragments of the buffer only. Entries are accounted
+ * for up to the last end of an element or document that has been created.
+ * The entries used by a {@link XMLStreamBufferMark} are counted by walking
+ * the marked subtree.
+ *
+ * <p>
+ * Memory is estimated assuming two bytes for a character and four bytes
+ * for a reference. The memory of arrays shared with other buffers, such as
+ * with a mark, and of objects other than copied character arrays, such as
+ * Strings, is not estimated separately.
+ *
+ * @see XMLStreamBuffer#getStatistics()
+ */
+public final class BufferStatistics {
+
+    /**
+     * Statistics of one of the internal representations of a buffer.
+     */
+    public static final class FragmentStatistics {
+        private final int _fragmentCount;
+        private final long _usedEntries;
+        private final long _slackEntries;
+        private final long _retainedBytes;
+
+        FragmentStatistics(FragmentedArray<?> fragments, long usedEntries, int entrySize) {
+            int fragmentCount = 0;
+            long entries = 0;
+            for (FragmentedArray<?> f = fragments; f != null; f = f.getNext()) {
+                fragmentCount++;
+                entries += Array.getLength(f.getArray());
+            }
+            _fragmentCount = fragmentCount;
+            _usedEntries = usedEntries;
+            _slackEntries = Math.max(entries - usedEntries, 0);
+            _retainedBytes = entries * entrySize;
+        }
+
+        /**
+         * Get the number of fragments.
+         *
+         * @return The number of fragments.
+         */
+        public int getFragmentCount() {
+            return _fragmentCount;
+        }
+
+        /**
+         * Get the number of entries used by information items.
+         *
+         * @return The number of entries used.
+         */
+        public long getUsedEntries() {
+            return _usedEntries;
+        }
+
+        /**
+         * Get the number of entries of the fragments that are not used.
+         *
+         * @return The number of entries not used.
+         */
+        public long getSlackEntries() {
+            return _slackEntries;
+        }
+
+        /**
+         * Get the estimated memory retained by the arrays of the fragments.
+         *
+         * @return The memory in bytes.
+         */
+        public long getRetainedBytes() {
+            return _retainedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "fragments=" + _fragmentCount + ", used=" + _usedEntries +
+                    ", slack=" + _slackEntries + ", retainedBytes=" + _retainedBytes;
+        }
+    }
+
+    private final FragmentStatistics _structure;
+    private final FragmentStatistics _structureStrings;
+    private final FragmentStatistics _contentCharacters;
+    private final FragmentStatistics _contentObjects;
+    private final int _charArrayCopyCount;
+    private final long _charArrayCopyLength;
+    private final long _symbolTableBytes;
+    private final long _storedBytes;
+
+    BufferStatistics(XMLStreamBuffer buffer, long structureUsed, long structureStringsUsed,
+            long contentCharactersUsed, long contentObjectsUsed,
+            int charArrayCopyCount, long charArrayCopyLength) {
+        _structure = new FragmentStatistics(buffer._structure, structureUsed, 1);
+        _structureStrings = new FragmentStatistics(buffer._structureStrings, structureStringsUsed,
+                BufferCompactor.REFERENCE_SIZE);
+        _contentCharacters = new FragmentStatistics(buffer._contentCharactersBuffer, contentCharactersUsed, 2);
+        _contentObjects = new FragmentStatistics(buffer._contentObjects, contentObjectsUsed,
+                BufferCompactor.REFERENCE_SIZE);
+        _charArrayCopyCount = charArrayCopyCount;
+        _charArrayCopyLength = charArrayCopyLength;
+        _symbolTableBytes = (buffer._symbolTable != null) ? buffer._symbolTable.getRetainedBytes() : 0;
+        // Stored fragments are compact, with one entry more than used
+        _storedBytes = (buffer._storedFragments != null) ?
+                structureUsed + 1 + 2 * (contentCharactersUsed + 1) : 0;
+    }
+
+    /**
+     * Get the statistics of the structure.
+     *
+     * <p>
+     * If the buffer is held by a {@link FragmentStorage} the fragments are
+     * those retained on the Java heap.
+     *
+     * @return The statistics of the structure.
+     */
+    public FragmentStatistics getStructure() {
+        return _structure;
+    }
+
+    /**
+     * Get the statistics of the structure strings.
+     *
+     * @return The statistics of the structure strings.
+     */
+    public FragmentStatistics getStructureStrings() {
+        return _structureStrings;
+    }
+
+    /**
+     * Get the statistics of the character content.
+     *
+     * <p>
+     * If the buffer is held by a {@link FragmentStorage} the fragments are
+     * those retained on the Java heap.
+     *
+     * @return The statistics of the character content.
+     */
+    public FragmentStatistics getContentCharacters() {
+        return _contentCharacters;
+    }
+
+    /**
+     * Get the statistics of the content objects.
+     *
+     * @return The statistics of the content objects.
+     */
+    public FragmentStatistics getContentObjects() {
+        return _contentObjects;
+    }
+
+    /**
+     * Get the number of content objects, which include the copied
+     * character arrays.
+     *
+     * @return The number of content objects.
+     */
+    public long getContentObjectCount() {
+        return _contentObjects.getUsedEntries();
+    }
+
+    /**
+     * Get the number of character arrays that hold a copy of large
+     * character content.
+     *
+     * @return The number of copied character arrays.
+     */
+    public int getCharArrayCopyCount() {
+        return _charArrayCopyCount;
+    }
+
+    /**
+     * Get the total length of the character arrays that hold a copy of
+     * large character content.
+     *
+     * @return The number of characters.
+     */
+    public long getCharArrayCopyLength() {
+        return _charArrayCopyLength;
+    }
+
+    /**
+     * Get the estimated memory held by a {@link FragmentStorage}, which
+     * may be outside of the Java heap.
+     *
+     * @return The memory in bytes, <code>0</code> if the buffer is not
+     * held by a storage.
+     */
+    public long getStoredBytes() {
+        return _storedBytes;
+    }
+
+    /**
+     * Get the estimated memory retained on the Java heap by the buffer.
+     *
+     * <p>
+     * This is the memory retained by the arrays of the fragments, the copied
+     * character arrays and the symbol table, if any.
+     *
+     * @return The memory in bytes.
+     */
+    public long getRetainedBytes() {
+        return _structure.getRetainedBytes() + _structureStrings.getRetainedBytes() +
+                _contentCharacters.getRetainedBytes() + _contentObjects.getRetainedBytes() +
+                2 * _charArrayCopyLength + _symbolTableBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferStatistics[structure=[" + _structure +
+                "], structureStrings=[" + _structureStrings +
+                "], contentCharacters=[" + _contentCharacters +
+                "], contentObjects=[" + _contentObjects +
+                "], charArrayCopies=" + _charArrayCopyCount +
+                ", retainedBytes=" + getRetainedBytes() +
+                ", storedBytes=" + _storedBytes + "]";
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link FragmentStorage} that stores structure and character content
+ * in direct {@link ByteBuffer}s, outside of the Java heap.
+ *
+ * <p>
+ * Segments are allocated sequentially from arenas, direct ByteBuffers
+ * of a fixed size. An arena is reused once all the segments allocated from
+ * it have been released, so releasing the buffers of a cache returns
+ * the direct memory they occupy for reuse without waiting for garbage
+ * collection. One arena, whose segments have all been released, is
+ * retained for reuse, others are left to be garbage collected. Segments
+ * larger than the arena size are allocated in arenas of their own.
+ *
+ * <p>
+ * A DirectFragmentStorage may be shared by buffers created and processed
+ * concurrently.
+ */
+public final class DirectFragmentStorage implements FragmentStorage {
+    /**
+     * The default size of an arena.
+     */
+    public static final int DEFAULT_ARENA_SIZE = 1 << 20;
+
+    private final int _arenaSize;
+
+    /**
+     * The arena segments are allocated from.
+     */
+    private Arena _arena;
+
+    /**
+     * An arena whose segments have all been released.
+     */
+    private Arena _spareArena;
+
+    private long _allocatedBytes;
+
+    /**
+     * Create a new DirectFragmentStorage using the
+     * {@link DirectFragmentStorage#DEFAULT_ARENA_SIZE}.
+     */
+    public DirectFragmentStorage() {
+        this(DEFAULT_ARENA_SIZE);
+    }
+
+    /**
+     * Create a new DirectFragmentStorage.
+     *
+     * @param arenaSize
+     * The size, in bytes, of the direct ByteBuffers segments are
+     * allocated from.
+     * @throws IllegalArgumentException
+     * If the <code>arenaSize</code> argument is less than <code>1</code>.
+     */
+    public DirectFragmentStorage(int arenaSize) {
+        if (arenaSize < 1) {
+            throw new IllegalArgumentException("arenaSize must be positive");
+        }
+        _arenaSize = arenaSize;
+    }
+
+    /**
+     * Get the size of an arena.
+     *
+     * @return The size, in bytes, of an arena.
+     */
+    public int getArenaSize() {
+        return _arenaSize;
+    }
+
+    /**
+     * Get the number of bytes of direct memory allocated by the storage
+     * and not left to be garbage collected.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getAllocatedBytes() {
+        return _allocatedBytes;
+    }
+
+    public Segment store(byte[] structure, char[] contentCharacters) {
+        final long size = structure.length + 2L * contentCharacters.length;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment too large: " + size);
+        }
+
+        final Arena arena;
+        final int offset;
+        synchronized (this) {
+            arena = getArena((int)size);
+            offset = arena.position;
+            arena.position += (int)size;
+            arena.segments++;
+        }
+
+        final ByteBuffer b = arena.buffer.duplicate();
+        b.position(offset);
+        b.put(structure);
+        b.asCharBuffer().put(contentCharacters);
+        return new DirectSegment(arena, offset, structure.length, contentCharacters.length);
+    }
+
+    private Arena getArena(int size) {
+        if (size > _arenaSize) {
+            _allocatedBytes += size;
+            return new Arena(size);
+        }
+
+        if (_arena != null && _arena.buffer.capacity() - _arena.position >= size) {
+            return _arena;
+        }
+
+        final Arena full = _arena;
+        if (_spareArena != null) {
+            _arena = _spareArena;
+            _spareArena = null;
+        } else {
+            _allocatedBytes += _arenaSize;
+            _arena = new Arena(_arenaSize);
+        }
+        if (full != null && full.segments == 0) {
+            retire(full);
+        }
+        return _arena;
+    }
+
+    private synchronized void release(DirectSegment segment) {
+        if (segment.released) {
+            return;
+        }
+        segment.released = true;
+
+        final Arena arena = segment.arena;
+        if (--arena.segments > 0) {
+            return;
+        }
+
+        if (arena == _arena) {
+            arena.position = 0;
+        } else {
+            retire(arena);
+        }
+    }
+
+    private void retire(Arena arena) {
+        if (_spareArena == null && arena.buffer.capacity() == _arenaSize) {
+            arena.position = 0;
+            _spareArena = arena;
+        } else {
+            _allocatedBytes -= arena.buffer.capacity();
+        }
+    }
+
+    /**
+     * A direct ByteBuffer segments are allocated from.
+     */
+    private static final class Arena {
+        final ByteBuffer buffer;
+        int position;
+        int segments;
+
+        Arena(int size) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    private final class DirectSegment implements Segment {
+        final Arena arena;
+        final int offset;
+        final int structureLength;
+        final int contentCharactersLength;
+        boolean released;
+
+        DirectSegment(Arena arena, int offset, int structureLength, int contentCharactersLength) {
+            this.arena = arena;
+            this.offset = offset;
+            this.structureLength = structureLength;
+            this.contentCharactersLength = contentCharactersLength;
+        }
+
+        public byte[] getStructure() {
+            final byte[] structure = new byte[structureLength];
+            final ByteBuffer b = arena.buffer.duplicate();
+            b.position(offset);
+            b.get(structure);
+            return structure;
+        }
+
+        public char[] getContentCharacters() {
+            final char[] contentCharacters = new char[contentCharactersLength];
+            final ByteBuffer b = arena.buffer.duplicate();
+            b.position(offset + structureLength);
+            b.asCharBuffer().get(contentCharacters);
+            return contentCharacters;
+        }
+
+        public void release() {
+            DirectFragmentStorage.this.release(this);
+        }
+    }
+}
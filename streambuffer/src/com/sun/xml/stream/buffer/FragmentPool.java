@@ -0,0 +1,320 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A pool of the arrays that back the fragments of a {@link MutableXMLStreamBuffer}.
+ *
+ * <p>
+ * When a buffer that is configured with a pool needs a new fragment it is
+ * taken from the pool, and when the buffer is reset (see {@link MutableXMLStreamBuffer#reset})
+ * or released (see {@link MutableXMLStreamBuffer#release}) its fragments are given
+ * back to the pool. This avoids most of the allocation of fragments when many
+ * buffers of similar size are created one after another.
+ *
+ * <p>
+ * Each thread has a small magazine of arrays for each array type and size,
+ * which is used without any synchronization. Magazines that overflow or run dry
+ * exchange arrays with a depot that is shared by all threads and that is
+ * accessed without locks. The memory retained by the depot is capped.
+ *
+ * <p>
+ * Only arrays whose length is a power of two are pooled. Arrays of other lengths
+ * are allocated and dropped as if no pool was used.
+ *
+ * <p>
+ * A FragmentPool may be shared by any number of buffers and threads.
+ */
+public final class FragmentPool {
+    /**
+     * The default number of arrays of each type and size held by a thread.
+     */
+    public static final int DEFAULT_MAGAZINE_SIZE = 8;
+
+    private static final int BYTES   = 0;
+    private static final int STRINGS = 1;
+    private static final int CHARS   = 2;
+    private static final int OBJECTS = 3;
+    private static final int KINDS   = 4;
+
+    /*
+     * Size classes, one for each power of two up to 2^30
+     */
+    private static final int SIZE_CLASSES = 31;
+
+    /*
+     * Number of slots of the shared depot for each array type and size
+     */
+    private static final int DEPOT_SLOTS = 64;
+
+    private final long _maxPooledBytes;
+
+    private final int _magazineSize;
+
+    private final AtomicLong _pooledBytes = new AtomicLong();
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Object>> _depots =
+            new AtomicReferenceArray<AtomicReferenceArray<Object>>(KINDS * SIZE_CLASSES);
+
+    private final ThreadLocal<Magazine[]> _magazines = new ThreadLocal<Magazine[]>() {
+        @Override
+        protected Magazine[] initialValue() {
+            return new Magazine[KINDS * SIZE_CLASSES];
+        }
+    };
+
+    /**
+     * Create a new FragmentPool using the
+     * {@link FragmentPool#DEFAULT_MAGAZINE_SIZE}.
+     *
+     * @param maxPooledBytes
+     * The maximum amount of memory, in bytes, of the arrays held by the
+     * shared depot of the pool.
+     */
+    public FragmentPool(long maxPooledBytes) {
+        this(maxPooledBytes, DEFAULT_MAGAZINE_SIZE);
+    }
+
+    /**
+     * Create a new FragmentPool.
+     *
+     * @param maxPooledBytes
+     * The maximum amount of memory, in bytes, of the arrays held by the
+     * shared depot of the pool.
+     * @param magazineSize
+     * The number of arrays of each type and size held by each thread,
+     * <code>0</code> to use the shared depot only.
+     */
+    public FragmentPool(long maxPooledBytes, int magazineSize) {
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("maxPooledBytes cannot be negative");
+        }
+        if (magazineSize < 0) {
+            throw new IllegalArgumentException("magazineSize cannot be negative");
+        }
+        _maxPooledBytes = maxPooledBytes;
+        _magazineSize = magazineSize;
+    }
+
+    /**
+     * Get the maximum amount of memory held by the shared depot of the pool.
+     *
+     * @return The maximum amount of memory in bytes.
+     */
+    public long getMaxPooledBytes() {
+        return _maxPooledBytes;
+    }
+
+    /**
+     * Get the amount of memory currently held by the shared depot of the pool.
+     *
+     * <p>
+     * Arrays held in the magazines of threads are not included.
+     *
+     * @return The amount of memory in bytes.
+     */
+    public long getPooledBytes() {
+        return _pooledBytes.get();
+    }
+
+    byte[] allocateBytes(int length) {
+        final byte[] a = (byte[])allocate(BYTES, length);
+        return (a != null) ? a : new byte[length];
+    }
+
+    String[] allocateStrings(int length) {
+        final String[] a = (String[])allocate(STRINGS, length);
+        return (a != null) ? a : new String[length];
+    }
+
+    char[] allocateChars(int length) {
+        final char[] a = (char[])allocate(CHARS, length);
+        return (a != null) ? a : new char[length];
+    }
+
+    Object[] allocateObjects(int length) {
+        final Object[] a = (Object[])allocate(OBJECTS, length);
+        return (a != null) ? a : new Object[length];
+    }
+
+    void release(byte[] a) {
+        release(BYTES, a, a.length);
+    }
+
+    void release(String[] a) {
+        Arrays.fill(a, null);
+        release(STRINGS, a, a.length);
+    }
+
+    void release(char[] a) {
+        release(CHARS, a, a.length);
+    }
+
+    void release(Object[] a) {
+        Arrays.fill(a, null);
+        release(OBJECTS, a, a.length);
+    }
+
+    private Object allocate(int kind, int length) {
+        final int sizeClass = getSizeClass(length);
+        if (sizeClass < 0) {
+            return null;
+        }
+        final int index = kind * SIZE_CLASSES + sizeClass;
+
+        if (_magazineSize > 0) {
+            final Magazine magazine = _magazines.get()[index];
+            if (magazine != null && magazine.count > 0) {
+                final Object a = magazine.arrays[--magazine.count];
+                magazine.arrays[magazine.count] = null;
+                return a;
+            }
+        }
+
+        return pollDepot(index, length, kind);
+    }
+
+    private void release(int kind, Object a, int length) {
+        final int sizeClass = getSizeClass(length);
+        if (sizeClass < 0) {
+            return;
+        }
+        final int index = kind * SIZE_CLASSES + sizeClass;
+
+        if (_magazineSize > 0) {
+            final Magazine[] magazines = _magazines.get();
+            Magazine magazine = magazines[index];
+            if (magazine == null) {
+                magazine = magazines[index] = new Magazine(_magazineSize);
+            }
+
+            if (magazine.count == _magazineSize) {
+                // Move half of a full magazine to the depot
+                while (magazine.count > _magazineSize / 2) {
+                    final Object o = magazine.arrays[--magazine.count];
+                    magazine.arrays[magazine.count] = null;
+                    offerDepot(index, o, length, kind);
+                }
+            }
+            magazine.arrays[magazine.count++] = a;
+        } else {
+            offerDepot(index, a, length, kind);
+        }
+    }
+
+    private Object pollDepot(int index, int length, int kind) {
+        final AtomicReferenceArray<Object> depot = _depots.get(index);
+        if (depot == null) {
+            return null;
+        }
+
+        for (int i = 0; i < DEPOT_SLOTS; i++) {
+            final Object a = depot.get(i);
+            if (a != null && depot.compareAndSet(i, a, null)) {
+                _pooledBytes.addAndGet(-getSizeInBytes(kind, length));
+                return a;
+            }
+        }
+        return null;
+    }
+
+    private void offerDepot(int index, Object a, int length, int kind) {
+        final long size = getSizeInBytes(kind, length);
+        // Reserve the memory before the array is visible to other threads
+        long pooledBytes;
+        do {
+            pooledBytes = _pooledBytes.get();
+            if (pooledBytes + size > _maxPooledBytes) {
+                return;
+            }
+        } while (!_pooledBytes.compareAndSet(pooledBytes, pooledBytes + size));
+
+        AtomicReferenceArray<Object> depot = _depots.get(index);
+        if (depot == null) {
+            _depots.compareAndSet(index, null, new AtomicReferenceArray<Object>(DEPOT_SLOTS));
+            depot = _depots.get(index);
+        }
+
+        for (int i = 0; i < DEPOT_SLOTS; i++) {
+            if (depot.get(i) == null && depot.compareAndSet(i, null, a)) {
+                return;
+            }
+        }
+
+        // Depot is full, the array is dropped
+        _pooledBytes.addAndGet(-size);
+    }
+
+    private static int getSizeClass(int length) {
+        if (length <= 0 || (length & (length - 1)) != 0) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(length);
+    }
+
+    private static long getSizeInBytes(int kind, int length) {
+        switch (kind) {
+            case BYTES:
+                return length;
+            case CHARS:
+                return 2L * length;
+            default:
+                // Assume compressed references
+                return 4L * length;
+        }
+    }
+
+    /**
+     * The arrays of one type and size held by a thread.
+     */
+    private static final class Magazine {
+        final Object[] arrays;
+        int count;
+
+        Magazine(int size) {
+            arrays = new Object[size];
+        }
+    }
+}
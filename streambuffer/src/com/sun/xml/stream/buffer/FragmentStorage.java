@@ -0,0 +1,102 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * Storage, that may be outside of the Java heap, for the structure and
+ * character content of compacted buffers.
+ *
+ * <p>
+ * A {@link MutableXMLStreamBuffer} that is compacted using
+ * {@link MutableXMLStreamBuffer#compact(FragmentStorage)} keeps its
+ * structure and character content in the storage. Processors of the buffer
+ * obtain a copy of the structure and character content on the Java heap
+ * when they start processing, so a buffer that is retained for a long time
+ * does not retain large arrays on the Java heap.
+ *
+ * @see DirectFragmentStorage
+ */
+public interface FragmentStorage {
+
+    /**
+     * Store the structure and character content of a buffer.
+     *
+     * @param structure
+     * The structure.
+     * @param contentCharacters
+     * The character content.
+     * @return
+     * The segment of the storage that holds the structure and
+     * character content.
+     */
+    Segment store(byte[] structure, char[] contentCharacters);
+
+    /**
+     * The structure and character content of a buffer held by a
+     * {@link FragmentStorage}.
+     *
+     * <p>
+     * The methods that copy the structure and character content may be
+     * invoked concurrently.
+     */
+    interface Segment {
+
+        /**
+         * Get a copy of the structure.
+         *
+         * @return The structure.
+         */
+        byte[] getStructure();
+
+        /**
+         * Get a copy of the character content.
+         *
+         * @return The character content.
+         */
+        char[] getContentCharacters();
+
+        /**
+         * Release the segment. The storage it occupies may be reused
+         * for other segments. A segment must not be used after release.
+         */
+        void release();
+    }
+}
@@ -40,10 +40,19 @@
 
 package com.sun.xml.stream.buffer;
 
+import java.lang.reflect.Array;
+
 final class FragmentedArray<T> {
     private T _item;
     private FragmentedArray<T> _next;
     private FragmentedArray<T> _previous;
+
+    /**
+     * The offset of the first entry of the array from the first entry of
+     * the first fragment, which is the sum of the lengths of the arrays
+     * of the previous fragments.
+     */
+    private long _offset;
     
     FragmentedArray(T item) {
         this(item, null);
@@ -54,12 +63,17 @@ final class FragmentedArray<T> {
         if (previous != null) {
             previous._next = this;
             _previous = previous;
+            _offset = previous._offset + Array.getLength(previous._item);
         }
     }
     
     T getArray() {
         return _item;
     }
+
+    long getOffset() {
+        return _offset;
+    }
     
     void setArray(T item) {
         assert(item.getClass().isArray());
@@ -69,6 +69,13 @@ import java.io.InputStream;
  * collected that are required for internally representing an XML infoset.
  * 
  * <p>
+ * The arrays used for internally representing an XML infoset are not allocated
+ * until the MutableXMLStreamBuffer is first created. A MutableXMLStreamBuffer
+ * that will hold a small XML infoset, such as a header block, should be
+ * instantiated using {@link #createWithExpectedSize} so that the arrays start
+ * small and grow on demand.
+ * 
+ * <p>
  * A MutableXMLStreamBuffer is not designed to be created and processed 
  * concurrently. If done so unspecified behaviour may occur.
  */
@@ -78,6 +85,57 @@ public class MutableXMLStreamBuffer extends XMLStreamBuffer {
      * of the XML infoset.
      */
     public static final int DEFAULT_ARRAY_SIZE = 512;
+
+    /**
+     * The array size for the character content used in internal representation 
+     * of the XML infoset.
+     */
+    private static final int CONTENT_CHARACTERS_ARRAY_SIZE = 4096;
+
+    /**
+     * The default maximum array size up to which the arrays of the fragments
+     * appended while creating the XML infoset grow.
+     */
+    public static final int DEFAULT_MAX_ARRAY_SIZE = 65536;
+
+    /**
+     * The minimum array size of the arrays sized from an expected
+     * document size.
+     */
+    private static final int MIN_HINTED_ARRAY_SIZE = 16;
+
+    /*
+     * The arrays of a buffer whose fragments have not yet been allocated,
+     * or have been released, which represent an empty buffer that has not
+     * been created.
+     */
+    private static final byte[] RELEASED_STRUCTURE = { (byte)AbstractCreatorProcessor.T_END };
+    private static final String[] RELEASED_STRUCTURE_STRINGS = new String[0];
+    private static final char[] RELEASED_CONTENT_CHARACTERS = new char[0];
+    private static final Object[] RELEASED_CONTENT_OBJECTS = new Object[0];
+
+    private final int _structureArraySize;
+    private final int _structureStringsArraySize;
+    private final int _contentCharactersArraySize;
+    private final int _contentObjectsArraySize;
+
+    private int _maxArraySize = DEFAULT_MAX_ARRAY_SIZE;
+
+    private boolean _symbolTableEnabled;
+
+    private boolean _compactCharactersEnabled;
+
+    private boolean _coalescingEnabled;
+
+    private boolean _stripWhitespaceEnabled;
+
+    private BufferBudget _budget;
+
+    private int _skipIndexThreshold;
+
+    private final FragmentPool _fragmentPool;
+
+    private boolean _marked;
     
     /**
      * Create a new MutableXMLStreamBuffer using the 
@@ -103,16 +161,372 @@ public class MutableXMLStreamBuffer extends XMLStreamBuffer {
      * of the XML infoset.
      * @throws NegativeArraySizeException
      * If the <code>size</code> argument is less than <code>0</code>.
+     * @throws IllegalArgumentException
+     * If the <code>size</code> argument is <code>0</code>.
      */
     public MutableXMLStreamBuffer(int size) {
-        _structure = new FragmentedArray<byte[]>(new byte[size]);
-        _structureStrings = new FragmentedArray<String[]>(new String[size]);
-        _contentCharactersBuffer = new FragmentedArray<char[]>(new char[4096]);
-        _contentObjects = new FragmentedArray<Object[]>(new Object[size]);
+        this(size, null);
+    }
 
-        // Set the first element of structure array to indicate an empty buffer
-        // that has not been created
-        _structure.getArray()[0] = (byte) AbstractCreatorProcessor.T_END;
+    /**
+     * Create a new MutableXMLStreamBuffer whose fragments are taken from,
+     * and given back to, a {@link FragmentPool}.
+     * 
+     * @param size
+     * The size of the arrays used in the internal representation 
+     * of the XML infoset.
+     * @param pool
+     * The pool of fragments, or <code>null</code> if fragments are not pooled.
+     * @throws NegativeArraySizeException
+     * If the <code>size</code> argument is less than <code>0</code>.
+     * @throws IllegalArgumentException
+     * If the <code>size</code> argument is <code>0</code>.
+     */
+    public MutableXMLStreamBuffer(int size, FragmentPool pool) {
+        this(size, size, CONTENT_CHARACTERS_ARRAY_SIZE, size, pool);
+    }
+
+    /**
+     * Create a new MutableXMLStreamBuffer with a given size for the first
+     * array of each of the internal representations of the XML infoset.
+     * 
+     * @param structureSize
+     * The size of the first array of structure information.
+     * @param structureStringsSize
+     * The size of the first array of structure strings.
+     * @param contentCharactersSize
+     * The size of the first array of character content.
+     * @param contentObjectsSize
+     * The size of the first array of content objects.
+     * @param pool
+     * The pool of fragments, or <code>null</code> if fragments are not pooled.
+     * @throws NegativeArraySizeException
+     * If any of the sizes is less than <code>0</code>.
+     * @throws IllegalArgumentException
+     * If any of the sizes is <code>0</code>.
+     */
+    public MutableXMLStreamBuffer(int structureSize, int structureStringsSize,
+            int contentCharactersSize, int contentObjectsSize, FragmentPool pool) {
+        if (structureSize < 0 || structureStringsSize < 0 ||
+                contentCharactersSize < 0 || contentObjectsSize < 0) {
+            throw new NegativeArraySizeException();
+        }
+        if (structureSize == 0 || structureStringsSize == 0 ||
+                contentCharactersSize == 0 || contentObjectsSize == 0) {
+            throw new IllegalArgumentException("Array sizes must be positive");
+        }
+        _structureArraySize = structureSize;
+        _structureStringsArraySize = structureStringsSize;
+        _contentCharactersArraySize = contentCharactersSize;
+        _contentObjectsArraySize = contentObjectsSize;
+        _fragmentPool = pool;
+
+        // The first fragments are allocated when the buffer is created
+        setReleasedFragments();
+    }
+
+    /**
+     * Create a new MutableXMLStreamBuffer whose first arrays are sized for
+     * a document of an expected size, such as the Content-Length of a
+     * message that is to be buffered.
+     *
+     * <p>
+     * The first arrays are sized such that a document of the expected size
+     * is likely to fit without appending fragments, and such that a small
+     * document does not retain arrays of the default size. The arrays are
+     * never larger than {@link #DEFAULT_MAX_ARRAY_SIZE}.
+     *
+     * @param expectedSize
+     * The expected size, in bytes, of the serialized document. A size that is
+     * unknown, or less than <code>0</code>, results in the default sizes.
+     * @return The MutableXMLStreamBuffer.
+     */
+    public static MutableXMLStreamBuffer createWithExpectedSize(long expectedSize) {
+        return createWithExpectedSize(expectedSize, null);
+    }
+
+    /**
+     * Create a new MutableXMLStreamBuffer whose first arrays are sized for
+     * a document of an expected size, and whose fragments are taken from,
+     * and given back to, a {@link FragmentPool}.
+     *
+     * @param expectedSize
+     * The expected size, in bytes, of the serialized document. A size that is
+     * unknown, or less than <code>0</code>, results in the default sizes.
+     * @param pool
+     * The pool of fragments, or <code>null</code> if fragments are not pooled.
+     * @return The MutableXMLStreamBuffer.
+     * @see #createWithExpectedSize(long)
+     */
+    public static MutableXMLStreamBuffer createWithExpectedSize(long expectedSize, FragmentPool pool) {
+        if (expectedSize < 0) {
+            return new MutableXMLStreamBuffer(DEFAULT_ARRAY_SIZE, pool);
+        }
+
+        // The ratios of the size of each of the internal representations
+        // to the size of typical serialized documents
+        return new MutableXMLStreamBuffer(
+                hintedArraySize(expectedSize / 4),
+                hintedArraySize(expectedSize / 16),
+                hintedArraySize(expectedSize / 2),
+                hintedArraySize(expectedSize / 64),
+                pool);
+    }
+
+    private static int hintedArraySize(long size) {
+        int s = MIN_HINTED_ARRAY_SIZE;
+        while (s < size && s < DEFAULT_MAX_ARRAY_SIZE) {
+            s <<= 1;
+        }
+        return s;
+    }
+
+    /**
+     * Get the pool of fragments used by this buffer.
+     *
+     * @return
+     * The {@link FragmentPool}, or <code>null</code> if fragments are not pooled.
+     */
+    public FragmentPool getFragmentPool() {
+        return _fragmentPool;
+    }
+
+    /**
+     * Set the maximum array size of the fragments appended while creating
+     * the XML infoset.
+     *
+     * <p>
+     * Each fragment appended to an internal representation of the XML infoset
+     * is twice the size of the previous one, up to the maximum array size.
+     * Setting the maximum array size to the size of the first arrays results
+     * in fragments of a fixed size.
+     *
+     * @param maxArraySize
+     * The maximum array size.
+     * @throws IllegalArgumentException
+     * If the <code>maxArraySize</code> argument is less than <code>1</code>.
+     */
+    public void setMaxArraySize(int maxArraySize) {
+        if (maxArraySize < 1) {
+            throw new IllegalArgumentException("maxArraySize must be positive");
+        }
+        _maxArraySize = maxArraySize;
+    }
+
+    /**
+     * Get the maximum array size of the fragments appended while creating
+     * the XML infoset.
+     *
+     * @return The maximum array size.
+     */
+    public int getMaxArraySize() {
+        return _maxArraySize;
+    }
+
+    /**
+     * Set whether the Strings of structure information are stored in
+     * a symbol table.
+     *
+     * <p>
+     * With a symbol table each distinct String, such as a namespace name, local
+     * name or qualified name, is stored once per buffer, and the structure
+     * information refers to the String by a compact index rather than each
+     * occurrence requiring its own array entry. This reduces the memory used
+     * by buffers of XML infosets that repeat a small number of names.
+     * The symbol table is pre-seeded with the {@link NameDictionary}
+     * of well-known names, which are not stored with the buffer.
+     *
+     * <p>
+     * The setting applies to the next creation of the buffer after the buffer
+     * is reset (see {@link #reset}), or immediately if the buffer has not been
+     * created.
+     *
+     * @param enabled
+     * <code>true</code> if the Strings of structure information are to be
+     * stored in a symbol table.
+     */
+    public void setSymbolTableEnabled(boolean enabled) {
+        _symbolTableEnabled = enabled;
+        if (isReleased() || _structure.getArray()[0] == (byte)AbstractCreatorProcessor.T_END) {
+            resetSymbolTable();
+        }
+    }
+
+    /**
+     * Get whether the Strings of structure information are stored in
+     * a symbol table.
+     *
+     * @return
+     * <code>true</code> if the Strings of structure information are
+     * stored in a symbol table.
+     * @see #setSymbolTableEnabled(boolean)
+     */
+    public boolean isSymbolTableEnabled() {
+        return _symbolTableEnabled;
+    }
+
+    /**
+     * Set whether character content is stored in a compact form.
+     *
+     * <p>
+     * In the compact form text whose characters are all Latin-1, such as
+     * ASCII text, is stored using one byte per character rather than two,
+     * which halves the memory used by character content of such text. Other
+     * text is stored as UTF-16. Processors inflate the compact form when
+     * character content is read.
+     *
+     * <p>
+     * The setting applies to subsequent creation of the buffer.
+     *
+     * @param enabled
+     * <code>true</code> if character content is to be stored in a compact form.
+     */
+    public void setCompactCharactersEnabled(boolean enabled) {
+        _compactCharactersEnabled = enabled;
+    }
+
+    /**
+     * Get whether character content is stored in a compact form.
+     *
+     * @return
+     * <code>true</code> if character content is stored in a compact form.
+     * @see #setCompactCharactersEnabled(boolean)
+     */
+    public boolean isCompactCharactersEnabled() {
+        return _compactCharactersEnabled;
+    }
+
+    /**
+     * Set whether adjacent character content is coalesced.
+     *
+     * <p>
+     * Parsers may report text in several chunks, for example at the
+     * boundaries of their internal buffers, and each chunk is otherwise
+     * stored as a separate text information item. When coalescing, adjacent
+     * chunks of text are stored as one text information item, and thus
+     * processors report one event for the text.
+     *
+     * <p>
+     * The setting applies to subsequent creation of the buffer.
+     *
+     * @param enabled
+     * <code>true</code> if adjacent character content is to be coalesced.
+     */
+    public void setCoalescingEnabled(boolean enabled) {
+        _coalescingEnabled = enabled;
+    }
+
+    /**
+     * Get whether adjacent character content is coalesced.
+     *
+     * @return
+     * <code>true</code> if adjacent character content is coalesced.
+     * @see #setCoalescingEnabled(boolean)
+     */
+    public boolean isCoalescingEnabled() {
+        return _coalescingEnabled;
+    }
+
+    /**
+     * Set whether text that is whitespace only is stripped.
+     *
+     * <p>
+     * When stripping, text information items whose characters are all
+     * whitespace, such as the indentation of pretty-printed XML, are not
+     * stored. Adjacent character content is coalesced (see
+     * {@link #setCoalescingEnabled(boolean)}) so that only complete text
+     * information items are stripped.
+     *
+     * <p>
+     * Whitespace that is significant to the application, for example the
+     * content of an element that contains whitespace only, is stripped too.
+     *
+     * <p>
+     * The setting applies to subsequent creation of the buffer.
+     *
+     * @param enabled
+     * <code>true</code> if text that is whitespace only is to be stripped.
+     */
+    public void setStripWhitespaceEnabled(boolean enabled) {
+        _stripWhitespaceEnabled = enabled;
+    }
+
+    /**
+     * Get whether text that is whitespace only is stripped.
+     *
+     * @return
+     * <code>true</code> if text that is whitespace only is stripped.
+     * @see #setStripWhitespaceEnabled(boolean)
+     */
+    public boolean isStripWhitespaceEnabled() {
+        return _stripWhitespaceEnabled;
+    }
+
+    /**
+     * Set the size of the subtrees whose ends are indexed, so that they may
+     * be skipped without processing their information items.
+     *
+     * <p>
+     * When a subtree whose structure information is at least the given
+     * number of bytes is created its end is recorded in a skip index of
+     * the buffer. A {@link com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor}
+     * uses the index to skip the subtree in constant time (see
+     * {@link com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor#skipElement}).
+     * Smaller subtrees are skipped by processing their information items.
+     *
+     * <p>
+     * The setting applies to subsequent creation of the buffer.
+     *
+     * @param threshold
+     * The size in bytes of the structure information of the smallest indexed
+     * subtree, or <code>0</code> if subtrees are not indexed, which is
+     * the default.
+     * @throws IllegalArgumentException
+     * If the <code>threshold</code> argument is negative.
+     */
+    public void setSkipIndexThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold cannot be negative");
+        }
+        _skipIndexThreshold = threshold;
+    }
+
+    /**
+     * Get the size of the subtrees whose ends are indexed.
+     *
+     * @return
+     * The size in bytes of the structure information of the smallest
+     * indexed subtree, or <code>0</code> if subtrees are not indexed.
+     * @see #setSkipIndexThreshold(int)
+     */
+    public int getSkipIndexThreshold() {
+        return _skipIndexThreshold;
+    }
+
+    /**
+     * Set the budget that limits the memory and shape of the XML infoset
+     * stored in the buffer.
+     *
+     * <p>
+     * A creator of the buffer throws a {@link BufferBudgetExceededException}
+     * when a limit of the budget would be exceeded. The budget applies to
+     * subsequent creation of the buffer.
+     *
+     * @param budget
+     * The budget, or <code>null</code> if the buffer is not limited.
+     */
+    public void setBudget(BufferBudget budget) {
+        _budget = budget;
+    }
+
+    /**
+     * Get the budget that limits the XML infoset stored in the buffer.
+     *
+     * @return
+     * The budget, or <code>null</code> if the buffer is not limited.
+     */
+    public BufferBudget getBudget() {
+        return _budget;
     }
 
     /**
@@ -224,6 +638,11 @@ public class MutableXMLStreamBuffer extends XMLStreamBuffer {
      * 
      * <p>
      * As many Objects as possible will be retained for reuse in future creation.
+     * Processors of the buffer obtained before the reset must not be used
+     * after the reset. The fragments of a buffer from which marks
+     * (see {@link XMLStreamBufferMark}) have been obtained are neither
+     * reused nor given back to the {@link FragmentPool} of the buffer, so
+     * that the marks keep their content.
      */
     public void reset() {
         // Reset the ptrs in arrays to 0
@@ -231,11 +650,42 @@ public class MutableXMLStreamBuffer extends XMLStreamBuffer {
                 _structureStringsPtr =
                 _contentCharactersBufferPtr = 
                 _contentObjectsPtr = 0;
+        _structureUsed = _structureStringsUsed = _contentCharactersUsed = _contentObjectsUsed = 0;
+        _charArrayCopyCount = 0;
+        _charArrayCopyLength = 0;
+
+        resetSymbolTable();
+
+        if (_storedFragments != null) {
+            releaseStoredFragments();
+        }
+
+        if (_marked) {
+            // The fragments are shared with marks, take new ones on creation
+            _marked = false;
+            setReleasedFragments();
+        }
+
+        if (isReleased()) {
+            treeCount = 0;
+            return;
+        }
 
         // Set the first element of structure array to indicate an empty buffer
         // that has not been created
         _structure.getArray()[0] = (byte)AbstractCreatorProcessor.T_END;
 
+        if (_fragmentPool != null) {
+            // Give the fragments after the first back to the pool
+            releaseStructure(_structure.getNext());
+            _structure.setNext(null);
+            releaseStructureStrings(_structureStrings.getNext());
+            _structureStrings.setNext(null);
+            releaseContentCharacters(_contentCharactersBuffer.getNext());
+            _contentCharactersBuffer.setNext(null);
+            releaseContentObjects(_contentObjects.getNext());
+        }
+
         // Clean up content objects
         _contentObjects.setNext(null);
         final Object[] o = _contentObjects.getArray();
@@ -254,7 +704,226 @@ public class MutableXMLStreamBuffer extends XMLStreamBuffer {
          * _contentCharactersBuffer to limit the memory used by the buffer
          */
     }
-    
+
+    /**
+     * Compact the MutableXMLStreamBuffer.
+     *
+     * <p>
+     * The fragments of each of the internal representations of the XML infoset
+     * are copied into one array that is of the size required to hold the
+     * XML infoset. This reclaims the space left unused in the fragments and
+     * enables the buffer to be processed without moving from one fragment
+     * to the next.
+     *
+     * <p>
+     * A MutableXMLStreamBuffer that is retained after creation, such as one
+     * that is cached, should be compacted once it has been created. The previous
+     * fragments are given back to the {@link FragmentPool} of the buffer if any.
+     * Any marks (see {@link XMLStreamBufferMark}) of the buffer obtained before
+     * compaction must not be used after compaction.
+     *
+     * @return
+     * The number of bytes reclaimed, assuming two bytes for a character and
+     * four bytes for a reference.
+     */
+    public long compact() {
+        if (isReleased() || _storedFragments != null ||
+                _structure.getArray()[0] == (byte)AbstractCreatorProcessor.T_END) {
+            return 0;
+        }
+
+        return new BufferCompactor(this).compact();
+    }
+
+    /**
+     * Compact the MutableXMLStreamBuffer and move its structure and character
+     * content to a {@link FragmentStorage}.
+     *
+     * <p>
+     * The buffer is compacted (see {@link #compact()}), and the arrays of
+     * structure and character content are then moved to the storage, such as
+     * a {@link DirectFragmentStorage} that holds them outside of the Java
+     * heap. Processors of the buffer take a copy of the structure and character
+     * content on the Java heap when they start processing.
+     *
+     * <p>
+     * The segment of the storage is released when the buffer is reset
+     * (see {@link #reset}) or released (see {@link #release}).
+     *
+     * @param storage
+     * The storage of the structure and character content.
+     * @return
+     * The number of bytes reclaimed from the Java heap, assuming two bytes
+     * for a character and four bytes for a reference.
+     */
+    public long compact(FragmentStorage storage) {
+        final long reclaimed = compact();
+        if (isReleased() || _storedFragments != null ||
+                _structure.getArray()[0] == (byte)AbstractCreatorProcessor.T_END) {
+            return reclaimed;
+        }
+
+        final byte[] structure = _structure.getArray();
+        final char[] contentCharacters = _contentCharactersBuffer.getArray();
+        _storedFragments = storage.store(structure, contentCharacters);
+
+        // Retain the first item to determine if the buffer is a fragment
+        _structure = new FragmentedArray<byte[]>(new byte[] { structure[0] });
+        _contentCharactersBuffer = new FragmentedArray<char[]>(RELEASED_CONTENT_CHARACTERS);
+        return reclaimed + structure.length - 1 + 2L * contentCharacters.length;
+    }
+
+    /**
+     * Replace the fragments of the buffer with the compact fragments.
+     */
+    final void setCompactFragments(FragmentedArray<byte[]> structure,
+            FragmentedArray<String[]> structureStrings,
+            FragmentedArray<char[]> contentCharactersBuffer,
+            FragmentedArray<Object[]> contentObjects) {
+        if (_fragmentPool != null && !_marked) {
+            releaseStructure(_structure);
+            releaseStructureStrings(_structureStrings);
+            releaseContentCharacters(_contentCharactersBuffer);
+            releaseContentObjects(_contentObjects);
+        }
+
+        _structure = structure;
+        _structureStrings = structureStrings;
+        _contentCharactersBuffer = contentCharactersBuffer;
+        _contentObjects = contentObjects;
+        _marked = false;
+    }
+
+    /**
+     * Record that a mark shares the fragments of the buffer.
+     */
+    final void setMarked() {
+        _marked = true;
+    }
+
+    /**
+     * Release the fragments of the MutableXMLStreamBuffer.
+     *
+     * <p>
+     * The MutableXMLStreamBuffer is reset (see {@link #reset}) and all its
+     * fragments, including the first ones, are given back to the
+     * {@link FragmentPool} of the buffer if any. The segment of the
+     * {@link FragmentStorage} holding the structure and character content of
+     * the buffer, if any, is released.
+     *
+     * <p>
+     * A released MutableXMLStreamBuffer is an empty buffer that has not
+     * been created. Fragments will be taken again when the buffer is
+     * re-used for creation.
+     *
+     * <p>
+     * Processors of the buffer obtained before the release must not be used
+     * after the release. As with {@link #reset}, the fragments of a buffer
+     * from which marks have been obtained are not given back to the pool.
+     */
+    public void release() {
+        if (isReleased()) {
+            return;
+        }
+
+        reset();
+        if (isReleased()) {
+            return;
+        }
+
+        if (_fragmentPool != null) {
+            releaseStructure(_structure);
+            releaseStructureStrings(_structureStrings);
+            releaseContentCharacters(_contentCharactersBuffer);
+            releaseContentObjects(_contentObjects);
+        }
+
+        setReleasedFragments();
+    }
+
+    private void setReleasedFragments() {
+        _structure = new FragmentedArray<byte[]>(RELEASED_STRUCTURE);
+        _structureStrings = new FragmentedArray<String[]>(RELEASED_STRUCTURE_STRINGS);
+        _contentCharactersBuffer = new FragmentedArray<char[]>(RELEASED_CONTENT_CHARACTERS);
+        _contentObjects = new FragmentedArray<Object[]>(RELEASED_CONTENT_OBJECTS);
+    }
+
+    /**
+     * Take the first fragments of a buffer that has not been created
+     * before, or has been released, before the buffer is created.
+     */
+    final void allocateFragments() {
+        if (_storedFragments != null) {
+            releaseStoredFragments();
+        }
+
+        if (!isReleased()) {
+            return;
+        }
+
+        if (_fragmentPool != null) {
+            _structure = new FragmentedArray<byte[]>(_fragmentPool.allocateBytes(_structureArraySize));
+            _structureStrings = new FragmentedArray<String[]>(
+                    _fragmentPool.allocateStrings(_structureStringsArraySize));
+            _contentCharactersBuffer = new FragmentedArray<char[]>(
+                    _fragmentPool.allocateChars(_contentCharactersArraySize));
+            _contentObjects = new FragmentedArray<Object[]>(_fragmentPool.allocateObjects(_contentObjectsArraySize));
+        } else {
+            _structure = new FragmentedArray<byte[]>(new byte[_structureArraySize]);
+            _structureStrings = new FragmentedArray<String[]>(new String[_structureStringsArraySize]);
+            _contentCharactersBuffer = new FragmentedArray<char[]>(new char[_contentCharactersArraySize]);
+            _contentObjects = new FragmentedArray<Object[]>(new Object[_contentObjectsArraySize]);
+        }
+
+        // Set the first element of structure array to indicate an empty buffer
+        // that has not been created
+        _structure.getArray()[0] = (byte) AbstractCreatorProcessor.T_END;
+    }
+
+    private void resetSymbolTable() {
+        if (!_symbolTableEnabled) {
+            _symbolTable = null;
+        } else if (_symbolTable == null || _marked) {
+            // Marks share the symbol table, so it is not cleared for reuse
+            _symbolTable = new SymbolTable();
+        } else {
+            _symbolTable.clear();
+        }
+    }
+
+    private void releaseStoredFragments() {
+        _storedFragments.release();
+        _storedFragments = null;
+        setReleasedFragments();
+    }
+
+    private boolean isReleased() {
+        return _structure.getArray() == RELEASED_STRUCTURE;
+    }
+
+    private void releaseStructure(FragmentedArray<byte[]> f) {
+        for (; f != null; f = f.getNext()) {
+            _fragmentPool.release(f.getArray());
+        }
+    }
+
+    private void releaseStructureStrings(FragmentedArray<String[]> f) {
+        for (; f != null; f = f.getNext()) {
+            _fragmentPool.release(f.getArray());
+        }
+    }
+
+    private void releaseContentCharacters(FragmentedArray<char[]> f) {
+        for (; f != null; f = f.getNext()) {
+            _fragmentPool.release(f.getArray());
+        }
+    }
+
+    private void releaseContentObjects(FragmentedArray<Object[]> f) {
+        for (; f != null; f = f.getNext()) {
+            _fragmentPool.release(f.getArray());
+        }
+    }
     
     protected void setHasInternedStrings(boolean hasInternedStrings) {
         _hasInternedStrings = hasInternedStrings;
@@ -0,0 +1,222 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A dictionary of well-known names shared by all buffers.
+ *
+ * <p>
+ * The dictionary holds the namespace names, prefixes and local names of
+ * SOAP 1.1, SOAP 1.2, WS-Addressing, WS-Security, XML Signature, XML Schema
+ * and XML Schema instance. The symbol table of a buffer that is created with
+ * a symbol table (see {@link MutableXMLStreamBuffer#setSymbolTableEnabled})
+ * is pre-seeded with the dictionary, so these names are not stored with
+ * the buffer and are referred to by a code that is one byte for the first
+ * 128 names of the dictionary. Processors of such buffers return the
+ * canonical, interned, String instance of each name of the dictionary.
+ *
+ * <p>
+ * Applications may register the names of their own vocabularies using
+ * {@link #register}, preferably at startup. Buffers created before the
+ * registration are not affected.
+ */
+public final class NameDictionary {
+    private static final String[] WELL_KNOWN_NAMES = {
+        // Attribute type and empty string
+        "CDATA",
+        "",
+        // Namespace names
+        "http://schemas.xmlsoap.org/soap/envelope/",
+        "http://www.w3.org/2003/05/soap-envelope",
+        "http://www.w3.org/2005/08/addressing",
+        "http://schemas.xmlsoap.org/ws/2004/08/addressing",
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd",
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd",
+        "http://www.w3.org/2000/09/xmldsig#",
+        "http://www.w3.org/2001/XMLSchema",
+        "http://www.w3.org/2001/XMLSchema-instance",
+        "http://www.w3.org/XML/1998/namespace",
+        // Prefixes
+        "S", "soap", "soapenv", "SOAP-ENV", "env", "wsa", "wsse", "wsu", "ds",
+        "xs", "xsd", "xsi", "xml",
+        // SOAP 1.1
+        "Envelope", "Header", "Body", "Fault", "faultcode", "faultstring",
+        "faultactor", "detail", "mustUnderstand", "actor", "encodingStyle",
+        // SOAP 1.2
+        "Code", "Value", "Subcode", "Reason", "Text", "Node", "Role", "Detail",
+        "role", "relay", "NotUnderstood", "Upgrade", "SupportedEnvelope",
+        "qname", "lang",
+        // WS-Addressing
+        "To", "From", "ReplyTo", "FaultTo", "Action", "MessageID", "RelatesTo",
+        "RelationshipType", "Address", "ReferenceParameters",
+        "ReferenceProperties", "Metadata", "IsReferenceParameter",
+        // WS-Security
+        "Security", "UsernameToken", "Username", "Password", "Nonce",
+        "BinarySecurityToken", "SecurityTokenReference", "Reference",
+        "KeyIdentifier", "Embedded", "EncodingType", "ValueType", "Type", "URI",
+        "Id", "Timestamp", "Created", "Expires",
+        // XML Signature
+        "Signature", "SignedInfo", "CanonicalizationMethod", "SignatureMethod",
+        "DigestMethod", "DigestValue", "SignatureValue", "KeyInfo",
+        "Transforms", "Transform", "Algorithm",
+        // XML Schema instance
+        "type", "nil", "schemaLocation", "noNamespaceSchemaLocation"
+    };
+
+    private static volatile NameDictionary _default =
+            new NameDictionary(new String[0]).add(WELL_KNOWN_NAMES);
+
+    /*
+     * The names, in the order of their codes
+     */
+    private final String[] _names;
+
+    /*
+     * Open addressing hash table of codes of names, a slot value of 0
+     * indicates an empty slot, otherwise the code + 1
+     */
+    private final int[] _slots;
+
+    private NameDictionary(String[] names) {
+        _names = names;
+
+        int length = 16;
+        while (length < names.length * 2 + 2) {
+            length <<= 1;
+        }
+        _slots = new int[length];
+        for (int i = 0; i < names.length; i++) {
+            int slot = names[i].hashCode() & (length - 1);
+            while (_slots[slot] != 0) {
+                slot = (slot + 1) & (length - 1);
+            }
+            _slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Register names of a vocabulary.
+     *
+     * <p>
+     * Names that are already registered are ignored.
+     *
+     * @param names
+     * The names.
+     */
+    public static synchronized void register(String... names) {
+        _default = _default.add(names);
+    }
+
+    /**
+     * Get the number of names that are registered.
+     *
+     * @return The number of names.
+     */
+    public static int size() {
+        return _default._names.length;
+    }
+
+    /**
+     * Get the canonical String instance of a name.
+     *
+     * @param name
+     * The name.
+     * @return
+     * The canonical String instance if the name is registered,
+     * otherwise <code>name</code>.
+     */
+    public static String getCanonicalName(String name) {
+        final NameDictionary d = _default;
+        final int code = d.getCode(name);
+        return (code >= 0) ? d._names[code] : name;
+    }
+
+    /**
+     * Get the current dictionary, which is immutable.
+     */
+    static NameDictionary getDefault() {
+        return _default;
+    }
+
+    /**
+     * Get the names, indexed by their codes.
+     */
+    String[] getNames() {
+        return _names;
+    }
+
+    /**
+     * Get the code of a name.
+     *
+     * @return The code, or -1 if the name is not in the dictionary.
+     */
+    int getCode(String name) {
+        if (name == null) {
+            return -1;
+        }
+
+        final int mask = _slots.length - 1;
+        for (int slot = name.hashCode() & mask, v; (v = _slots[slot]) != 0; slot = (slot + 1) & mask) {
+            final String n = _names[v - 1];
+            if (n == name || n.equals(name)) {
+                return v - 1;
+            }
+        }
+        return -1;
+    }
+
+    private NameDictionary add(String[] names) {
+        // The codes of the names already in the dictionary do not change
+        final Set<String> all = new LinkedHashSet<String>(Arrays.asList(_names));
+        for (String name : names) {
+            if (name == null) {
+                throw new NullPointerException("name cannot be null");
+            }
+            all.add(name.intern());
+        }
+
+        return (all.size() == _names.length) ? this : new NameDictionary(all.toArray(new String[all.size()]));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.sax.SAXBufferProcessor;
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferProcessor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A pool of the processors used to read and write {@link XMLStreamBuffer}s.
+ *
+ * <p>
+ * Processors are borrowed from the pool by
+ * {@link XMLStreamBuffer#readAsXMLStreamReader(ProcessorPool)},
+ * {@link XMLStreamBuffer#writeTo(org.xml.sax.ContentHandler, boolean, ProcessorPool)} and
+ * {@link XMLStreamBuffer#writeToXMLStreamWriter(javax.xml.stream.XMLStreamWriter, boolean, ProcessorPool)},
+ * and are returned when they are closed or when the writing completes.
+ * Replaying a buffer using a pool thus avoids the allocation of the
+ * processor and of its stacks.
+ *
+ * <p>
+ * A {@link StreamReaderBufferProcessor} is returned to the pool only when
+ * it is closed by the thread that borrowed it. A reader closed by another
+ * thread is not reused.
+ *
+ * <p>
+ * The processors are held in slots that are shared by all threads and that
+ * are accessed without locks. No state is associated with a thread, and
+ * thus a pool is suitable for use by a large number of short lived (or
+ * virtual) threads.
+ *
+ * <p>
+ * A ProcessorPool may be shared by any number of buffers and threads.
+ */
+public final class ProcessorPool {
+    /**
+     * The default number of processors of each type held by a pool.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final int _capacity;
+
+    private final AtomicReferenceArray<StreamReaderBufferProcessor> _streamReaderProcessors;
+
+    private final AtomicReferenceArray<StreamWriterBufferProcessor> _streamWriterProcessors;
+
+    private final AtomicReferenceArray<SAXBufferProcessor> _saxProcessors;
+
+    /**
+     * Create a new ProcessorPool using the
+     * {@link ProcessorPool#DEFAULT_CAPACITY}.
+     */
+    public ProcessorPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new ProcessorPool.
+     *
+     * @param capacity
+     * The maximum number of processors of each type held by the pool.
+     */
+    public ProcessorPool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity cannot be negative");
+        }
+        _capacity = capacity;
+        _streamReaderProcessors = new AtomicReferenceArray<StreamReaderBufferProcessor>(capacity);
+        _streamWriterProcessors = new AtomicReferenceArray<StreamWriterBufferProcessor>(capacity);
+        _saxProcessors = new AtomicReferenceArray<SAXBufferProcessor>(capacity);
+    }
+
+    /**
+     * Get the maximum number of processors of each type held by the pool.
+     *
+     * @return The capacity of the pool.
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    StreamReaderBufferProcessor borrowStreamReaderProcessor() {
+        StreamReaderBufferProcessor p = poll(_streamReaderProcessors);
+        if (p == null) {
+            p = new StreamReaderBufferProcessor();
+        }
+        setPool(p);
+        return p;
+    }
+
+    StreamWriterBufferProcessor borrowStreamWriterProcessor() {
+        StreamWriterBufferProcessor p = poll(_streamWriterProcessors);
+        if (p == null) {
+            p = new StreamWriterBufferProcessor();
+        }
+        setPool(p);
+        return p;
+    }
+
+    SAXBufferProcessor borrowSAXProcessor() {
+        SAXBufferProcessor p = poll(_saxProcessors);
+        if (p == null) {
+            p = new SAXBufferProcessor();
+        }
+        setPool(p);
+        return p;
+    }
+
+    private void setPool(AbstractProcessor p) {
+        p._pool = this;
+        p._borrower = Thread.currentThread();
+    }
+
+    void release(AbstractProcessor p) {
+        if (p._pool != this) {
+            return;
+        }
+        p._pool = null;
+        p._borrower = null;
+        p.clearBuffer();
+
+        if (p instanceof StreamReaderBufferProcessor) {
+            offer(_streamReaderProcessors, (StreamReaderBufferProcessor)p);
+        } else if (p instanceof StreamWriterBufferProcessor) {
+            offer(_streamWriterProcessors, (StreamWriterBufferProcessor)p);
+        } else if (p instanceof SAXBufferProcessor) {
+            offer(_saxProcessors, (SAXBufferProcessor)p);
+        }
+    }
+
+    private static <T> T poll(AtomicReferenceArray<T> slots) {
+        for (int i = 0; i < slots.length(); i++) {
+            final T p = slots.get(i);
+            if (p != null && slots.compareAndSet(i, p, null)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    private static <T> void offer(AtomicReferenceArray<T> slots, T p) {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, p)) {
+                return;
+            }
+        }
+        // The pool is full, the processor is dropped
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * A cache of the qualified names built from prefixes and local names by
+ * {@link AbstractProcessor#getQName}, so that a processor does not build
+ * the same qualified name for every element or attribute, including when
+ * the processor is reused to replay the same or a similar buffer.
+ *
+ * <p>
+ * An entry records whether its qualified name is interned, so that a
+ * name built for a buffer without interned strings is not returned for
+ * one that requires them. The cache is held by the processor and has a
+ * fixed number of entries, so a pooled processor retains a bounded
+ * amount of memory whatever the buffers it has replayed.
+ */
+final class QualifiedNameCache {
+    private static final int SIZE = 256;
+
+    private final Entry[] _entries = new Entry[SIZE];
+
+    /**
+     * Get the qualified name of a prefix and local name.
+     *
+     * @param intern
+     * True if the qualified name must be interned.
+     * @return The qualified name, or null if it is not in the cache.
+     */
+    String get(String prefix, String localName, boolean intern) {
+        final Entry e = _entries[hash(prefix, localName) & (SIZE - 1)];
+        if (e != null && (e.interned || !intern)
+                && equals(localName, e.localName) && equals(prefix, e.prefix)) {
+            return e.qName;
+        }
+        return null;
+    }
+
+    void put(String prefix, String localName, String qName, boolean interned) {
+        _entries[hash(prefix, localName) & (SIZE - 1)] = new Entry(prefix, localName, qName, interned);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == b || a.equals(b);
+    }
+
+    private static int hash(String prefix, String localName) {
+        final int h = localName.hashCode() * 31 + prefix.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        final String prefix;
+        final String localName;
+        final String qName;
+        final boolean interned;
+
+        Entry(String prefix, String localName, String qName, boolean interned) {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.qName = qName;
+            this.interned = interned;
+        }
+    }
+}
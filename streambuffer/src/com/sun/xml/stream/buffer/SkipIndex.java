@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * An index of the ends of large subtrees of a buffer, so that processors
+ * may skip a subtree without reading its information items.
+ *
+ * <p>
+ * The positions in the internal representations of the buffer are offsets
+ * from the start of the first fragment, see {@link FragmentedArray#getOffset}.
+ * An entry maps the position of the item of an element in the structure
+ * to the positions following the end of the element in each of the four
+ * internal representations.
+ */
+final class SkipIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /*
+     * Open addressing hash table of the positions of elements, a slot
+     * value of 0 indicates an empty slot, otherwise the position + 1
+     */
+    private long[] _keys;
+
+    /*
+     * The end positions of the structure, structure strings, character
+     * content and content objects, four for each slot
+     */
+    private long[] _ends;
+
+    private int _size;
+
+    SkipIndex() {
+        _keys = new long[INITIAL_CAPACITY];
+        _ends = new long[INITIAL_CAPACITY * 4];
+    }
+
+    /**
+     * Add the end positions of the element at a position of the structure.
+     */
+    void add(long element, long structureEnd, long structureStringsEnd,
+            long contentCharactersEnd, long contentObjectsEnd) {
+        if ((_size + 1) * 2 > _keys.length) {
+            rehash(_keys.length * 2);
+        }
+
+        final int slot = insert(element + 1);
+        _ends[slot * 4] = structureEnd;
+        _ends[slot * 4 + 1] = structureStringsEnd;
+        _ends[slot * 4 + 2] = contentCharactersEnd;
+        _ends[slot * 4 + 3] = contentObjectsEnd;
+    }
+
+    /**
+     * Find the slot of the element at a position of the structure.
+     *
+     * @return The slot, or -1 if the element is not indexed.
+     */
+    int find(long element) {
+        final long key = element + 1;
+        final int mask = _keys.length - 1;
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = _keys[slot]) != 0) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    long getStructureEnd(int slot) {
+        return _ends[slot * 4];
+    }
+
+    long getStructureStringsEnd(int slot) {
+        return _ends[slot * 4 + 1];
+    }
+
+    long getContentCharactersEnd(int slot) {
+        return _ends[slot * 4 + 2];
+    }
+
+    long getContentObjectsEnd(int slot) {
+        return _ends[slot * 4 + 3];
+    }
+
+    int size() {
+        return _size;
+    }
+
+    private int insert(long key) {
+        final int mask = _keys.length - 1;
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = _keys[slot]) != 0) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        _keys[slot] = key;
+        _size++;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        final long[] keys = _keys;
+        final long[] ends = _ends;
+        _keys = new long[capacity];
+        _ends = new long[capacity * 4];
+        _size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                final int slot = insert(keys[i]);
+                System.arraycopy(ends, i * 4, _ends, slot * 4, 4);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        final int h = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import java.util.Arrays;
+
+/**
+ * A table of the distinct Strings of structure information of a buffer.
+ *
+ * <p>
+ * When a buffer is created with a symbol table each distinct String,
+ * such as a namespace name or local name, is stored once in the table and
+ * the structure information refers to the String by its index, encoded
+ * as a variable length integer of 7 bits per byte.
+ *
+ * <p>
+ * The table is pre-seeded with the {@link NameDictionary}. The indexes
+ * less than the size of the dictionary are the codes of the names in
+ * the dictionary, and the Strings of the buffer are indexed from the
+ * size of the dictionary.
+ */
+final class SymbolTable {
+    private static final int INITIAL_SIZE = 16;
+
+    private String[] _symbols;
+    private int _size;
+
+    /*
+     * Open addressing hash table of indexes of symbols, a slot value of 0
+     * indicates an empty slot, otherwise the index + 1
+     */
+    private int[] _slots;
+
+    private int _nullIndex = -1;
+
+    private NameDictionary _dictionary;
+
+    SymbolTable() {
+        _symbols = new String[INITIAL_SIZE];
+        _dictionary = NameDictionary.getDefault();
+    }
+
+    /**
+     * Get the Strings of the buffer, which are indexed by the indexes
+     * returned by {@link #add(String)} minus the size of the dictionary.
+     */
+    String[] getSymbols() {
+        return _symbols;
+    }
+
+    /**
+     * Get the names of the dictionary the table is pre-seeded with,
+     * which are indexed by the indexes returned by {@link #add(String)}.
+     */
+    String[] getDictionaryNames() {
+        return _dictionary.getNames();
+    }
+
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Add a String, if not already present.
+     *
+     * @return The index of the String.
+     */
+    int add(String s) {
+        final int code = _dictionary.getCode(s);
+        if (code >= 0) {
+            return code;
+        }
+
+        return _dictionary.getNames().length + addSymbol(s);
+    }
+
+    private int addSymbol(String s) {
+        if (s == null) {
+            if (_nullIndex < 0) {
+                _nullIndex = append(null);
+            }
+            return _nullIndex;
+        }
+
+        if (_slots == null) {
+            int length = INITIAL_SIZE * 2;
+            while (length < _size * 2 + 2) {
+                length <<= 1;
+            }
+            rehash(length);
+        }
+
+        final int mask = _slots.length - 1;
+        int slot = s.hashCode() & mask;
+        for (int v; (v = _slots[slot]) != 0; slot = (slot + 1) & mask) {
+            final String symbol = _symbols[v - 1];
+            if (symbol == s || s.equals(symbol)) {
+                return v - 1;
+            }
+        }
+
+        final int index = append(s);
+        _slots[slot] = index + 1;
+        if (_size * 2 > _slots.length) {
+            rehash(_slots.length * 2);
+        }
+        return index;
+    }
+
+    /**
+     * Remove all the Strings, and pre-seed the table with the current
+     * dictionary.
+     */
+    void clear() {
+        Arrays.fill(_symbols, 0, _size, null);
+        if (_slots != null) {
+            Arrays.fill(_slots, 0);
+        }
+        _size = 0;
+        _nullIndex = -1;
+        _dictionary = NameDictionary.getDefault();
+    }
+
+    /**
+     * Reduce the symbols to the size required, and discard the hash table
+     * used for adding Strings until the table is cleared.
+     */
+    void trim() {
+        if (_symbols.length > _size) {
+            final String[] symbols = new String[Math.max(_size, 1)];
+            System.arraycopy(_symbols, 0, symbols, 0, _size);
+            _symbols = symbols;
+        }
+        _slots = null;
+    }
+
+    /**
+     * Get the number of bytes retained, assuming four bytes for a reference.
+     */
+    long getRetainedBytes() {
+        return (long)BufferCompactor.REFERENCE_SIZE * _symbols.length +
+                ((_slots != null) ? 4L * _slots.length : 0);
+    }
+
+    private int append(String s) {
+        if (_size == _symbols.length) {
+            final String[] symbols = new String[_size * 2];
+            System.arraycopy(_symbols, 0, symbols, 0, _size);
+            _symbols = symbols;
+        }
+        _symbols[_size] = s;
+        return _size++;
+    }
+
+    private void rehash(int length) {
+        _slots = new int[length];
+        final int mask = length - 1;
+        for (int i = 0; i < _size; i++) {
+            final String symbol = _symbols[i];
+            if (symbol == null) {
+                continue;
+            }
+            int slot = symbol.hashCode() & mask;
+            while (_slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            _slots[slot] = i + 1;
+        }
+    }
+}
@@ -41,6 +41,7 @@
 package com.sun.xml.stream.buffer;
 
 import com.sun.xml.stream.buffer.sax.SAXBufferProcessor;
+import com.sun.xml.stream.buffer.stax.FlushPolicy;
 import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
 import com.sun.xml.stream.buffer.stax.StreamWriterBufferProcessor;
 import java.io.IOException;
@@ -131,6 +132,35 @@ public abstract class XMLStreamBuffer {
     protected FragmentedArray<Object[]> _contentObjects;
     protected int _contentObjectsPtr;
 
+    /**
+     * The structure and character content held by a {@link FragmentStorage},
+     * or null if held by _structure and _contentCharactersBuffer
+     */
+    FragmentStorage.Segment _storedFragments;
+
+    /**
+     * The symbol table of the structure strings, or null if the structure
+     * strings are held by _structureStrings
+     */
+    SymbolTable _symbolTable;
+
+    /**
+     * The index of the ends of large subtrees, or null if there is no index
+     */
+    SkipIndex _skipIndex;
+
+    /**
+     * The number of entries used of each of the internal representations,
+     * and the number and total length of the copied character arrays,
+     * maintained by creators for the statistics of the buffer
+     */
+    long _structureUsed;
+    long _structureStringsUsed;
+    long _contentCharactersUsed;
+    long _contentObjectsUsed;
+    int _charArrayCopyCount;
+    long _charArrayCopyLength;
+
     /**
      * Number of trees in this stream buffer.
      *
@@ -256,6 +286,30 @@ public abstract class XMLStreamBuffer {
         return new StreamReaderBufferProcessor(this);
     }
 
+    /**
+     * Read the contents of the buffer as a {@link XMLStreamReader} borrowed
+     * from a {@link ProcessorPool}.
+     *
+     * <p>
+     * The reader is returned to the pool when it is closed, after which it
+     * must not be used.
+     *
+     * @param pool
+     * The pool to borrow the reader from.
+     * @return
+     * A an instance of a {@link StreamReaderBufferProcessor}. Always non-null.
+     */
+    public final StreamReaderBufferProcessor readAsXMLStreamReader(ProcessorPool pool) throws XMLStreamException {
+        final StreamReaderBufferProcessor p = pool.borrowStreamReaderProcessor();
+        try {
+            p.setXMLStreamBuffer(this);
+        } catch (XMLStreamException e) {
+            pool.release(p);
+            throw e;
+        }
+        return p;
+    }
+
     /**
      * Write the contents of the buffer to an XMLStreamWriter.
      *
@@ -275,6 +329,72 @@ public abstract class XMLStreamBuffer {
         p.process(writer);
     }
 
+    /**
+     * Write the contents of the buffer to an XMLStreamWriter, flushing the
+     * writer according to a {@link FlushPolicy}.
+     *
+     * @param writer
+     *      A XMLStreamWriter to write to.
+     * @param writeAsFragment
+     *      If true, {@link XMLStreamWriter} will not receive {@link XMLStreamWriter#writeStartDocument()}
+     *      nor {@link XMLStreamWriter#writeEndDocument()}.
+     * @param flushPolicy
+     *      The policy for flushing the writer.
+     */
+    public final void writeToXMLStreamWriter(XMLStreamWriter writer, boolean writeAsFragment, FlushPolicy flushPolicy) throws XMLStreamException {
+        StreamWriterBufferProcessor p = new StreamWriterBufferProcessor(this,writeAsFragment);
+        p.setFlushPolicy(flushPolicy);
+        p.process(writer);
+    }
+
+    /**
+     * Write the contents of the buffer to an XMLStreamWriter using a
+     * {@link StreamWriterBufferProcessor} borrowed from a {@link ProcessorPool}.
+     *
+     * @param writer
+     *      A XMLStreamWriter to write to.
+     * @param writeAsFragment
+     *      If true, {@link XMLStreamWriter} will not receive {@link XMLStreamWriter#writeStartDocument()}
+     *      nor {@link XMLStreamWriter#writeEndDocument()}.
+     * @param pool
+     *      The pool to borrow the processor from.
+     */
+    public final void writeToXMLStreamWriter(XMLStreamWriter writer, boolean writeAsFragment, ProcessorPool pool) throws XMLStreamException {
+        final StreamWriterBufferProcessor p = pool.borrowStreamWriterProcessor();
+        try {
+            p.setXMLStreamBuffer(this, writeAsFragment);
+            p.process(writer);
+        } finally {
+            pool.release(p);
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to an XMLStreamWriter, flushing the
+     * writer according to a {@link FlushPolicy}, using a
+     * {@link StreamWriterBufferProcessor} borrowed from a {@link ProcessorPool}.
+     *
+     * @param writer
+     *      A XMLStreamWriter to write to.
+     * @param writeAsFragment
+     *      If true, {@link XMLStreamWriter} will not receive {@link XMLStreamWriter#writeStartDocument()}
+     *      nor {@link XMLStreamWriter#writeEndDocument()}.
+     * @param flushPolicy
+     *      The policy for flushing the writer.
+     * @param pool
+     *      The pool to borrow the processor from.
+     */
+    public final void writeToXMLStreamWriter(XMLStreamWriter writer, boolean writeAsFragment, FlushPolicy flushPolicy, ProcessorPool pool) throws XMLStreamException {
+        final StreamWriterBufferProcessor p = pool.borrowStreamWriterProcessor();
+        try {
+            p.setXMLStreamBuffer(this, writeAsFragment);
+            p.setFlushPolicy(flushPolicy);
+            p.process(writer);
+        } finally {
+            pool.release(p);
+        }
+    }
+
     /**
      * @deprecated
      *      Use {@link #writeToXMLStreamWriter(XMLStreamWriter, boolean)}
@@ -326,15 +446,43 @@ public abstract class XMLStreamBuffer {
      *      if a parsing fails, or if {@link ContentHandler} throws a {@link SAXException}.
      */
     public final void writeTo(ContentHandler handler, boolean produceFragmentEvent) throws SAXException {
-        SAXBufferProcessor p = readAsXMLReader(produceFragmentEvent);
+        writeTo(readAsXMLReader(produceFragmentEvent), handler);
+    }
+
+    /**
+     * Write the contents of the buffer to a {@link ContentHandler} using a
+     * {@link SAXBufferProcessor} borrowed from a {@link ProcessorPool}.
+     *
+     * @param handler
+     *      The ContentHandler to receive SAX events.
+     * @param produceFragmentEvent
+     *      True to generate fragment SAX events without start/endDocument.
+     *      False to generate a full document SAX events.
+     * @param pool
+     *      The pool to borrow the processor from.
+     *
+     * @throws SAXException
+     *      if a parsing fails, or if {@link ContentHandler} throws a {@link SAXException}.
+     */
+    public final void writeTo(ContentHandler handler, boolean produceFragmentEvent, ProcessorPool pool) throws SAXException {
+        final SAXBufferProcessor p = pool.borrowSAXProcessor();
+        try {
+            p.setXMLStreamBuffer(this, produceFragmentEvent);
+            writeTo(p, handler);
+        } finally {
+            pool.release(p);
+        }
+    }
+
+    private static void writeTo(SAXBufferProcessor p, ContentHandler handler) throws SAXException {
         p.setContentHandler(handler);
-        if (p instanceof LexicalHandler) {
+        if (handler instanceof LexicalHandler) {
             p.setLexicalHandler((LexicalHandler)handler);
         }
-        if (p instanceof DTDHandler) {
+        if (handler instanceof DTDHandler) {
             p.setDTDHandler((DTDHandler)handler);
         }
-        if (p instanceof ErrorHandler) {
+        if (handler instanceof ErrorHandler) {
             p.setErrorHandler((ErrorHandler)handler);
         }
         p.process();
@@ -369,10 +517,10 @@ public abstract class XMLStreamBuffer {
     public final void writeTo(ContentHandler handler, ErrorHandler errorHandler, boolean produceFragmentEvent) throws SAXException {
         SAXBufferProcessor p = readAsXMLReader(produceFragmentEvent);
         p.setContentHandler(handler);
-        if (p instanceof LexicalHandler) {
+        if (handler instanceof LexicalHandler) {
             p.setLexicalHandler((LexicalHandler)handler);
         }
-        if (p instanceof DTDHandler) {
+        if (handler instanceof DTDHandler) {
             p.setDTDHandler((DTDHandler)handler);
         }
 
@@ -460,7 +608,28 @@ public abstract class XMLStreamBuffer {
         return b;
     }
 
+    /**
+     * Get the statistics of the memory used by the buffer.
+     *
+     * <p>
+     * The statistics are obtained in time proportional to the number of
+     * fragments of the buffer, so they may be obtained whenever a buffer
+     * is cached, for example to weight the eviction of buffers from the
+     * cache by the memory they retain.
+     *
+     * @return
+     * The statistics of the buffer.
+     */
+    public BufferStatistics getStatistics() {
+        return new BufferStatistics(this, _structureUsed, _structureStringsUsed,
+                _contentCharactersUsed, _contentObjectsUsed,
+                _charArrayCopyCount, _charArrayCopyLength);
+    }
+
     protected final FragmentedArray<byte[]> getStructure() {
+        if (_storedFragments != null) {
+            return new FragmentedArray<byte[]>(_storedFragments.getStructure());
+        }
         return _structure;
     }
 
@@ -477,6 +646,9 @@ public abstract class XMLStreamBuffer {
     }
 
     protected final FragmentedArray<char[]> getContentCharactersBuffer() {
+        if (_storedFragments != null) {
+            return new FragmentedArray<char[]>(_storedFragments.getContentCharacters());
+        }
         return _contentCharactersBuffer;
     }
 
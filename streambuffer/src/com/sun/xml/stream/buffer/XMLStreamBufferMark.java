@@ -57,6 +57,11 @@ import java.util.Map;
  * relationship between the marked XMLStreamBuffer and one or more marks.
  */
 public class XMLStreamBufferMark extends XMLStreamBuffer {
+
+    /**
+     * The buffer whose fragments are shared by the mark.
+     */
+    private MutableXMLStreamBuffer _source;
     
     /**
      * Create a mark from the buffer that is being created.
@@ -77,6 +82,13 @@ public class XMLStreamBufferMark extends XMLStreamBuffer {
         if(inscopeNamespaces != null) {
             _inscopeNamespaces = inscopeNamespaces;
         }
+        if (src instanceof AbstractCreator) {
+            // Text held by the creator precedes the mark
+            ((AbstractCreator)src).flushText();
+            setSource(((AbstractCreator)src)._buffer);
+        } else if (src instanceof AbstractProcessor) {
+            setSource(((AbstractProcessor)src)._buffer);
+        }
         
         _structure = src._currentStructureFragment;
         _structurePtr = src._structurePtr;
@@ -89,6 +101,60 @@ public class XMLStreamBufferMark extends XMLStreamBuffer {
         
         _contentObjects = src._currentContentObjectFragment;
         _contentObjectsPtr = src._contentObjectsPtr;
+
+        _symbolTable = src._symbolTable;
+        _skipIndex = src._skipIndex;
         treeCount = 1; // TODO: define a way to create a mark over a forest
     }
+
+    XMLStreamBufferMark(Map<String,String> inscopeNamespaces, XMLStreamBuffer buffer,
+            AbstractProcessor.Position position, SymbolTable symbolTable, SkipIndex skipIndex) {
+        if(inscopeNamespaces != null) {
+            _inscopeNamespaces = inscopeNamespaces;
+        }
+        setSource(buffer);
+
+        _structure = position.structureFragment;
+        _structurePtr = position.structurePtr;
+
+        _structureStrings = position.structureStringsFragment;
+        _structureStringsPtr = position.structureStringsPtr;
+
+        _contentCharactersBuffer = position.contentCharactersBufferFragment;
+        _contentCharactersBufferPtr = position.contentCharactersBufferPtr;
+
+        _contentObjects = position.contentObjectsFragment;
+        _contentObjectsPtr = position.contentObjectsPtr;
+
+        _symbolTable = symbolTable;
+        _skipIndex = skipIndex;
+        treeCount = 1;
+    }
+
+    /**
+     * Record the buffer that is marked so that its fragments are not
+     * recycled while the mark may still use them.
+     */
+    private void setSource(XMLStreamBuffer buffer) {
+        if (buffer instanceof XMLStreamBufferMark) {
+            _source = ((XMLStreamBufferMark)buffer)._source;
+        } else if (buffer instanceof MutableXMLStreamBuffer) {
+            _source = (MutableXMLStreamBuffer)buffer;
+        }
+        if (_source != null) {
+            _source.setMarked();
+        }
+    }
+
+    /**
+     * Get the statistics of the memory used by the mark.
+     *
+     * <p>
+     * The fragments are those shared with the marked buffer from the mark
+     * on. The entries used are counted by walking the marked subtree.
+     */
+    @Override
+    public BufferStatistics getStatistics() {
+        return new BufferCompactor(this).getStatistics();
+    }
 }
@@ -120,7 +120,7 @@ public class SAXBufferCreator extends AbstractCreator
     }
     
     public void endDocument() throws SAXException {
-        storeStructure(T_END);
+        storeEnd();
     }
         
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
@@ -144,7 +144,7 @@ public class SAXBufferCreator extends AbstractCreator
     }
         
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        storeStructure(T_END);
+        storeEnd();
         if(--depth==0)
             increaseTreeCount();    // one tree processed
     }
@@ -158,7 +158,7 @@ public class SAXBufferCreator extends AbstractCreator
     }
     
     public void processingInstruction(String target, String data) throws SAXException {
-        storeStructure(T_PROCESSING_INSTRUCTION);
+        storeMarkupItem(T_PROCESSING_INSTRUCTION);
         storeStructureString(target);
         storeStructureString(data);
     }
@@ -185,13 +185,17 @@ public class SAXBufferCreator extends AbstractCreator
             int item = T_NAMESPACE_ATTRIBUTE;
             if (_namespaceAttributes[i].length() > 0) {
                 item |= FLAG_PREFIX;
-                storeStructureString(_namespaceAttributes[i]);
             }
             if (_namespaceAttributes[i + 1].length() > 0) {
                 item |= FLAG_URI;
-                storeStructureString(_namespaceAttributes[i + 1]);
             }
             storeStructure(item);
+            if ((item & FLAG_PREFIX) != 0) {
+                storeStructureString(_namespaceAttributes[i]);
+            }
+            if ((item & FLAG_URI) != 0) {
+                storeStructureString(_namespaceAttributes[i + 1]);
+            }
         }
         _namespaceAttributesPtr = 0;
     }
@@ -215,17 +219,22 @@ public class SAXBufferCreator extends AbstractCreator
     private void storeQualifiedName(int item, String uri, String localName, String qName) {
         if (uri.length() > 0) {
             item |= FLAG_URI;
-            storeStructureString(uri);
         }
 
-        storeStructureString(localName);
-
         if (qName.indexOf(':') >= 0) {
             item |= FLAG_QUALIFIED_NAME;
-            storeStructureString(qName);
         }
 
-        storeStructure(item);
+        // The item is stored before the names, which may be stored in the structure
+        storeNameItem(item);
+
+        if ((item & FLAG_URI) != 0) {
+            storeStructureString(uri);
+        }
+        storeStructureString(localName);
+        if ((item & FLAG_QUALIFIED_NAME) != 0) {
+            storeStructureString(qName);
+        }
     }    
     
     
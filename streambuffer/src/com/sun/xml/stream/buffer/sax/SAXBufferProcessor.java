@@ -43,6 +43,7 @@ package com.sun.xml.stream.buffer.sax;
 import com.sun.xml.stream.buffer.AbstractProcessor;
 import com.sun.xml.stream.buffer.AttributesHolder;
 import com.sun.xml.stream.buffer.XMLStreamBuffer;
+import org.jvnet.staxex.Base64Data;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
 import org.xml.sax.EntityResolver;
@@ -107,6 +108,26 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
     protected int[] _namespaceAttributesStack = new int[16];
     protected int _namespaceAttributesStackIndex;
 
+    /*
+     * The number of characters of base64 encoded data reported by each call
+     * of ContentHandler.characters
+     */
+    private static final int BASE64_CHUNK_SIZE = 4096;
+
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // The scratch buffer the characters of strings are copied to
+    // before being reported
+    private char[] _textBuffer = new char[0];
+
+    // The scratch buffers that binary data is read and encoded to
+    private char[] _base64Chars;
+
+    // The stack of the elements being processed
+    private ElementStackEntry[] _stack = new ElementStackEntry[16];
+    private int _depth;
+
     public SAXBufferProcessor() {
     }
 
@@ -285,6 +306,27 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
         setBuffer(buffer,produceFragmentEvent);
     }
 
+    @Override
+    protected void clearBuffer() {
+        super.clearBuffer();
+
+        _entityResolver = DEFAULT_LEXICAL_HANDLER;
+        _dtdHandler = DEFAULT_LEXICAL_HANDLER;
+        _contentHandler = DEFAULT_LEXICAL_HANDLER;
+        _errorHandler = DEFAULT_LEXICAL_HANDLER;
+        _lexicalHandler = DEFAULT_LEXICAL_HANDLER;
+        _namespacePrefixesFeature = false;
+
+        _attributes.clear();
+        _namespacePrefixesIndex = 0;
+        _namespaceAttributesStackIndex = 0;
+
+        for (int i = 0; i < _stack.length && _stack[i] != null; i++) {
+            _stack[i].set(null, null, null, false);
+        }
+        _depth = 0;
+    }
+
     /**
      * Parse the sub-tree (or a whole document) that {@link XMLStreamBuffer}
      * points to, and sends events to handlers.
@@ -301,6 +343,7 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
      *      Follow the same semantics as {@link XMLReader#parse(InputSource)}.
      */
     public final void process() throws SAXException {
+        _depth = 0;
         if(!_fragmentMode) {
             LocatorImpl nullLocator = new LocatorImpl();
             nullLocator.setSystemId(_buffer.getSystemId());
@@ -446,54 +489,41 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
         }
     }
 
+    /**
+     * Process an element and all its descendants.
+     *
+     * <p>
+     * The descendants are processed in a single loop, using an explicit
+     * stack of the elements rather than a recursive call for each level of
+     * nesting, so that the depth of the document is not limited by the
+     * size of the call stack.
+     */
     protected void processElement(String uri, String localName, String qName, boolean inscope) throws SAXException {
-        boolean hasAttributes = false;
-        boolean hasNamespaceAttributes = false;
-        int item = peekStructure();
-        Set<String> prefixSet = inscope ? new HashSet<String>() : Collections.<String>emptySet();
-        if ((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE) {
-            cacheNamespacePrefixStartingIndex();
-            hasNamespaceAttributes = true;
-            item = processNamespaceAttributes(item, inscope, prefixSet);
-        }        
-        if (inscope) {
-            readInscopeNamespaces(prefixSet);
-        }
-
-        if ((item & TYPE_MASK) == T_ATTRIBUTE) {
-            hasAttributes = true;
-            processAttributes(item);
-        }
-
-        _contentHandler.startElement(uri, localName, qName, _attributes);
-
-        if (hasAttributes) {
-            _attributes.clear();
-        }
+        startElement(uri, localName, qName, inscope);
 
         do {
-            item = readEiiState();
+            final int item = readEiiState();
             switch(item) {
                 case STATE_ELEMENT_U_LN_QN:
-                    processElement(readStructureString(), readStructureString(), readStructureString(), false);
+                    startElement(readStructureString(), readStructureString(), readStructureString(), false);
                     break;
                 case STATE_ELEMENT_P_U_LN:
                 {
                     final String p = readStructureString();
                     final String u = readStructureString();
                     final String ln = readStructureString();
-                    processElement(u, ln, getQName(p, ln),false);
+                    startElement(u, ln, getQName(p, ln),false);
                     break;
                 }
                 case STATE_ELEMENT_U_LN: {
                     final String u = readStructureString();
                     final String ln = readStructureString();
-                    processElement(u, ln, ln,false);
+                    startElement(u, ln, ln,false);
                     break;
                 }
                 case STATE_ELEMENT_LN: {
                     final String ln = readStructureString();
-                    processElement("", ln, ln,false);
+                    startElement("", ln, ln,false);
                     break;
                 }
                 case STATE_TEXT_AS_CHAR_ARRAY_SMALL:
@@ -510,6 +540,20 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
                     _contentHandler.characters(_contentCharactersBuffer, start, length);
                     break;
                 }
+                case STATE_TEXT_AS_LATIN1_SMALL:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL:
+                {
+                    final int length = readStructure();
+                    _contentHandler.characters(readContentLatin1(length), 0, length);
+                    break;
+                }
+                case STATE_TEXT_AS_LATIN1_MEDIUM:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM:
+                {
+                    final int length = readStructure16();
+                    _contentHandler.characters(readContentLatin1(length), 0, length);
+                    break;
+                }
                 case STATE_TEXT_AS_CHAR_ARRAY_COPY:
                 {
                     final char[] ch = readContentCharactersCopy();
@@ -520,14 +564,18 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
                 case STATE_TEXT_AS_STRING:
                 {
                     final String s = readContentString();
-                    _contentHandler.characters(s.toCharArray(), 0, s.length());
+                    _contentHandler.characters(getTextCharacters(s), 0, s.length());
                     break;
                 }
                 case STATE_TEXT_AS_OBJECT:
                 {
                     final CharSequence c = (CharSequence)readContentObject();
-                    final String s = c.toString();
-                    _contentHandler.characters(s.toCharArray(), 0, s.length());
+                    if (c instanceof Base64Data) {
+                        processBase64Data((Base64Data)c);
+                    } else {
+                        final String s = c.toString();
+                        _contentHandler.characters(getTextCharacters(s), 0, s.length());
+                    }
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_SMALL:
@@ -546,19 +594,66 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
                     processProcessingInstruction(readStructureString(), readStructureString());
                     break;
                 case STATE_END:
+                    endElement();
                     break;
                 default:
                     throw reportFatalError("Illegal state for child of EII: "+item);
             }
-        } while(item != STATE_END);
-        
-        _contentHandler.endElement(uri, localName, qName);
+        } while(_depth > 0);
+    }
+
+    private void startElement(String uri, String localName, String qName, boolean inscope) throws SAXException {
+        boolean hasAttributes = false;
+        boolean hasNamespaceAttributes = false;
+        int item = peekStructure();
+        Set<String> prefixSet = inscope ? new HashSet<String>() : Collections.<String>emptySet();
+        if ((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE) {
+            cacheNamespacePrefixStartingIndex();
+            hasNamespaceAttributes = true;
+            item = processNamespaceAttributes(item, inscope, prefixSet);
+        }        
+        if (inscope) {
+            readInscopeNamespaces(prefixSet);
+        }
+
+        if ((item & TYPE_MASK) == T_ATTRIBUTE) {
+            hasAttributes = true;
+            processAttributes(item);
+        }
 
-        if (hasNamespaceAttributes) {
+        _contentHandler.startElement(uri, localName, qName, _attributes);
+
+        if (hasAttributes) {
+            _attributes.clear();
+        }
+
+        pushElementStack().set(uri, localName, qName, hasNamespaceAttributes);
+    }
+
+    private void endElement() throws SAXException {
+        final ElementStackEntry e = _stack[--_depth];
+        _contentHandler.endElement(e.uri, e.localName, e.qName);
+
+        if (e.hasNamespaceAttributes) {
             processEndPrefixMapping();
         }
     }
 
+    private ElementStackEntry pushElementStack() {
+        if (_depth == _stack.length) {
+            final ElementStackEntry[] stack = new ElementStackEntry[_depth * 3 / 2 + 1];
+            System.arraycopy(_stack, 0, stack, 0, _depth);
+            _stack = stack;
+        }
+
+        ElementStackEntry e = _stack[_depth];
+        if (e == null) {
+            e = _stack[_depth] = new ElementStackEntry();
+        }
+        _depth++;
+        return e;
+    }
+
     private void readInscopeNamespaces(Set<String> prefixSet) throws SAXException {
         for (Map.Entry<String, String> e : _buffer.getInscopeNamespaces().entrySet()) {
             String key = fixNull(e.getKey());
@@ -598,6 +693,7 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
     
     private int processNamespaceAttributes(int item,boolean collectPrefixes, Set<String> prefixSet) throws SAXException {
         do {
+            readStructure();
             String prefix;
             switch(getNIIState(item)) {
                 case STATE_NAMESPACE_ATTRIBUTE:
@@ -633,7 +729,6 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
                 default:
                     throw reportFatalError("Illegal state: "+item);
             }
-            readStructure();
             
             item = peekStructure();
         } while((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE);
@@ -646,6 +741,7 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
     
     private void processAttributes(int item) throws SAXException {
         do {
+            readStructure();
             switch(getAIIState(item)) {
                 case STATE_ATTRIBUTE_U_LN_QN:
                     _attributes.addAttributeWithQName(readStructureString(), readStructureString(), readStructureString(), readStructureString(), readContentString());
@@ -672,7 +768,6 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
                 default:
                     throw reportFatalError("Illegal state: "+item);
             }
-            readStructure();
             
             item = peekStructure();
         } while((item & TYPE_MASK) == T_ATTRIBUTE);
@@ -727,7 +822,70 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
     }
     
     private void processComment(String s)  throws SAXException {
-        processComment(s.toCharArray(), 0, s.length());
+        processComment(getTextCharacters(s), 0, s.length());
+    }
+
+    /**
+     * Copy the characters of a string to the scratch text buffer.
+     */
+    private char[] getTextCharacters(String s) {
+        final int length = s.length();
+        if (_textBuffer.length < length) {
+            _textBuffer = new char[Math.max(length, _textBuffer.length * 2)];
+        }
+        s.getChars(0, length, _textBuffer, 0);
+        return _textBuffer;
+    }
+
+    /**
+     * Report binary data as base64 encoded characters.
+     *
+     * <p>
+     * The data is encoded in chunks of {@link #BASE64_CHUNK_SIZE}
+     * characters, so that the whole encoded data is never held in memory.
+     */
+    private void processBase64Data(Base64Data data) throws SAXException {
+        if (_base64Chars == null) {
+            _base64Chars = new char[BASE64_CHUNK_SIZE];
+        }
+
+        // The bytes read from a data handler are retained by the data, so
+        // that the data source is read once whatever the number of replays
+        final byte[] bytes = data.get();
+        final int length = data.getDataLen();
+        for (int i = 0; i < length; i += BASE64_CHUNK_SIZE / 4 * 3) {
+            processBase64Chunk(bytes, i, Math.min(length - i, BASE64_CHUNK_SIZE / 4 * 3));
+        }
+    }
+
+    private void processBase64Chunk(byte[] bytes, int start, int length) throws SAXException {
+        final char[] ch = _base64Chars;
+        final int end = start + length;
+        int c = 0;
+        int i = start;
+        for (; i + 2 < end; i += 3) {
+            final int b = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8) | (bytes[i + 2] & 0xFF);
+            ch[c++] = BASE64[b >>> 18];
+            ch[c++] = BASE64[(b >>> 12) & 0x3F];
+            ch[c++] = BASE64[(b >>> 6) & 0x3F];
+            ch[c++] = BASE64[b & 0x3F];
+        }
+
+        if (i + 1 == end) {
+            final int b = (bytes[i] & 0xFF) << 16;
+            ch[c++] = BASE64[b >>> 18];
+            ch[c++] = BASE64[(b >>> 12) & 0x3F];
+            ch[c++] = '=';
+            ch[c++] = '=';
+        } else if (i + 2 == end) {
+            final int b = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8);
+            ch[c++] = BASE64[b >>> 18];
+            ch[c++] = BASE64[(b >>> 12) & 0x3F];
+            ch[c++] = BASE64[(b >>> 6) & 0x3F];
+            ch[c++] = '=';
+        }
+
+        _contentHandler.characters(ch, 0, c);
     }
     
     private void processComment(char[] ch, int start, int length) throws SAXException {
@@ -739,4 +897,20 @@ public class SAXBufferProcessor extends AbstractProcessor implements XMLReader {
     }
 
     private static final DefaultWithLexicalHandler DEFAULT_LEXICAL_HANDLER = new DefaultWithLexicalHandler();
+
+    private static final class ElementStackEntry {
+        String uri;
+        String localName;
+        String qName;
+        // True if the element declares namespaces, whose prefix mappings
+        // end with the element
+        boolean hasNamespaceAttributes;
+
+        void set(String uri, String localName, String qName, boolean hasNamespaceAttributes) {
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.hasNamespaceAttributes = hasNamespaceAttributes;
+        }
+    }
 }
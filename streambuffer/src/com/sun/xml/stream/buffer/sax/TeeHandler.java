@@ -0,0 +1,391 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * A {@link ContentHandler} and {@link LexicalHandler} that reports each
+ * event it receives to a number of other handlers.
+ *
+ * <p>
+ * A buffer that is consumed by several handlers may be written once to a
+ * TeeHandler, rather than once to each handler, so that the buffer is
+ * processed only once:
+ * <pre>
+ * buffer.writeTo(new TeeHandler(verifier, logger, unmarshaller), false);
+ * </pre>
+ * The handlers receive each event in the order they were added. The
+ * characters and attributes of an event are shared by the handlers, a
+ * handler must not modify them.
+ *
+ * <p>
+ * A handler that is not interested in the rest of the events may signal it
+ * by implementing {@link Finishable}. If the TeeHandler is configured to
+ * stop finished handlers (see {@link #setStopFinishedHandlers}), the events
+ * after the one for which the handler returned true from
+ * {@link Finishable#isFinished} are not reported to the handler.
+ */
+public class TeeHandler implements ContentHandler, LexicalHandler {
+    /**
+     * A handler that can signal that it is not interested in further events.
+     */
+    public interface Finishable {
+        /**
+         * @return True if the handler is not interested in further events.
+         */
+        boolean isFinished();
+    }
+
+    private ContentHandler[] _contentHandlers = new ContentHandler[4];
+    private LexicalHandler[] _lexicalHandlers = new LexicalHandler[4];
+    private int _size;
+
+    /*
+     * The handlers that are not finished, in the first _count entries
+     */
+    private ContentHandler[] _activeContentHandlers = new ContentHandler[4];
+    private LexicalHandler[] _activeLexicalHandlers = new LexicalHandler[4];
+    private Finishable[] _activeFinishables = new Finishable[4];
+    private int _count;
+
+    private boolean _stopFinishedHandlers;
+
+    /**
+     * Create a TeeHandler with no handlers.
+     */
+    public TeeHandler() {
+    }
+
+    /**
+     * Create a TeeHandler reporting to handlers.
+     *
+     * <p>
+     * A handler that is also a {@link LexicalHandler} receives the lexical
+     * events.
+     *
+     * @param handlers
+     * The handlers.
+     */
+    public TeeHandler(ContentHandler... handlers) {
+        for (ContentHandler handler : handlers) {
+            add(handler);
+        }
+    }
+
+    /**
+     * Add a handler.
+     *
+     * <p>
+     * If the handler is also a {@link LexicalHandler} then it receives the
+     * lexical events.
+     *
+     * @param handler
+     * The handler.
+     */
+    public final void add(ContentHandler handler) {
+        add(handler, (handler instanceof LexicalHandler) ? (LexicalHandler)handler : null);
+    }
+
+    /**
+     * Add a handler and the handler of its lexical events.
+     *
+     * @param handler
+     * The handler.
+     * @param lexicalHandler
+     * The handler of lexical events, may be null.
+     */
+    public final void add(ContentHandler handler, LexicalHandler lexicalHandler) {
+        if (handler == null) {
+            throw new NullPointerException("handler");
+        }
+
+        if (_size == _contentHandlers.length) {
+            _contentHandlers = copyOf(_contentHandlers, new ContentHandler[_size * 2], _size);
+            _lexicalHandlers = copyOf(_lexicalHandlers, new LexicalHandler[_size * 2], _size);
+        }
+        _contentHandlers[_size] = handler;
+        _lexicalHandlers[_size++] = lexicalHandler;
+
+        activate(handler, lexicalHandler);
+    }
+
+    /**
+     * Get the number of handlers.
+     *
+     * @return The number of handlers, including finished handlers.
+     */
+    public final int getHandlerCount() {
+        return _size;
+    }
+
+    /**
+     * Set if handlers that are finished are stopped.
+     *
+     * @param stopFinishedHandlers
+     * True if events are no longer reported to a {@link Finishable}
+     * handler once it is finished. False if events are reported to
+     * all handlers, this is the default.
+     */
+    public final void setStopFinishedHandlers(boolean stopFinishedHandlers) {
+        _stopFinishedHandlers = stopFinishedHandlers;
+    }
+
+    public final boolean isStopFinishedHandlers() {
+        return _stopFinishedHandlers;
+    }
+
+    /**
+     * Check if all handlers are stopped.
+     *
+     * @return True if no handler receives further events.
+     */
+    public final boolean isFinished() {
+        return _count == 0;
+    }
+
+    /**
+     * Report further events to all handlers, including the handlers that
+     * are stopped.
+     */
+    public final void reset() {
+        for (int i = 0; i < _count; i++) {
+            _activeContentHandlers[i] = null;
+            _activeLexicalHandlers[i] = null;
+            _activeFinishables[i] = null;
+        }
+        _count = 0;
+
+        for (int i = 0; i < _size; i++) {
+            activate(_contentHandlers[i], _lexicalHandlers[i]);
+        }
+    }
+
+    public void setDocumentLocator(Locator locator) {
+        for (int i = 0; i < _count; i++) {
+            _activeContentHandlers[i].setDocumentLocator(locator);
+        }
+    }
+
+    public void startDocument() throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].startDocument();
+            i = next(i);
+        }
+    }
+
+    public void endDocument() throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].endDocument();
+            i = next(i);
+        }
+    }
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].startPrefixMapping(prefix, uri);
+            i = next(i);
+        }
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].endPrefixMapping(prefix);
+            i = next(i);
+        }
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].startElement(uri, localName, qName, atts);
+            i = next(i);
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].endElement(uri, localName, qName);
+            i = next(i);
+        }
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].characters(ch, start, length);
+            i = next(i);
+        }
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].ignorableWhitespace(ch, start, length);
+            i = next(i);
+        }
+    }
+
+    public void processingInstruction(String target, String data) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].processingInstruction(target, data);
+            i = next(i);
+        }
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            _activeContentHandlers[i].skippedEntity(name);
+            i = next(i);
+        }
+    }
+
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.startDTD(name, publicId, systemId);
+            }
+            i = next(i);
+        }
+    }
+
+    public void endDTD() throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.endDTD();
+            }
+            i = next(i);
+        }
+    }
+
+    public void startEntity(String name) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.startEntity(name);
+            }
+            i = next(i);
+        }
+    }
+
+    public void endEntity(String name) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.endEntity(name);
+            }
+            i = next(i);
+        }
+    }
+
+    public void startCDATA() throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.startCDATA();
+            }
+            i = next(i);
+        }
+    }
+
+    public void endCDATA() throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.endCDATA();
+            }
+            i = next(i);
+        }
+    }
+
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        for (int i = 0; i < _count; ) {
+            final LexicalHandler h = _activeLexicalHandlers[i];
+            if (h != null) {
+                h.comment(ch, start, length);
+            }
+            i = next(i);
+        }
+    }
+
+    /**
+     * Get the index of the handler that receives an event after the
+     * handler at index i, stopping the handler at index i if it is finished.
+     */
+    private int next(int i) {
+        final Finishable f = _activeFinishables[i];
+        if (f == null || !_stopFinishedHandlers || !f.isFinished()) {
+            return i + 1;
+        }
+
+        // Remove the handler keeping the order of the others
+        final int moved = --_count - i;
+        if (moved > 0) {
+            System.arraycopy(_activeContentHandlers, i + 1, _activeContentHandlers, i, moved);
+            System.arraycopy(_activeLexicalHandlers, i + 1, _activeLexicalHandlers, i, moved);
+            System.arraycopy(_activeFinishables, i + 1, _activeFinishables, i, moved);
+        }
+        _activeContentHandlers[_count] = null;
+        _activeLexicalHandlers[_count] = null;
+        _activeFinishables[_count] = null;
+        return i;
+    }
+
+    private void activate(ContentHandler handler, LexicalHandler lexicalHandler) {
+        if (_count == _activeContentHandlers.length) {
+            _activeContentHandlers = copyOf(_activeContentHandlers, new ContentHandler[_count * 2], _count);
+            _activeLexicalHandlers = copyOf(_activeLexicalHandlers, new LexicalHandler[_count * 2], _count);
+            _activeFinishables = copyOf(_activeFinishables, new Finishable[_count * 2], _count);
+        }
+        _activeContentHandlers[_count] = handler;
+        _activeLexicalHandlers[_count] = lexicalHandler;
+        _activeFinishables[_count++] = (handler instanceof Finishable) ? (Finishable)handler : null;
+    }
+
+    private static <T> T[] copyOf(T[] a, T[] b, int length) {
+        System.arraycopy(a, 0, b, 0, length);
+        return b;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * The policy of a {@link StreamWriterBufferProcessor} for calling
+ * {@link XMLStreamWriter#flush()} while it writes a buffer.
+ *
+ * <p>
+ * Flushing a writer that is backed by a socket sends what is written so
+ * far, so flushing often results in many small writes to the socket.
+ * A policy that flushes less often sends fewer, larger writes.
+ *
+ * @see StreamWriterBufferProcessor#setFlushPolicy
+ */
+public final class FlushPolicy {
+    private static final int KIND_NEVER = 0;
+    private static final int KIND_TOP_LEVEL = 1;
+    private static final int KIND_AT_END = 2;
+    private static final int KIND_ITEMS = 3;
+    private static final int KIND_CHARACTERS = 4;
+
+    /**
+     * The writer is never flushed.
+     */
+    public static final FlushPolicy NEVER = new FlushPolicy(KIND_NEVER, 0);
+
+    /**
+     * The writer is flushed before each item at the top level of a
+     * document is written, but not at the end of the document, and
+     * never when a fragment is written.
+     *
+     * <p>
+     * This is the default policy.
+     */
+    public static final FlushPolicy TOP_LEVEL = new FlushPolicy(KIND_TOP_LEVEL, 0);
+
+    /**
+     * The writer is flushed once when the document or fragment is written.
+     */
+    public static final FlushPolicy AT_END = new FlushPolicy(KIND_AT_END, 0);
+
+    private final int _kind;
+    private final int _interval;
+
+    private FlushPolicy(int kind, int interval) {
+        _kind = kind;
+        _interval = interval;
+    }
+
+    /**
+     * Get a policy that flushes the writer after a number of items, and
+     * when the document or fragment is written.
+     *
+     * <p>
+     * An item is the start or end of an element, a text, a comment or a
+     * processing instruction.
+     *
+     * @param items
+     * The number of items written between flushes.
+     * @return The policy.
+     */
+    public static FlushPolicy everyItems(int items) {
+        if (items <= 0) {
+            throw new IllegalArgumentException("items must be positive");
+        }
+        return new FlushPolicy(KIND_ITEMS, items);
+    }
+
+    /**
+     * Get a policy that flushes the writer after a number of characters
+     * of text and comments, and when the document or fragment is written.
+     *
+     * <p>
+     * The characters are counted before they are encoded by the writer,
+     * so the number of characters approximates the number of bytes of
+     * a mostly textual document written in a single byte encoding. The
+     * markup written by the writer is not counted.
+     *
+     * @param characters
+     * The number of characters written between flushes.
+     * @return The policy.
+     */
+    public static FlushPolicy everyCharacters(int characters) {
+        if (characters <= 0) {
+            throw new IllegalArgumentException("characters must be positive");
+        }
+        return new FlushPolicy(KIND_CHARACTERS, characters);
+    }
+
+    boolean flushesTopLevel() {
+        return _kind == KIND_TOP_LEVEL;
+    }
+
+    boolean flushesAtEnd() {
+        return _kind > KIND_TOP_LEVEL;
+    }
+
+    boolean countsCharacters() {
+        return _kind == KIND_CHARACTERS;
+    }
+
+    int getInterval() {
+        return _interval;
+    }
+
+    @Override
+    public String toString() {
+        switch (_kind) {
+            case KIND_NEVER:
+                return "NEVER";
+            case KIND_TOP_LEVEL:
+                return "TOP_LEVEL";
+            case KIND_AT_END:
+                return "AT_END";
+            case KIND_ITEMS:
+                return "everyItems(" + _interval + ")";
+            default:
+                return "everyCharacters(" + _interval + ")";
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import java.util.Arrays;
+
+/**
+ * A hash index of the namespace declarations in scope of a
+ * {@link StreamReaderBufferProcessor}.
+ *
+ * <p>
+ * The declarations are held by the processor in a stack of arrays, where a
+ * declaration is identified by its index. The index maps a prefix to the
+ * most recent declaration of the prefix, and a namespace name to the most
+ * recent declaration of the namespace name. Earlier declarations of the same
+ * prefix or namespace name are chained from the more recent ones, so that a
+ * binding shadowed by a declaration is restored when the declaration
+ * goes out of scope.
+ *
+ * <p>
+ * Declarations are pushed in increasing order of index and popped in
+ * decreasing order of index, both in constant time.
+ */
+final class NamespaceScopeIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Table _prefixes = new Table();
+
+    private final Table _namespaceNames = new Table();
+
+    /*
+     * The index of the previous declaration of the prefix and of the
+     * namespace name of each declaration, or -1
+     */
+    private int[] _previousPrefix = new int[INITIAL_CAPACITY];
+    private int[] _previousNamespaceName = new int[INITIAL_CAPACITY];
+
+    /**
+     * Add a declaration to the index.
+     */
+    void push(int index, String prefix, String namespaceName) {
+        if (index >= _previousPrefix.length) {
+            final int length = Math.max(index + 1, _previousPrefix.length * 2);
+            _previousPrefix = copyOf(_previousPrefix, length);
+            _previousNamespaceName = copyOf(_previousNamespaceName, length);
+        }
+
+        _previousPrefix[index] = _prefixes.put(prefix, index);
+        _previousNamespaceName[index] = _namespaceNames.put(namespaceName, index);
+    }
+
+    /**
+     * Remove the most recent declaration from the index.
+     */
+    void pop(int index, String prefix, String namespaceName) {
+        _prefixes.put(prefix, _previousPrefix[index]);
+        _namespaceNames.put(namespaceName, _previousNamespaceName[index]);
+    }
+
+    /**
+     * Remove all declarations from the index.
+     */
+    void clear() {
+        _prefixes.clear();
+        _namespaceNames.clear();
+    }
+
+    /**
+     * Get the most recent declaration of a prefix.
+     *
+     * @return The index of the declaration, or -1 if the prefix is not declared.
+     */
+    int getPrefixDeclaration(String prefix) {
+        return _prefixes.get(prefix);
+    }
+
+    /**
+     * Get the most recent declaration of a namespace name.
+     *
+     * @return The index of the declaration, or -1 if the namespace name is not declared.
+     */
+    int getNamespaceNameDeclaration(String namespaceName) {
+        return _namespaceNames.get(namespaceName);
+    }
+
+    /**
+     * Get the declaration of the same namespace name that precedes a declaration.
+     *
+     * @return The index of the declaration, or -1 if there is none.
+     */
+    int getPreviousNamespaceNameDeclaration(int index) {
+        return _previousNamespaceName[index];
+    }
+
+    private static int[] copyOf(int[] a, int length) {
+        final int[] b = new int[length];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * Open addressing hash table of strings to the index of a declaration.
+     *
+     * <p>
+     * Keys are never removed until the table is cleared, a key that is no
+     * longer declared maps to -1. The number of distinct prefixes and
+     * namespace names of a document is small, and this avoids deletions
+     * from the table when declarations go out of scope.
+     */
+    private static final class Table {
+        private String[] _keys = new String[INITIAL_CAPACITY];
+        private int[] _values = new int[INITIAL_CAPACITY];
+        private int _size;
+
+        /**
+         * Map a key to a declaration.
+         *
+         * @return The declaration the key was previously mapped to, or -1.
+         */
+        int put(String key, int value) {
+            if (key == null) {
+                key = "";
+            }
+
+            final int mask = _keys.length - 1;
+            int slot = hash(key) & mask;
+            String k;
+            while ((k = _keys[slot]) != null) {
+                if (k == key || k.equals(key)) {
+                    final int previous = _values[slot];
+                    _values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (value == -1) {
+                return -1;
+            }
+
+            _keys[slot] = key;
+            _values[slot] = value;
+            if (++_size * 2 > _keys.length) {
+                rehash(_keys.length * 2);
+            }
+            return -1;
+        }
+
+        int get(String key) {
+            if (key == null) {
+                key = "";
+            }
+
+            final int mask = _keys.length - 1;
+            int slot = hash(key) & mask;
+            String k;
+            while ((k = _keys[slot]) != null) {
+                if (k == key || k.equals(key)) {
+                    return _values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void clear() {
+            if (_size > 0) {
+                Arrays.fill(_keys, null);
+                _size = 0;
+            }
+        }
+
+        private void rehash(int capacity) {
+            final String[] keys = _keys;
+            final int[] values = _values;
+            _keys = new String[capacity];
+            _values = new int[capacity];
+
+            final int mask = capacity - 1;
+            for (int i = 0; i < keys.length; i++) {
+                final String k = keys[i];
+                if (k != null) {
+                    int slot = hash(k) & mask;
+                    while (_keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    _keys[slot] = k;
+                    _values[slot] = values[i];
+                }
+            }
+        }
+
+        private static int hash(String key) {
+            final int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the in-scope namespaces of a
+ * {@link StreamReaderBufferProcessor}.
+ *
+ * <p>
+ * The snapshot is taken from the first declarations of the namespace
+ * declaration stack of the processor, and it may be shared by all the marks
+ * created while those declarations are in scope.
+ */
+final class NamespaceSnapshot extends AbstractMap<String,String> {
+    private final String[] _prefixes;
+    private final String[] _namespaceNames;
+
+    /**
+     * The number of declarations of the stack the snapshot was taken from.
+     */
+    private final int _declarationCount;
+
+    private Set<Map.Entry<String,String>> _entrySet;
+
+    NamespaceSnapshot(String[] prefixes, String[] namespaceNames, int declarationCount) {
+        final String[] p = new String[declarationCount];
+        final String[] n = new String[declarationCount];
+        int size = 0;
+
+        // The most recent declaration of a prefix takes precedence
+        declarations: for (int i = declarationCount - 1; i >= 0; i--) {
+            final String prefix = prefixes[i];
+            for (int j = 0; j < size; j++) {
+                if (equals(prefix, p[j])) {
+                    continue declarations;
+                }
+            }
+            p[size] = prefix;
+            n[size++] = namespaceNames[i];
+        }
+
+        if (size < declarationCount) {
+            _prefixes = new String[size];
+            _namespaceNames = new String[size];
+            System.arraycopy(p, 0, _prefixes, 0, size);
+            System.arraycopy(n, 0, _namespaceNames, 0, size);
+        } else {
+            _prefixes = p;
+            _namespaceNames = n;
+        }
+        _declarationCount = declarationCount;
+    }
+
+    int getDeclarationCount() {
+        return _declarationCount;
+    }
+
+    @Override
+    public int size() {
+        return _prefixes.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        final int i = indexOf(key);
+        return (i >= 0) ? _namespaceNames[i] : null;
+    }
+
+    @Override
+    public Set<Map.Entry<String,String>> entrySet() {
+        if (_entrySet == null) {
+            _entrySet = new AbstractSet<Map.Entry<String,String>>() {
+                public int size() {
+                    return _prefixes.length;
+                }
+
+                public Iterator<Map.Entry<String,String>> iterator() {
+                    return new Iterator<Map.Entry<String,String>>() {
+                        private int i = 0;
+
+                        public boolean hasNext() {
+                            return i < _prefixes.length;
+                        }
+
+                        public Map.Entry<String,String> next() {
+                            if (i == _prefixes.length) {
+                                throw new NoSuchElementException();
+                            }
+                            return new Entry(i++);
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+        return _entrySet;
+    }
+
+    private final class Entry implements Map.Entry<String,String> {
+        private final int _index;
+
+        Entry(int index) {
+            _index = index;
+        }
+
+        public String getKey() {
+            return _prefixes[_index];
+        }
+
+        public String getValue() {
+            return _namespaceNames[_index];
+        }
+
+        public String setValue(String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return NamespaceSnapshot.equals(getKey(), e.getKey())
+                    && NamespaceSnapshot.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            final String k = getKey();
+            final String v = getValue();
+            return ((k == null) ? 0 : k.hashCode()) ^ ((v == null) ? 0 : v.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < _prefixes.length; i++) {
+            if (equals(key, _prefixes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+}
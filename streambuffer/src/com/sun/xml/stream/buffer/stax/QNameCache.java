@@ -0,0 +1,94 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import javax.xml.namespace.QName;
+
+/**
+ * A cache of the {@link QName} instances returned by a
+ * {@link StreamReaderBufferProcessor}, so that the repeated names of a
+ * buffer return the same instance.
+ *
+ * <p>
+ * The cache is a direct mapped table of fixed size. The strings of a name
+ * are compared by identity first, since the structure strings of a buffer
+ * are mostly shared, and by value otherwise. A name that is not in the
+ * cache replaces the name in its slot, so the memory retained by the
+ * cache is bounded whatever the number of distinct names.
+ */
+final class QNameCache {
+    private static final int SIZE = 256;
+
+    private final QName[] _names = new QName[SIZE];
+
+    /**
+     * Get the QName of a namespace name, local name and prefix.
+     *
+     * <p>
+     * Names with a null string are not cached, and are passed to the
+     * {@link QName} constructor as is.
+     */
+    QName get(String uri, String localName, String prefix) {
+        if (uri == null || localName == null || prefix == null) {
+            return new QName(uri, localName, prefix);
+        }
+
+        final int slot = hash(uri, localName, prefix) & (SIZE - 1);
+        QName name = _names[slot];
+        if (name == null
+                || !equals(localName, name.getLocalPart())
+                || !equals(uri, name.getNamespaceURI())
+                || !equals(prefix, name.getPrefix())) {
+            _names[slot] = name = new QName(uri, localName, prefix);
+        }
+        return name;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == b || a.equals(b);
+    }
+
+    private static int hash(String uri, String localName, String prefix) {
+        final int h = ((localName.hashCode() * 31) + uri.hashCode()) * 31 + prefix.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
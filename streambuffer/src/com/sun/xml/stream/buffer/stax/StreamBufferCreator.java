@@ -61,16 +61,21 @@ abstract class StreamBufferCreator extends AbstractCreator {
         if (uri != null && uri.length() > 0) {
             if (prefix != null && prefix.length() > 0) {
                 item |= FLAG_PREFIX;
-                storeStructureString(prefix);
             }
 
             item |= FLAG_URI;
-            storeStructureString(uri);
         }
 
-        storeStructureString(localName);
+        // The item is stored before the names, which may be stored in the structure
+        storeNameItem(item);
 
-        storeStructure(item);
+        if ((item & FLAG_PREFIX) != 0) {
+            storeStructureString(prefix);
+        }
+        if ((item & FLAG_URI) != 0) {
+            storeStructureString(uri);
+        }
+        storeStructureString(localName);
     }
 
     protected final void storeNamespaceAttribute(String prefix, String uri) {
@@ -78,15 +83,20 @@ abstract class StreamBufferCreator extends AbstractCreator {
 
         if (prefix != null && prefix.length() > 0) {
             item |= FLAG_PREFIX;
-            storeStructureString(prefix);
         }
 
         if (uri != null && uri.length() > 0) {
             item |= FLAG_URI;
-            storeStructureString(uri);
         }
 
         storeStructure(item);
+
+        if ((item & FLAG_PREFIX) != 0) {
+            storeStructureString(prefix);
+        }
+        if ((item & FLAG_URI) != 0) {
+            storeStructureString(uri);
+        }
     }
 
     protected final void storeAttribute(String prefix, String uri, String localName, String type, String value) {
@@ -111,7 +121,7 @@ abstract class StreamBufferCreator extends AbstractCreator {
     }
 
     protected final void storeProcessingInstruction(String target, String data) {
-        storeStructure(T_PROCESSING_INSTRUCTION);
+        storeMarkupItem(T_PROCESSING_INSTRUCTION);
         storeStructureString(target);
         storeStructureString(data);
     }
@@ -188,7 +188,7 @@ public class StreamReaderBufferCreator extends StreamBufferCreator {
             _eventType = reader.next();
         }
 
-        storeStructure(T_END);
+        storeEnd();
     }
 
     private void storeElementAndChildren(XMLStreamReader reader) throws XMLStreamException {
@@ -216,7 +216,7 @@ public class StreamReaderBufferCreator extends StreamBufferCreator {
                     break;
                 case XMLStreamReader.END_ELEMENT:
                     depth--;
-                    storeStructure(T_END);
+                    storeEnd();
                     break;
                 case XMLStreamReader.NAMESPACE:
                     storeNamespaceAttributes(reader);
@@ -229,9 +229,8 @@ public class StreamReaderBufferCreator extends StreamBufferCreator {
                 case XMLStreamReader.CDATA: {
                     CharSequence c = reader.getPCDATA();
                     if (c instanceof Base64Data) {
-                        storeStructure(T_TEXT_AS_OBJECT);
                         //Instead of clone the Base64Data, the original Base64Data instance is used here to preserve the DataHandler
-                        storeContentObject(c);
+                        storeContentObject(T_TEXT_AS_OBJECT, c);
                     } else {
                         storeContentCharacters(T_TEXT_AS_CHAR_ARRAY,
                                 reader.getTextCharacters(), reader.getTextStart(),
@@ -272,7 +271,7 @@ public class StreamReaderBufferCreator extends StreamBufferCreator {
                     break;
                 case XMLStreamReader.END_ELEMENT:
                     depth--;
-                    storeStructure(T_END);
+                    storeEnd();
                     break;
                 case XMLStreamReader.NAMESPACE:
                     storeNamespaceAttributes(reader);
@@ -360,7 +359,7 @@ public class StreamReaderBufferCreator extends StreamBufferCreator {
      * you are doing).
      */
     public void storeEndElement() {
-        storeStructure(T_END);
+        storeEnd();
     }
 
     private void storeNamespaceAttributes(XMLStreamReader reader) {
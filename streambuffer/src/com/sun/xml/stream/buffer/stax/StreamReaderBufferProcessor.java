@@ -44,6 +44,7 @@ import com.sun.xml.stream.buffer.AbstractProcessor;
 import com.sun.xml.stream.buffer.AttributesHolder;
 import com.sun.xml.stream.buffer.XMLStreamBuffer;
 import com.sun.xml.stream.buffer.XMLStreamBufferMark;
+import org.jvnet.staxex.Base64Data;
 import org.jvnet.staxex.NamespaceContextEx;
 import org.jvnet.staxex.XMLStreamReaderEx;
 
@@ -89,6 +90,30 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
     protected String[] _namespaceAIIsNamespaceName = new String[CACHE_SIZE];
     protected int _namespaceAIIsEnd;
 
+    // Hash index of the in-scope declarations of the namespace declaration arrays
+    private final NamespaceScopeIndex _namespaceIndex = new NamespaceScopeIndex();
+
+    // Snapshot of the first declarations of the namespace declaration arrays,
+    // shared by the marks created while those declarations are in scope
+    private NamespaceSnapshot _namespaceSnapshot;
+
+    // The text content of an element or the value of an attribute read by
+    // the typed accessors. The content is either a typed value or a range of
+    // characters, that are copied to the value buffer if the content is
+    // split into more than one text item
+    private Object _valueObject;
+    private char[] _valueCharacters;
+    private int _valueStart;
+    private int _valueLength;
+    private char[] _valueBuffer = new char[CACHE_SIZE * 4];
+
+    // The state saved by mark(), created on the first mark
+    private ReaderState _markState;
+    private boolean _marked;
+
+    // Cache of the QName instances of element and attribute names
+    private final QNameCache _qNameCache = new QNameCache();
+
     // Internal namespace context implementation
     protected InternalNamespaceContext _nsCtx = new InternalNamespaceContext();
 
@@ -99,9 +124,19 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
      * Holder of the attributes.
      *
      * Be careful that this follows the SAX convention of using "" instead of null.
+     * The attributes of an element are decoded on first access, see
+     * {@link #decodeAttributes()}.
      */
     protected AttributesHolder _attributeCache;
 
+    // The position of the attributes of the current element
+    // if they have not been decoded yet
+    private final Position _attributesPosition = new Position();
+    private boolean _attributesPending;
+
+    // The position of the processor while the attributes are decoded
+    private final Position _position = new Position();
+
     // Characters as a CharSequence
     protected CharSequence _charSequence;
 
@@ -110,6 +145,12 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
     protected int _textOffset;
     protected int _textLen;
 
+    // Whether the characters are whitespace only, as known from the item of the text
+    private static final int WHITESPACE_UNKNOWN = 0;
+    private static final int WHITESPACE = 1;
+    private static final int NOT_WHITESPACE = 2;
+    private int _textWhitespace;
+
     protected String _piTarget;
     protected String _piData;
 
@@ -156,8 +197,12 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
         _completionState = PARSING;
         _namespaceAIIsEnd = 0;
+        _namespaceIndex.clear();
+        _namespaceSnapshot = null;
+        _attributesPending = false;
         _characters = null;
         _charSequence = null;
+        _marked = false;
         _eventType = START_DOCUMENT;
     }
 
@@ -167,8 +212,8 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
      * from the newly discovered element.
      *
      * <p>
-     * (Ideally we should have a method that works against the current position,
-     * but the way the data structure is read makes this somewhat difficult.)
+     * (See {@link #markCurrentElement()} for a method that works against
+     * the current position.)
      *
      * This creates a new {@link XMLStreamBufferMark} that shares the underlying
      * data storage, thus it's fairly efficient.
@@ -178,19 +223,14 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             int s = peekStructure();
             if((s &TYPE_MASK)==T_ELEMENT) {
                 // next is start element.
-                Map<String,String> inscope = new HashMap<String, String>(_namespaceAIIsEnd);
-
-                for (int i=0 ; i<_namespaceAIIsEnd; i++)
-                    inscope.put(_namespaceAIIsPrefix[i],_namespaceAIIsNamespaceName[i]);
-
-                XMLStreamBufferMark mark = new XMLStreamBufferMark(inscope, this);
+                XMLStreamBufferMark mark = new XMLStreamBufferMark(getNamespaceSnapshot(_namespaceAIIsEnd), this);
                 next();
                 return mark;
             } else if((s &TYPE_MASK)==T_DOCUMENT) {
                 //move the pointer to next structure.
                 readStructure();
                 //mark the next start element
-                XMLStreamBufferMark mark = new XMLStreamBufferMark(new HashMap<String, String>(_namespaceAIIsEnd), this);
+                XMLStreamBufferMark mark = new XMLStreamBufferMark(getNamespaceSnapshot(_namespaceAIIsEnd), this);
                 next();
                 return mark;
             }
@@ -200,6 +240,114 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         }
     }
 
+    /**
+     * Returns a {@link XMLStreamBufferMark} that captures the infoset starting
+     * from the current element.
+     *
+     * <p>
+     * The position of the reader is not changed.
+     *
+     * <p>
+     * The in-scope namespaces of the mark are those in scope of the parent of
+     * the element. They are held by an immutable map that is shared by the
+     * marks of sibling elements, and thus marking many elements in turn is
+     * cheap.
+     *
+     * This creates a new {@link XMLStreamBufferMark} that shares the underlying
+     * data storage, thus it's fairly efficient.
+     *
+     * @throws XMLStreamException
+     * If the current event is not {@link #START_ELEMENT}.
+     */
+    public XMLStreamBuffer markCurrentElement() throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException("Current event is not START_ELEMENT");
+        }
+
+        final Map<String,String> inscope = (_depth == 1 && isInscope(0))
+                ? _buffer.getInscopeNamespaces()
+                : getNamespaceSnapshot(_stackTop.namespaceAIIsStart);
+        return createElementMark(inscope);
+    }
+
+    /**
+     * Marks the current position of the reader, so that the reader may be
+     * rewound to it with {@link #reset()}.
+     *
+     * <p>
+     * The position includes the current event, the stack of elements and
+     * the in-scope namespaces. A reader has a single mark, and marking
+     * again replaces it. The mark is not consumed by {@link #reset()}, and
+     * the reader may be rewound to it any number of times.
+     *
+     * <p>
+     * Marking copies the element and namespace stacks of the reader. It does
+     * not create a new processor or {@link XMLStreamBufferMark}, and after
+     * the first mark it does not allocate unless the stacks have grown.
+     */
+    public final void mark() {
+        if (_markState == null) {
+            _markState = new ReaderState();
+        }
+        _markState.save();
+        _marked = true;
+    }
+
+    /**
+     * Rewinds the reader to the position saved by the last call of
+     * {@link #mark()}.
+     *
+     * @throws IllegalStateException
+     * If the reader is not marked, or the buffer of the reader was
+     * changed since it was marked.
+     */
+    public final void reset() {
+        if (!_marked) {
+            throw new IllegalStateException("Reader is not marked");
+        }
+        _markState.restore();
+    }
+
+    @Override
+    protected void clearBuffer() {
+        super.clearBuffer();
+
+        // Do not keep the names of the buffer while the processor is idle
+        for (int i = 0; i < _stack.length && _stack[i] != null; i++) {
+            _stack[i].clear();
+        }
+        Arrays.fill(_namespaceAIIsPrefix, null);
+        Arrays.fill(_namespaceAIIsNamespaceName, null);
+
+        _depth = 0;
+        _stackTop = null;
+        _namespaceAIIsEnd = 0;
+        _namespaceIndex.clear();
+        _namespaceSnapshot = null;
+        _attributeCache.clear();
+        _attributesPending = false;
+        _attributesPosition.clear();
+        _position.clear();
+        _characters = null;
+        _charSequence = null;
+        _piTarget = _piData = null;
+        _marked = false;
+        if (_markState != null) {
+            _markState.clear();
+        }
+    }
+
+    private Map<String,String> getNamespaceSnapshot(int declarationCount) {
+        if (declarationCount == 0) {
+            return Collections.emptyMap();
+        }
+
+        if (_namespaceSnapshot == null || _namespaceSnapshot.getDeclarationCount() != declarationCount) {
+            _namespaceSnapshot = new NamespaceSnapshot(_namespaceAIIsPrefix, _namespaceAIIsNamespaceName, declarationCount);
+        }
+        return _namespaceSnapshot;
+    }
+
     public Object getProperty(String name) {
         return null;
     }
@@ -210,6 +358,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                 throw new XMLStreamException("Invalid State");
             case PENDING_END_DOCUMENT:
                 _namespaceAIIsEnd = 0;
+                _namespaceIndex.clear();
                 _completionState = COMPLETED;
                 return _eventType = END_DOCUMENT;
         }
@@ -233,7 +382,9 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         
         _characters = null;
         _charSequence = null;
+        _textWhitespace = WHITESPACE_UNKNOWN;
         while(true) {// loop only if we read STATE_DOCUMENT
+            final int item = peekStructure();
             int eiiState = readEiiState();
             switch(eiiState) {
                 case STATE_DOCUMENT:
@@ -241,6 +392,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                     // so simply skil this
                     continue;
                 case STATE_ELEMENT_U_LN_QN: {
+                    recordElementStart();
                     final String uri = readStructureString();
                     final String localName = readStructureString();
                     final String prefix = getPrefixFromQName(readStructureString());
@@ -249,24 +401,59 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                     return _eventType = START_ELEMENT;
                 }
                 case STATE_ELEMENT_P_U_LN:
+                    recordElementStart();
                     processElement(readStructureString(), readStructureString(), readStructureString(),isInscope(_depth));
                     return _eventType = START_ELEMENT;
                 case STATE_ELEMENT_U_LN:
+                    recordElementStart();
                     processElement(null, readStructureString(), readStructureString(),isInscope(_depth));
                     return _eventType = START_ELEMENT;
                 case STATE_ELEMENT_LN:
+                    recordElementStart();
                     processElement(null, null, readStructureString(),isInscope(_depth));
                     return _eventType = START_ELEMENT;
                 case STATE_TEXT_AS_CHAR_ARRAY_SMALL:
                     _textLen = readStructure();
                     _textOffset = readContentCharactersBuffer(_textLen);
                     _characters = _contentCharactersBuffer;
+                    _textWhitespace = ((item & ~CHAR_ARRAY_LENGTH_MEDIUM) == T_TEXT_AS_WHITESPACE) ?
+                            WHITESPACE : NOT_WHITESPACE;
 
                     return _eventType = CHARACTERS;
                 case STATE_TEXT_AS_CHAR_ARRAY_MEDIUM:
                     _textLen = readStructure16();
                     _textOffset = readContentCharactersBuffer(_textLen);
                     _characters = _contentCharactersBuffer;
+                    _textWhitespace = ((item & ~CHAR_ARRAY_LENGTH_MEDIUM) == T_TEXT_AS_WHITESPACE) ?
+                            WHITESPACE : NOT_WHITESPACE;
+
+                    return _eventType = CHARACTERS;
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL:
+                    _textLen = readStructure();
+                    _textOffset = 0;
+                    _characters = readContentLatin1(_textLen);
+                    _textWhitespace = WHITESPACE;
+
+                    return _eventType = CHARACTERS;
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM:
+                    _textLen = readStructure16();
+                    _textOffset = 0;
+                    _characters = readContentLatin1(_textLen);
+                    _textWhitespace = WHITESPACE;
+
+                    return _eventType = CHARACTERS;
+                case STATE_TEXT_AS_LATIN1_SMALL:
+                    _textLen = readStructure();
+                    _textOffset = 0;
+                    _characters = readContentLatin1(_textLen);
+                    _textWhitespace = NOT_WHITESPACE;
+
+                    return _eventType = CHARACTERS;
+                case STATE_TEXT_AS_LATIN1_MEDIUM:
+                    _textLen = readStructure16();
+                    _textOffset = 0;
+                    _characters = readContentLatin1(_textLen);
+                    _textWhitespace = NOT_WHITESPACE;
 
                     return _eventType = CHARACTERS;
                 case STATE_TEXT_AS_CHAR_ARRAY_COPY:
@@ -313,23 +500,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
                     return _eventType = PROCESSING_INSTRUCTION;
                 case STATE_END:
-                    if (_depth > 1) {
-                        // normal case
-                        return _eventType = END_ELEMENT;
-                    } else if (_depth == 1) {
-                        // this is the last end element for the current tree.
-                        if (_fragmentMode) {
-                            if(--_treeCount==0) // is this the last tree in the forest?
-                                _completionState = PENDING_END_DOCUMENT;
-                        }
-                        return _eventType = END_ELEMENT;
-                    } else {
-                        // this only happens when we are processing a full document
-                        // and we hit the "end of document" marker
-                        _namespaceAIIsEnd = 0;
-                        _completionState = COMPLETED;
-                        return _eventType = END_DOCUMENT;
-                    }
+                    return _eventType = processEnd();
                 default:
                     throw new XMLStreamException("Internal XSB error: Invalid State="+eiiState);
             }
@@ -337,6 +508,64 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         }
     }
 
+    private int processEnd() {
+        if (_depth > 1) {
+            // normal case
+            return END_ELEMENT;
+        } else if (_depth == 1) {
+            // this is the last end element for the current tree.
+            if (_fragmentMode) {
+                if(--_treeCount==0) // is this the last tree in the forest?
+                    _completionState = PENDING_END_DOCUMENT;
+            }
+            return END_ELEMENT;
+        } else {
+            // this only happens when we are processing a full document
+            // and we hit the "end of document" marker
+            _namespaceAIIsEnd = 0;
+            _namespaceIndex.clear();
+            _completionState = COMPLETED;
+            return END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Skips the children of the current element and moves to its
+     * {@link #END_ELEMENT}.
+     *
+     * <p>
+     * If the end of the element is recorded in the skip index of the buffer
+     * (see {@link com.sun.xml.stream.buffer.MutableXMLStreamBuffer#setSkipIndexThreshold})
+     * the children are skipped in constant time, otherwise the children are
+     * processed as if by calls to {@link #next()}.
+     *
+     * @throws XMLStreamException
+     * If the current event is not {@link #START_ELEMENT}.
+     */
+    public final void skipElement() throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException("Current event is not START_ELEMENT");
+        }
+
+        if (!skipElementUsingIndex()) {
+            int depth = 1;
+            do {
+                final int eventType = next();
+                if (eventType == START_ELEMENT) {
+                    depth++;
+                } else if (eventType == END_ELEMENT) {
+                    depth--;
+                }
+            } while (depth > 0);
+            return;
+        }
+
+        // The end of the element has been read
+        _characters = null;
+        _charSequence = null;
+        _eventType = processEnd();
+    }
+
     public final void require(int type, String namespaceURI, String localName) throws XMLStreamException {
         if( type != _eventType) {
             throw new XMLStreamException("");
@@ -391,6 +620,238 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         return content.toString();
     }
 
+    /**
+     * Reads the text content of the current element as an XML Schema int.
+     *
+     * <p>
+     * The content is parsed directly from the characters of the buffer, and
+     * a value written with {@link StreamWriterBufferCreator#writeInt} is not
+     * parsed at all. As with {@link #getElementText()}, the current event
+     * must be {@link #START_ELEMENT} and the reader is moved to the
+     * corresponding {@link #END_ELEMENT}.
+     *
+     * @throws XMLStreamException
+     * If the current event is not {@link #START_ELEMENT}, the element
+     * has children or the content is not a valid int.
+     */
+    public final int getElementAsInt() throws XMLStreamException {
+        readElementValue();
+        if (_valueObject instanceof TypedValue) {
+            final TypedValue v = (TypedValue)_valueObject;
+            if (v.getType() == TypedValue.LONG
+                    && v.longValue() >= Integer.MIN_VALUE && v.longValue() <= Integer.MAX_VALUE) {
+                return (int)v.longValue();
+            }
+        }
+
+        getValueCharacters();
+        try {
+            return ValueParser.parseInt(_valueCharacters, _valueStart, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the text content of the current element as an XML Schema long.
+     *
+     * @see #getElementAsInt()
+     */
+    public final long getElementAsLong() throws XMLStreamException {
+        readElementValue();
+        if (_valueObject instanceof TypedValue) {
+            final TypedValue v = (TypedValue)_valueObject;
+            if (v.getType() == TypedValue.LONG) {
+                return v.longValue();
+            }
+        }
+
+        getValueCharacters();
+        try {
+            return ValueParser.parseLong(_valueCharacters, _valueStart, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the text content of the current element as an XML Schema double.
+     *
+     * @see #getElementAsInt()
+     */
+    public final double getElementAsDouble() throws XMLStreamException {
+        readElementValue();
+        if (_valueObject instanceof TypedValue) {
+            final TypedValue v = (TypedValue)_valueObject;
+            if (v.getType() == TypedValue.DOUBLE) {
+                return v.doubleValue();
+            } else if (v.getType() == TypedValue.LONG) {
+                return v.longValue();
+            }
+        }
+
+        getValueCharacters();
+        try {
+            return ValueParser.parseDouble(_valueCharacters, _valueStart, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the text content of the current element as an XML Schema boolean.
+     *
+     * @see #getElementAsInt()
+     */
+    public final boolean getElementAsBoolean() throws XMLStreamException {
+        readElementValue();
+        if (_valueObject instanceof TypedValue) {
+            final TypedValue v = (TypedValue)_valueObject;
+            if (v.getType() == TypedValue.BOOLEAN) {
+                return v.booleanValue();
+            }
+        }
+
+        getValueCharacters();
+        try {
+            return ValueParser.parseBoolean(_valueCharacters, _valueStart, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the text content of the current element as base64 encoded
+     * binary data.
+     *
+     * <p>
+     * Binary data written with {@link StreamWriterBufferCreator#writeBinary}
+     * is copied without being encoded and decoded.
+     *
+     * @return A new array of the decoded bytes.
+     * @see #getElementAsInt()
+     */
+    public final byte[] getElementAsBinary() throws XMLStreamException {
+        readElementValue();
+        if (_valueObject instanceof Base64Data) {
+            final Base64Data d = (Base64Data)_valueObject;
+            final byte[] bytes = new byte[d.getDataLen()];
+            System.arraycopy(d.get(), 0, bytes, 0, bytes.length);
+            return bytes;
+        }
+
+        getValueCharacters();
+        try {
+            return ValueParser.parseBase64(_valueCharacters, _valueStart, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the value of an attribute of the current element as an XML
+     * Schema int.
+     *
+     * <p>
+     * The value is parsed without creating a string for the trimmed value.
+     *
+     * @throws XMLStreamException
+     * If the value is not a valid int.
+     */
+    public final int getAttributeAsInt(int index) throws XMLStreamException {
+        final String value = getAttributeValue(index);
+        if (value == null) {
+            throw new IllegalArgumentException("No attribute at index " + index);
+        }
+
+        _valueLength = 0;
+        appendValue(value);
+        try {
+            return ValueParser.parseInt(_valueBuffer, 0, _valueLength);
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    private void readElementValue() throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException("Current event is not START_ELEMENT");
+        }
+
+        _valueObject = null;
+        _valueCharacters = null;
+        _valueLength = 0;
+        boolean buffered = false;
+
+        int eventType = next();
+        while (eventType != END_ELEMENT) {
+            if (eventType == CHARACTERS) {
+                if (!buffered && (peekStructure() & TYPE_MASK) == T_END) {
+                    // The only text of the element, used in place
+                    if (_characters != null) {
+                        _valueCharacters = _characters;
+                        _valueStart = _textOffset;
+                        _valueLength = _textLen;
+                    } else {
+                        _valueObject = _charSequence;
+                    }
+                } else {
+                    // The text is split, and the characters of the current
+                    // text may be overwritten by the next text
+                    buffered = true;
+                    if (_characters != null) {
+                        appendValue(_characters, _textOffset, _textLen);
+                    } else {
+                        appendValue(_charSequence.toString());
+                    }
+                }
+            } else if (eventType != PROCESSING_INSTRUCTION && eventType != COMMENT) {
+                throw new XMLStreamException("Element has children");
+            }
+            eventType = next();
+        }
+
+        if (buffered) {
+            _valueCharacters = _valueBuffer;
+            _valueStart = 0;
+        }
+    }
+
+    private void appendValue(char[] ch, int start, int length) {
+        ensureValueBuffer(_valueLength + length);
+        System.arraycopy(ch, start, _valueBuffer, _valueLength, length);
+        _valueLength += length;
+    }
+
+    private void appendValue(String s) {
+        ensureValueBuffer(_valueLength + s.length());
+        s.getChars(0, s.length(), _valueBuffer, _valueLength);
+        _valueLength += s.length();
+    }
+
+    private void ensureValueBuffer(int length) {
+        if (length > _valueBuffer.length) {
+            final char[] valueBuffer = new char[Math.max(length, _valueBuffer.length * 2)];
+            System.arraycopy(_valueBuffer, 0, valueBuffer, 0, _valueLength);
+            _valueBuffer = valueBuffer;
+        }
+    }
+
+    private void getValueCharacters() {
+        if (_valueObject != null) {
+            // A string or an object that is not of the requested type
+            final String s = _valueObject.toString();
+            _valueObject = null;
+            appendValue(s);
+            _valueCharacters = _valueBuffer;
+            _valueStart = 0;
+        } else if (_valueCharacters == null) {
+            // No text
+            _valueCharacters = _valueBuffer;
+            _valueStart = _valueLength = 0;
+        }
+    }
+
     public final int nextTag() throws XMLStreamException {
         next();
         return nextTag(true);
@@ -418,7 +879,17 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         return (_eventType != END_DOCUMENT);
     }
 
+    /**
+     * Frees the processor.
+     *
+     * <p>
+     * If the processor is borrowed from a {@link com.sun.xml.stream.buffer.ProcessorPool}
+     * it is returned to the pool, and it must not be used after it is closed.
+     * The processor is only returned if it is closed by the thread that
+     * borrowed it.
+     */
     public void close() throws XMLStreamException {
+        returnToPool();
     }
 
     public final boolean isStartElement() {
@@ -435,10 +906,14 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
     public final boolean isWhiteSpace() {
         if(isCharacters() || (_eventType == CDATA)){
+            if (_textWhitespace != WHITESPACE_UNKNOWN) {
+                return _textWhitespace == WHITESPACE;
+            }
+
             char [] ch = this.getTextCharacters();
             int start = this.getTextStart();
             int length = this.getTextLength();
-            for (int i = start; i < length; i++){
+            for (int i = start; i < start + length; i++){
                 final char c = ch[i];
                 if (!(c == 0x20 || c == 0x9 || c == 0xD || c == 0xA))
                     return false;
@@ -459,6 +934,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             namespaceURI = "";
         }
 
+        decodeAttributes();
         return _attributeCache.getValue(namespaceURI, localName);
     }
 
@@ -467,6 +943,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             throw new IllegalStateException("");
         }
 
+        decodeAttributes();
         return _attributeCache.getLength();
     }
 
@@ -475,10 +952,11 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             throw new IllegalStateException("");
         }
 
+        decodeAttributes();
         final String prefix = _attributeCache.getPrefix(index);
         final String localName = _attributeCache.getLocalName(index);
         final String uri = _attributeCache.getURI(index);
-        return new QName(uri,localName,prefix);
+        return _qNameCache.get(uri,localName,prefix);
     }
 
 
@@ -486,6 +964,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         if (_eventType != START_ELEMENT) {
             throw new IllegalStateException("");
         }
+        decodeAttributes();
         return fixEmptyString(_attributeCache.getURI(index));
     }
 
@@ -493,6 +972,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         if (_eventType != START_ELEMENT) {
             throw new IllegalStateException("");
         }
+        decodeAttributes();
         return _attributeCache.getLocalName(index);
     }
 
@@ -500,6 +980,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         if (_eventType != START_ELEMENT) {
             throw new IllegalStateException("");
         }
+        decodeAttributes();
         return fixEmptyString(_attributeCache.getPrefix(index));
     }
 
@@ -507,6 +988,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         if (_eventType != START_ELEMENT) {
             throw new IllegalStateException("");
         }
+        decodeAttributes();
         return _attributeCache.getType(index);
     }
 
@@ -515,6 +997,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             throw new IllegalStateException("");
         }
 
+        decodeAttributes();
         return _attributeCache.getValue(index);
     }
 
@@ -741,6 +1224,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         _stackTop.set(prefix, uri, localName);
 
         _attributeCache.clear();
+        _attributesPending = false;
 
         int item = peekStructure();
         if ((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE || inscope) {
@@ -749,10 +1233,53 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             item = processNamespaceAttributes(item, inscope);
         }
         if ((item & TYPE_MASK) == T_ATTRIBUTE) {
-            processAttributes(item);
+            // Defer the decoding of the attributes until they are accessed
+            savePosition(_attributesPosition);
+            _attributesPending = true;
+            skipAttributes(item);
         }
     }
 
+    /**
+     * Decode the attributes of the current element into {@link #_attributeCache},
+     * if they have not been decoded yet.
+     */
+    protected final void decodeAttributes() {
+        if (!_attributesPending) {
+            return;
+        }
+        _attributesPending = false;
+
+        final Position position = _position;
+        savePosition(position);
+        restorePosition(_attributesPosition);
+        processAttributes(peekStructure());
+        restorePosition(position);
+    }
+
+    private void skipAttributes(int item) {
+        do {
+            readStructure();
+            switch(getAIIState(item)){
+                case STATE_ATTRIBUTE_U_LN_QN:
+                case STATE_ATTRIBUTE_P_U_LN:
+                    skipStructureStrings(4);
+                    break;
+                case STATE_ATTRIBUTE_U_LN:
+                    skipStructureStrings(3);
+                    break;
+                case STATE_ATTRIBUTE_LN:
+                    skipStructureStrings(2);
+                    break;
+                default :
+                    assert false : "Internal XSB Error: wrong attribute state, Item="+item;
+            }
+            skipContentObject();
+
+            item = peekStructure();
+        } while((item & TYPE_MASK) == T_ATTRIBUTE);
+    }
+
     private boolean isInscope(int depth) {
         return _buffer.getInscopeNamespaces().size() > 0 && depth ==0;
     }
@@ -769,48 +1296,48 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
     private int processNamespaceAttributes(int item, boolean inscope){
         _stackTop.namespaceAIIsStart = _namespaceAIIsEnd;
+        if (_namespaceSnapshot != null && _namespaceAIIsEnd < _namespaceSnapshot.getDeclarationCount()) {
+            // The declarations of the snapshot are about to be overwritten
+            _namespaceSnapshot = null;
+        }
         Set<String> prefixSet = inscope ? new HashSet<String>() : Collections.<String>emptySet();
 
         while((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE) {
-            if (_namespaceAIIsEnd == _namespaceAIIsPrefix.length) {
-                resizeNamespaceAttributes();
-            }
-
+            readStructure();
             switch(getNIIState(item)){
                 case STATE_NAMESPACE_ATTRIBUTE:
                     // Undeclaration of default namespace
-                    _namespaceAIIsPrefix[_namespaceAIIsEnd] =
-                    _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = "";
+                    declareNamespace("", "");
                     if (inscope) {
                         prefixSet.add("");
                     }
                     break;
-                case STATE_NAMESPACE_ATTRIBUTE_P:
+                case STATE_NAMESPACE_ATTRIBUTE_P: {
                     // Undeclaration of namespace
-                    _namespaceAIIsPrefix[_namespaceAIIsEnd] = readStructureString();
+                    final String prefix = readStructureString();
+                    declareNamespace(prefix, "");
                     if (inscope) {
-                        prefixSet.add(_namespaceAIIsPrefix[_namespaceAIIsEnd]);
+                        prefixSet.add(prefix);
                     }
-                    _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = "";
                     break;
-                case STATE_NAMESPACE_ATTRIBUTE_P_U:
+                }
+                case STATE_NAMESPACE_ATTRIBUTE_P_U: {
                     // Declaration with prefix
-                    _namespaceAIIsPrefix[_namespaceAIIsEnd] = readStructureString();
+                    final String prefix = readStructureString();
+                    declareNamespace(prefix, readStructureString());
                     if (inscope) {
-                        prefixSet.add(_namespaceAIIsPrefix[_namespaceAIIsEnd]);
+                        prefixSet.add(prefix);
                     }
-                    _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = readStructureString();
                     break;
+                }
                 case STATE_NAMESPACE_ATTRIBUTE_U:
                     // Default declaration
-                    _namespaceAIIsPrefix[_namespaceAIIsEnd] = "";
+                    declareNamespace("", readStructureString());
                     if (inscope) {
                         prefixSet.add("");
                     }
-                    _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = readStructureString();
                     break;
             }
-            readStructure();
 
             item = peekStructure();
         }
@@ -820,11 +1347,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                 String key = fixNull(e.getKey());
                 // If the prefix is already written, do not write the prefix
                 if (!prefixSet.contains(key)) {
-                    if (_namespaceAIIsEnd == _namespaceAIIsPrefix.length) {
-                        resizeNamespaceAttributes();
-                    }
-                    _namespaceAIIsPrefix[_namespaceAIIsEnd] = key;
-                    _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = e.getValue();
+                    declareNamespace(key, e.getValue());
                 }
             }
         }
@@ -833,6 +1356,16 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         return item;
     }
 
+    private void declareNamespace(String prefix, String namespaceName) {
+        if (_namespaceAIIsEnd == _namespaceAIIsPrefix.length) {
+            resizeNamespaceAttributes();
+        }
+
+        _namespaceIndex.push(_namespaceAIIsEnd, prefix, namespaceName);
+        _namespaceAIIsPrefix[_namespaceAIIsEnd] = prefix;
+        _namespaceAIIsNamespaceName[_namespaceAIIsEnd++] = namespaceName;
+    }
+
     private static String fixNull(String s) {
         if (s == null) return "";
         else return s;
@@ -840,6 +1373,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
     private void processAttributes(int item){
         do {
+            readStructure();
             switch(getAIIState(item)){
                 case STATE_ATTRIBUTE_U_LN_QN: {
                     final String uri = readStructureString();
@@ -862,7 +1396,6 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                 default :
                     assert false : "Internal XSB Error: wrong attribute state, Item="+item;
             }
-            readStructure();
 
             item = peekStructure();
         } while((item & TYPE_MASK) == T_ATTRIBUTE);
@@ -886,9 +1419,156 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
         // _depth is checked outside this method
         _stackTop = _stack[depth - 1];
         // Move back the position of the namespace index
-        _namespaceAIIsEnd = _stack[depth].namespaceAIIsStart;
+        final int namespaceAIIsStart = _stack[depth].namespaceAIIsStart;
+        while (_namespaceAIIsEnd > namespaceAIIsStart) {
+            _namespaceAIIsEnd--;
+            _namespaceIndex.pop(_namespaceAIIsEnd,
+                    _namespaceAIIsPrefix[_namespaceAIIsEnd], _namespaceAIIsNamespaceName[_namespaceAIIsEnd]);
+        }
     }
     
+    /**
+     * The state of the reader saved by {@link #mark()}.
+     */
+    private final class ReaderState {
+        final State state = new State();
+
+        int eventType;
+        int completionState;
+        int depth;
+        // Index of the top of the stack, or -1
+        int stackTop;
+        ElementStackEntry[] stack = new ElementStackEntry[0];
+        int stackSize;
+
+        String[] namespaceAIIsPrefix = new String[0];
+        String[] namespaceAIIsNamespaceName = new String[0];
+        int namespaceAIIsEnd;
+
+        boolean attributes;
+        final Position attributesPosition = new Position();
+
+        // A copy of the characters of the current event, as the characters
+        // of the reader may be held by a scratch buffer
+        char[] characters = new char[0];
+        boolean hasCharacters;
+        int textLen;
+        CharSequence charSequence;
+        int textWhitespace;
+
+        String piTarget;
+        String piData;
+
+        void save() {
+            saveState(state);
+
+            eventType = _eventType;
+            completionState = _completionState;
+            depth = _depth;
+
+            // The top of the stack is kept when the depth drops to 0
+            // after the END_ELEMENT event of a root element
+            stackTop = -1;
+            stackSize = _depth;
+            if (_stackTop != null) {
+                stackTop = 0;
+                while (_stack[stackTop] != _stackTop) {
+                    stackTop++;
+                }
+                stackSize = Math.max(stackSize, stackTop + 1);
+            }
+            if (stack.length < stackSize) {
+                final ElementStackEntry[] s = new ElementStackEntry[_stack.length];
+                System.arraycopy(stack, 0, s, 0, stack.length);
+                for (int i = stack.length; i < s.length; i++) {
+                    s[i] = new ElementStackEntry();
+                }
+                stack = s;
+            }
+            for (int i = 0; i < stackSize; i++) {
+                stack[i].set(_stack[i]);
+            }
+
+            namespaceAIIsEnd = _namespaceAIIsEnd;
+            if (namespaceAIIsPrefix.length < namespaceAIIsEnd) {
+                namespaceAIIsPrefix = new String[_namespaceAIIsPrefix.length];
+                namespaceAIIsNamespaceName = new String[_namespaceAIIsPrefix.length];
+            }
+            System.arraycopy(_namespaceAIIsPrefix, 0, namespaceAIIsPrefix, 0, namespaceAIIsEnd);
+            System.arraycopy(_namespaceAIIsNamespaceName, 0, namespaceAIIsNamespaceName, 0, namespaceAIIsEnd);
+
+            attributes = _attributesPending || _attributeCache.getLength() > 0;
+            if (attributes) {
+                attributesPosition.set(_attributesPosition);
+            }
+
+            hasCharacters = (_characters != null);
+            if (hasCharacters) {
+                textLen = _textLen;
+                if (characters.length < textLen) {
+                    characters = new char[Math.max(textLen, characters.length * 2)];
+                }
+                System.arraycopy(_characters, _textOffset, characters, 0, textLen);
+                charSequence = null;
+            } else {
+                charSequence = _charSequence;
+            }
+            textWhitespace = _textWhitespace;
+
+            piTarget = _piTarget;
+            piData = _piData;
+        }
+
+        void restore() {
+            restoreState(state);
+
+            _eventType = eventType;
+            _completionState = completionState;
+            _depth = depth;
+            for (int i = 0; i < stackSize; i++) {
+                _stack[i].set(stack[i]);
+            }
+            _stackTop = (stackTop >= 0) ? _stack[stackTop] : null;
+
+            // The namespace arrays are never shrunk, so they can hold the
+            // declarations that were in scope when the reader was marked
+            System.arraycopy(namespaceAIIsPrefix, 0, _namespaceAIIsPrefix, 0, namespaceAIIsEnd);
+            System.arraycopy(namespaceAIIsNamespaceName, 0, _namespaceAIIsNamespaceName, 0, namespaceAIIsEnd);
+            _namespaceAIIsEnd = namespaceAIIsEnd;
+            _namespaceIndex.clear();
+            for (int i = 0; i < namespaceAIIsEnd; i++) {
+                _namespaceIndex.push(i, _namespaceAIIsPrefix[i], _namespaceAIIsNamespaceName[i]);
+            }
+            _namespaceSnapshot = null;
+
+            _attributeCache.clear();
+            _attributesPending = attributes;
+            if (attributes) {
+                _attributesPosition.set(attributesPosition);
+            }
+
+            if (hasCharacters) {
+                _characters = characters;
+                _textOffset = 0;
+                _textLen = textLen;
+                _charSequence = null;
+            } else {
+                _characters = null;
+                _charSequence = charSequence;
+            }
+            _textWhitespace = textWhitespace;
+
+            _piTarget = piTarget;
+            _piData = piData;
+        }
+
+        void clear() {
+            state.clear();
+            attributesPosition.clear();
+            charSequence = null;
+        }
+    }
+
     private final class ElementStackEntry {
         /**
          * Prefix.
@@ -917,9 +1597,23 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             this.namespaceAIIsStart = this.namespaceAIIsEnd = StreamReaderBufferProcessor.this._namespaceAIIsEnd;
         }
 
+        void clear() {
+            prefix = uri = localName = null;
+            qname = null;
+        }
+
+        public void set(ElementStackEntry e) {
+            this.prefix = e.prefix;
+            this.uri = e.uri;
+            this.localName = e.localName;
+            this.qname = e.qname;
+            this.namespaceAIIsStart = e.namespaceAIIsStart;
+            this.namespaceAIIsEnd = e.namespaceAIIsEnd;
+        }
+
         public QName getQName() {
             if (qname == null) {
-                qname = new QName(fixNull(uri), localName, fixNull(prefix));
+                qname = _qNameCache.get(fixNull(uri), localName, fixNull(prefix));
             }
             return qname;
         }
@@ -930,33 +1624,15 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
     }
 
     private final class InternalNamespaceContext implements NamespaceContextEx {
-        @SuppressWarnings({"StringEquality"})
         public String getNamespaceURI(String prefix) {
             if (prefix == null) {
                 throw new IllegalArgumentException("Prefix cannot be null");
             }
 
-            /*
-             * If the buffer was created using string interning
-             * intern the prefix and check for reference equality
-             * rather than using String.equals();
-             */
-            if (_stringInterningFeature) {
-                prefix = prefix.intern();
-
-                // Find the most recently declared prefix
-                for (int i = _namespaceAIIsEnd - 1; i >=0; i--) {
-                    if (prefix == _namespaceAIIsPrefix[i]) {
-                        return _namespaceAIIsNamespaceName[i];
-                    }
-                }
-            } else {
-                // Find the most recently declared prefix
-                for (int i = _namespaceAIIsEnd - 1; i >=0; i--) {
-                    if (prefix.equals(_namespaceAIIsPrefix[i])) {
-                        return _namespaceAIIsNamespaceName[i];
-                    }
-                }
+            // Find the most recently declared prefix
+            final int i = _namespaceIndex.getPrefixDeclaration(prefix);
+            if (i >= 0) {
+                return _namespaceAIIsNamespaceName[i];
             }
 
             // Check for XML-based prefixes
@@ -990,22 +1666,20 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
             }
 
             return new Iterator() {
-                private int i = _namespaceAIIsEnd - 1;
+                private int i = _namespaceIndex.getNamespaceNameDeclaration(namespaceURI);
                 private boolean requireFindNext = true;
                 private String p;
 
                 private String findNext() {
+                    // Follow the declarations of the namespace, most recent first
                     while(i >= 0) {
-                        // Find the most recently declared namespace
-                        if (namespaceURI.equals(_namespaceAIIsNamespaceName[i])) {
-                            // Find the most recently declared prefix of the namespace
-                            // and check if the prefix is in scope with that namespace
-                            if (getNamespaceURI(_namespaceAIIsPrefix[i]).equals(
-                                    _namespaceAIIsNamespaceName[i])) {
-                                return p = _namespaceAIIsPrefix[i];
-                            }
+                        final int declaration = i;
+                        i = _namespaceIndex.getPreviousNamespaceNameDeclaration(declaration);
+
+                        // Check if the prefix is in scope with that namespace
+                        if (_namespaceIndex.getPrefixDeclaration(_namespaceAIIsPrefix[declaration]) == declaration) {
+                            return p = _namespaceAIIsPrefix[declaration];
                         }
-                        i--;
                     }
                     return p = null;
                 }
@@ -1057,8 +1731,7 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
 
         public Iterator<NamespaceContextEx.Binding> iterator() {
             return new Iterator<NamespaceContextEx.Binding>() {
-                private final int end = _namespaceAIIsEnd - 1;
-                private int current = end;
+                private int current = _namespaceAIIsEnd - 1;
                 private boolean requireFindNext = true;
                 private NamespaceContextEx.Binding namespace;
 
@@ -1066,17 +1739,9 @@ public class StreamReaderBufferProcessor extends AbstractProcessor implements XM
                     while(current >= 0) {
                         final String prefix = _namespaceAIIsPrefix[current];
 
-                        // Find if the current prefix occurs more recently
-                        // If so then it is not in scope
-                        int i = end;
-                        for (;i > current; i--) {
-                            if (prefix.equals(_namespaceAIIsPrefix[i])) {
-                                break;
-                            }
-                        }
-                        if (i == current--) {
-                            // The current prefix is in-scope
-                            return namespace = new BindingImpl(prefix, _namespaceAIIsNamespaceName[current]);
+                        // The current prefix is in-scope if it is not declared more recently
+                        if (_namespaceIndex.getPrefixDeclaration(prefix) == current--) {
+                            return namespace = new BindingImpl(prefix, _namespaceAIIsNamespaceName[current + 1]);
                         }
                     }
                     return namespace = null;
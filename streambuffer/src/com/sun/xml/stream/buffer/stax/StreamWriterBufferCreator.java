@@ -130,7 +130,7 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     }
 
     public void writeEndDocument() throws XMLStreamException {
-        storeStructure(T_END);
+        storeEnd();
     }
 
     public void writeStartElement(String localName) throws XMLStreamException {
@@ -183,7 +183,7 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     public void writeEndElement() throws XMLStreamException {
         namespaceContext.popContext();
         
-        storeStructure(T_END);
+        storeEnd();
         if(--depth==0)
             increaseTreeCount();
     }
@@ -218,13 +218,11 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     }
 
     public void writeCData(String data) throws XMLStreamException {
-        storeStructure(T_TEXT_AS_STRING);
-        storeContentString(data);
+        storeContentString(T_TEXT_AS_STRING, data);
     }
 
     public void writeCharacters(String charData) throws XMLStreamException {
-        storeStructure(T_TEXT_AS_STRING);
-        storeContentString(charData);
+        storeContentString(T_TEXT_AS_STRING, charData);
     }
 
     public void writeCharacters(char[] buf, int start, int len) throws XMLStreamException {
@@ -232,8 +230,7 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     }
 
     public void writeComment(String str) throws XMLStreamException {
-        storeStructure(T_COMMENT_AS_STRING);
-        storeContentString(str);
+        storeContentString(T_COMMENT_AS_STRING, str);
     }
 
     public void writeDTD(String str) throws XMLStreamException {
@@ -241,7 +238,7 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     }
 
     public void writeEntityRef(String str) throws XMLStreamException {
-        storeStructure(T_UNEXPANDED_ENTITY_REFERENCE);
+        storeMarkupItem(T_UNEXPANDED_ENTITY_REFERENCE);
         storeContentString(str);
     }
 
@@ -257,8 +254,7 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
     
     public void writePCDATA(CharSequence charSequence) throws XMLStreamException {
         if (charSequence instanceof Base64Data) {
-            storeStructure(T_TEXT_AS_OBJECT);
-            storeContentObject(((Base64Data)charSequence).clone());
+            storeContentObject(T_TEXT_AS_OBJECT, ((Base64Data)charSequence).clone());
         } else {
             writeCharacters(charSequence.toString());
         }
@@ -269,19 +265,58 @@ public class StreamWriterBufferCreator extends StreamBufferCreator implements XM
         byte b[] = new byte[length];
         System.arraycopy(bytes, offset, b, 0, length);
         d.set(b, length, null, true);
-        storeStructure(T_TEXT_AS_OBJECT);
-        storeContentObject(d);
+        storeContentObject(T_TEXT_AS_OBJECT, d);
     }
 
     public void writeBinary(DataHandler dataHandler) throws XMLStreamException {
         Base64Data d = new Base64Data();
         d.set(dataHandler);
-        storeStructure(T_TEXT_AS_OBJECT);
-        storeContentObject(d);
+        storeContentObject(T_TEXT_AS_OBJECT, d);
     }
 
     public OutputStream writeBinary(String endpointURL) throws XMLStreamException {
         // TODO
         throw new UnsupportedOperationException();
     }
+
+    // Typed values
+
+    /**
+     * Write an int value as text.
+     *
+     * <p>
+     * The value is stored without being formatted, and it is read without
+     * being parsed by {@link StreamReaderBufferProcessor#getElementAsInt}.
+     * Other processors see the XML Schema lexical form of the value.
+     */
+    public void writeInt(int value) throws XMLStreamException {
+        storeContentObject(T_TEXT_AS_OBJECT, TypedValue.valueOf(value));
+    }
+
+    /**
+     * Write a long value as text.
+     *
+     * @see #writeInt
+     */
+    public void writeLong(long value) throws XMLStreamException {
+        storeContentObject(T_TEXT_AS_OBJECT, TypedValue.valueOf(value));
+    }
+
+    /**
+     * Write a double value as text.
+     *
+     * @see #writeInt
+     */
+    public void writeDouble(double value) throws XMLStreamException {
+        storeContentObject(T_TEXT_AS_OBJECT, TypedValue.valueOf(value));
+    }
+
+    /**
+     * Write a boolean value as text.
+     *
+     * @see #writeInt
+     */
+    public void writeBoolean(boolean value) throws XMLStreamException {
+        storeContentObject(T_TEXT_AS_OBJECT, TypedValue.valueOf(value));
+    }
 }
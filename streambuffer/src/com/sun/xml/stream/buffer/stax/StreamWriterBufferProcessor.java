@@ -64,8 +64,20 @@ import javax.xml.stream.XMLStreamWriter;
  * @author K.Venugopal@sun.com
  */
 public class StreamWriterBufferProcessor extends AbstractProcessor {
-    
-    
+    private FlushPolicy _flushPolicy = FlushPolicy.TOP_LEVEL;
+
+    /*
+     * The number of items or characters between flushes, or 0 if the
+     * policy does not flush in the middle of the buffer
+     */
+    private int _flushInterval;
+    private boolean _flushCharacters;
+
+    /*
+     * The number of items or characters written since the last flush
+     */
+    private int _flushCount;
+
     public StreamWriterBufferProcessor() {
     }
 
@@ -116,6 +128,31 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
         setBuffer(buffer,produceFragmentEvent);
     }
 
+    /**
+     * Set the policy for flushing the writer.
+     *
+     * @param flushPolicy
+     * The policy, {@link FlushPolicy#TOP_LEVEL} by default.
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        if (flushPolicy == null) {
+            throw new NullPointerException("flushPolicy");
+        }
+        _flushPolicy = flushPolicy;
+        _flushInterval = flushPolicy.getInterval();
+        _flushCharacters = flushPolicy.countsCharacters();
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return _flushPolicy;
+    }
+
+    @Override
+    protected void clearBuffer() {
+        super.clearBuffer();
+        setFlushPolicy(FlushPolicy.TOP_LEVEL);
+    }
+
     /**
      * Writes a full XML infoset event to the given writer,
      * including start/end document.
@@ -129,27 +166,33 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                 throw new IllegalStateException("forest cannot be written as a full infoset");
             writer.writeStartDocument();
         }
+        _flushCount = 0;
 
         while(true) {
             int item = getEIIState(peekStructure());
-            writer.flush();
+            int characters = 0;
+            if (_flushPolicy.flushesTopLevel()) {
+                writer.flush();
+            }
             
             switch(item) {
                 case STATE_DOCUMENT:
                     readStructure(); //skip
-                    break;
+                    continue;
                 case STATE_ELEMENT_U_LN_QN:
                 case STATE_ELEMENT_P_U_LN:
                 case STATE_ELEMENT_U_LN:
                 case STATE_ELEMENT_LN:
-                    writeFragment(writer);
-                    break;
+                    // The items of the trees are counted as they are written
+                    writeTrees(writer);
+                    continue;
                 case STATE_COMMENT_AS_CHAR_ARRAY_SMALL: {
                     readStructure();
                     final int length = readStructure();
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_MEDIUM: {
@@ -158,12 +201,14 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_COPY: {
                     readStructure();
                     final char[] ch = readContentCharactersCopy();
                     writer.writeComment(new String(ch));
+                    characters = ch.length;
                     break;
                 }
                 case STATE_PROCESSING_INSTRUCTION:
@@ -173,10 +218,14 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                 case STATE_END: // done
                     readStructure();
                     writer.writeEndDocument();
+                    if (_flushPolicy.flushesAtEnd()) {
+                        writer.flush();
+                    }
                     return;
                 default:
                     throw new XMLStreamException("Invalid State "+item);
             }
+            written(writer, characters);
         }
         
     }
@@ -190,6 +239,14 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
      * If {@link XMLStreamBuffer} has a forest, this method will write all the forests.
      */
     public void writeFragment(XMLStreamWriter writer) throws XMLStreamException {
+        _flushCount = 0;
+        writeTrees(writer);
+        if (_flushPolicy.flushesAtEnd()) {
+            writer.flush();
+        }
+    }
+
+    private void writeTrees(XMLStreamWriter writer) throws XMLStreamException {
         if (writer instanceof XMLStreamWriterEx) {
             writeFragmentEx((XMLStreamWriterEx)writer);
         } else {
@@ -207,6 +264,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
         do {
             
             item = readEiiState();
+            int characters = 0;
             
             switch(item) {
                 case STATE_DOCUMENT:
@@ -248,27 +306,46 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int length = readStructure();
                     final int start = readContentCharactersBuffer(length);
                     writer.writeCharacters(_contentCharactersBuffer,start,length);
+                    characters = length;
                     break;
                 }
                 case STATE_TEXT_AS_CHAR_ARRAY_MEDIUM: {
                     final int length = readStructure16();
                     final int start = readContentCharactersBuffer(length);
                     writer.writeCharacters(_contentCharactersBuffer,start,length);
+                    characters = length;
+                    break;
+                }
+                case STATE_TEXT_AS_LATIN1_SMALL:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL: {
+                    final int length = readStructure();
+                    writer.writeCharacters(readContentLatin1(length),0,length);
+                    characters = length;
+                    break;
+                }
+                case STATE_TEXT_AS_LATIN1_MEDIUM:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM: {
+                    final int length = readStructure16();
+                    writer.writeCharacters(readContentLatin1(length),0,length);
+                    characters = length;
                     break;
                 }
                 case STATE_TEXT_AS_CHAR_ARRAY_COPY: {
                     char[] c = readContentCharactersCopy();
                     writer.writeCharacters(c,0,c.length);
+                    characters = c.length;
                     break;
                 }
                 case STATE_TEXT_AS_STRING: {
                     final String s = readContentString();
                     writer.writeCharacters(s);
+                    characters = s.length();
                     break;
                 }
                 case STATE_TEXT_AS_OBJECT: {
                     final CharSequence c = (CharSequence)readContentObject();
                     writer.writePCDATA(c);
+                    characters = c.length();
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_SMALL: {
@@ -276,6 +353,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_MEDIUM: {
@@ -283,11 +361,13 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_COPY: {
                     final char[] ch = readContentCharactersCopy();
                     writer.writeComment(new String(ch));
+                    characters = ch.length;
                     break;
                 }
                 case STATE_PROCESSING_INSTRUCTION:
@@ -302,6 +382,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                 default:
                     throw new XMLStreamException("Invalid State "+item);
             }
+            written(writer, characters);
         } while(depth>0 || _treeCount>0);
 
     }
@@ -315,6 +396,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
 
         do {
             item = readEiiState();
+            int characters = 0;
 
             switch(item) {
                 case STATE_DOCUMENT:
@@ -356,22 +438,40 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int length = readStructure();
                     final int start = readContentCharactersBuffer(length);
                     writer.writeCharacters(_contentCharactersBuffer,start,length);
+                    characters = length;
                     break;
                 }
                 case STATE_TEXT_AS_CHAR_ARRAY_MEDIUM: {
                     final int length = readStructure16();
                     final int start = readContentCharactersBuffer(length);
                     writer.writeCharacters(_contentCharactersBuffer,start,length);
+                    characters = length;
+                    break;
+                }
+                case STATE_TEXT_AS_LATIN1_SMALL:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_SMALL: {
+                    final int length = readStructure();
+                    writer.writeCharacters(readContentLatin1(length),0,length);
+                    characters = length;
+                    break;
+                }
+                case STATE_TEXT_AS_LATIN1_MEDIUM:
+                case STATE_TEXT_AS_WHITESPACE_LATIN1_MEDIUM: {
+                    final int length = readStructure16();
+                    writer.writeCharacters(readContentLatin1(length),0,length);
+                    characters = length;
                     break;
                 }
                 case STATE_TEXT_AS_CHAR_ARRAY_COPY: {
                     char[] c = readContentCharactersCopy();
                     writer.writeCharacters(c,0,c.length);
+                    characters = c.length;
                     break;
                 }                
                 case STATE_TEXT_AS_STRING: {
                     final String s = readContentString();
                     writer.writeCharacters(s);
+                    characters = s.length();
                     break;
                 }
                 case STATE_TEXT_AS_OBJECT: {
@@ -386,6 +486,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     } else {
                          writer.writeCharacters(c.toString());
                     }
+                    characters = c.length();
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_SMALL: {
@@ -393,6 +494,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_MEDIUM: {
@@ -400,11 +502,13 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     final int start = readContentCharactersBuffer(length);
                     final String comment = new String(_contentCharactersBuffer, start, length);
                     writer.writeComment(comment);
+                    characters = length;
                     break;
                 }
                 case STATE_COMMENT_AS_CHAR_ARRAY_COPY: {
                     final char[] ch = readContentCharactersCopy();
                     writer.writeComment(new String(ch));
+                    characters = ch.length;
                     break;
                 }
                 case STATE_PROCESSING_INSTRUCTION:
@@ -419,10 +523,25 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                 default:
                     throw new XMLStreamException("Invalid State "+item);
             }
+            written(writer, characters);
         } while(depth > 0 || _treeCount>0);
         
     }
 
+    /*
+     * Flush the writer if the items or characters written since the last
+     * flush reach the interval of the flush policy.
+     */
+    private void written(XMLStreamWriter writer, int characters) throws XMLStreamException {
+        if (_flushInterval > 0) {
+            _flushCount += (_flushCharacters) ? characters : 1;
+            if (_flushCount >= _flushInterval) {
+                writer.flush();
+                _flushCount = 0;
+            }
+        }
+    }
+
     private boolean isInscope(int depth) {
         return _buffer.getInscopeNamespaces().size() > 0 && depth ==1;
     }
@@ -467,6 +586,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
     
     private int writeNamespaceAttributes(int item, XMLStreamWriter writer, boolean collectPrefixes, Set<String> prefixSet) throws XMLStreamException {
         do {
+            readStructure();
             switch(getNIIState(item)){
                 case STATE_NAMESPACE_ATTRIBUTE:
                     // Undeclaration of default namespace
@@ -500,7 +620,6 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
                     }
                     break;                
             }
-            readStructure();
             
             item = peekStructure();
         } while((item & TYPE_MASK) == T_NAMESPACE_ATTRIBUTE);
@@ -510,6 +629,7 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
     
     private void writeAttributes(int item, XMLStreamWriter writer) throws XMLStreamException {
         do {
+            readStructure();
             switch(getAIIState(item)) {
                 case STATE_ATTRIBUTE_U_LN_QN: {
                     final String uri = readStructureString();
@@ -532,8 +652,6 @@ public class StreamWriterBufferProcessor extends AbstractProcessor {
             // Ignore the attribute type
             readStructureString();
             
-            readStructure();
-            
             item = peekStructure();
         } while((item & TYPE_MASK) == T_ATTRIBUTE);
     }
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+/**
+ * A typed value stored as a content object of a buffer.
+ *
+ * <p>
+ * A {@link StreamWriterBufferCreator} stores the values written with
+ * {@link StreamWriterBufferCreator#writeInt} and similar methods as typed values,
+ * so that the value is not formatted when it is stored and not parsed
+ * when it is read with the typed accessors of a
+ * {@link StreamReaderBufferProcessor}. Other processors see the value as
+ * a {@link CharSequence}, and it is formatted once when it is first needed.
+ */
+final class TypedValue implements CharSequence {
+    static final int LONG    = 0;
+    static final int DOUBLE  = 1;
+    static final int BOOLEAN = 2;
+
+    private static final TypedValue TRUE = new TypedValue(BOOLEAN, 1, 0);
+    private static final TypedValue FALSE = new TypedValue(BOOLEAN, 0, 0);
+
+    private final int _type;
+    private final long _long;
+    private final double _double;
+
+    private String _string;
+
+    private TypedValue(int type, long l, double d) {
+        _type = type;
+        _long = l;
+        _double = d;
+    }
+
+    static TypedValue valueOf(long value) {
+        return new TypedValue(LONG, value, 0);
+    }
+
+    static TypedValue valueOf(double value) {
+        return new TypedValue(DOUBLE, 0, value);
+    }
+
+    static TypedValue valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    int getType() {
+        return _type;
+    }
+
+    long longValue() {
+        return _long;
+    }
+
+    double doubleValue() {
+        return _double;
+    }
+
+    boolean booleanValue() {
+        return _long != 0;
+    }
+
+    public int length() {
+        return toString().length();
+    }
+
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (_string == null) {
+            switch (_type) {
+                case LONG:
+                    _string = Long.toString(_long);
+                    break;
+                case DOUBLE:
+                    _string = formatDouble(_double);
+                    break;
+                default:
+                    _string = (_long != 0) ? "true" : "false";
+            }
+        }
+        return _string;
+    }
+
+    private static String formatDouble(double d) {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (d == Double.POSITIVE_INFINITY) {
+            return "INF";
+        } else if (d == Double.NEGATIVE_INFINITY) {
+            return "-INF";
+        }
+        return Double.toString(d);
+    }
+}
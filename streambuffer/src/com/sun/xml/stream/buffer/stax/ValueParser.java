@@ -0,0 +1,313 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import java.util.Arrays;
+
+/**
+ * Parsers of the lexical forms of the XML Schema types int, long, double,
+ * boolean and base64Binary from a range of characters, without creating
+ * an intermediate string.
+ *
+ * <p>
+ * Leading and trailing whitespace is ignored. An invalid lexical form is
+ * reported with an {@link IllegalArgumentException}.
+ */
+final class ValueParser {
+    /*
+     * The powers of ten that are exactly representable as a double
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    /*
+     * The number of decimal digits of a long value that is always exactly
+     * representable as a double
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        Arrays.fill(BASE64, (byte)-1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte)i;
+        }
+    }
+
+    private ValueParser() {
+    }
+
+    static int parseInt(char[] ch, int start, int length) {
+        final long value = parseLong(ch, start, length, "int");
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalid("int", ch, start, length);
+        }
+        return (int)value;
+    }
+
+    static long parseLong(char[] ch, int start, int length) {
+        return parseLong(ch, start, length, "long");
+    }
+
+    private static long parseLong(char[] ch, int start, int length, String type) {
+        int i = trimStart(ch, start, start + length);
+        final int end = trimEnd(ch, i, start + length);
+        if (i == end) {
+            throw invalid(type, ch, start, length);
+        }
+
+        boolean negative = false;
+        final char sign = ch[i];
+        if (sign == '-' || sign == '+') {
+            negative = (sign == '-');
+            if (++i == end) {
+                throw invalid(type, ch, start, length);
+            }
+        }
+
+        // Accumulate negatively so that Long.MIN_VALUE does not overflow
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long limitBeforeMultiply = limit / 10;
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = ch[i] - '0';
+            if (digit < 0 || digit > 9 || value < limitBeforeMultiply) {
+                throw invalid(type, ch, start, length);
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw invalid(type, ch, start, length);
+            }
+            value -= digit;
+        }
+        return negative ? value : -value;
+    }
+
+    static double parseDouble(char[] ch, int start, int length) {
+        int i = trimStart(ch, start, start + length);
+        final int end = trimEnd(ch, i, start + length);
+        final int first = i;
+
+        if (matches(ch, i, end, "NaN")) {
+            return Double.NaN;
+        } else if (matches(ch, i, end, "INF") || matches(ch, i, end, "+INF")) {
+            return Double.POSITIVE_INFINITY;
+        } else if (matches(ch, i, end, "-INF")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        boolean negative = false;
+        if (i < end && (ch[i] == '-' || ch[i] == '+')) {
+            negative = (ch[i++] == '-');
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            final char c = ch[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (significantDigits > 0 || c != '0') {
+                    if (++significantDigits <= MAX_EXACT_DIGITS) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        if (point) {
+                            exponent--;
+                        }
+                    } else if (!point) {
+                        exponent++;
+                    }
+                } else if (point) {
+                    exponent--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            throw invalid("double", ch, start, length);
+        }
+
+        if (i < end && (ch[i] == 'e' || ch[i] == 'E')) {
+            if (++i < end && (ch[i] == '-' || ch[i] == '+')) {
+                i++;
+            }
+            // Only the syntax of the exponent is checked here
+            final int exponentStart = i;
+            while (i < end && ch[i] >= '0' && ch[i] <= '9') {
+                i++;
+            }
+            if (i == exponentStart || i < end) {
+                throw invalid("double", ch, start, length);
+            }
+            return parseDoubleExactly(ch, first, end, start, length);
+        } else if (i < end) {
+            throw invalid("double", ch, start, length);
+        }
+
+        if (significantDigits > MAX_EXACT_DIGITS || exponent < -POWERS_OF_TEN.length + 1
+                || exponent > POWERS_OF_TEN.length - 1) {
+            return parseDoubleExactly(ch, first, end, start, length);
+        }
+
+        // Both the mantissa and the power of ten are exact, so a single
+        // operation gives the correctly rounded result
+        double value = mantissa;
+        if (exponent < 0) {
+            value /= POWERS_OF_TEN[-exponent];
+        } else if (exponent > 0) {
+            value *= POWERS_OF_TEN[exponent];
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleExactly(char[] ch, int first, int end, int start, int length) {
+        try {
+            return Double.parseDouble(new String(ch, first, end - first));
+        } catch (NumberFormatException e) {
+            throw invalid("double", ch, start, length);
+        }
+    }
+
+    static boolean parseBoolean(char[] ch, int start, int length) {
+        final int i = trimStart(ch, start, start + length);
+        final int end = trimEnd(ch, i, start + length);
+        if (matches(ch, i, end, "true") || matches(ch, i, end, "1")) {
+            return true;
+        } else if (matches(ch, i, end, "false") || matches(ch, i, end, "0")) {
+            return false;
+        }
+        throw invalid("boolean", ch, start, length);
+    }
+
+    static byte[] parseBase64(char[] ch, int start, int length) {
+        final int end = start + length;
+
+        // Count the significant characters and the padding
+        int count = 0;
+        int padding = 0;
+        for (int i = start; i < end; i++) {
+            final char c = ch[i];
+            if (c == '=') {
+                padding++;
+                count++;
+            } else if (!isWhitespace(c)) {
+                if (padding > 0 || c >= BASE64.length || BASE64[c] < 0) {
+                    throw invalid("base64Binary", ch, start, length);
+                }
+                count++;
+            }
+        }
+        if (count % 4 != 0 || padding > 2) {
+            throw invalid("base64Binary", ch, start, length);
+        }
+
+        final byte[] bytes = new byte[count / 4 * 3 - padding];
+        int b = 0;
+        int quantum = 0;
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            final char c = ch[i];
+            if (c == '=' || isWhitespace(c)) {
+                continue;
+            }
+            quantum = (quantum << 6) | BASE64[c];
+            if (++n == 4) {
+                bytes[b++] = (byte)(quantum >> 16);
+                bytes[b++] = (byte)(quantum >> 8);
+                bytes[b++] = (byte)quantum;
+                quantum = n = 0;
+            }
+        }
+
+        if (padding == 2) {
+            bytes[b] = (byte)(quantum >> 4);
+        } else if (padding == 1) {
+            bytes[b++] = (byte)(quantum >> 10);
+            bytes[b] = (byte)(quantum >> 2);
+        }
+        return bytes;
+    }
+
+    private static boolean matches(char[] ch, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (ch[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int trimStart(char[] ch, int start, int end) {
+        while (start < end && isWhitespace(ch[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(char[] ch, int start, int end) {
+        while (end > start && isWhitespace(ch[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == 0x20 || c == 0x9 || c == 0xD || c == 0xA;
+    }
+
+    private static IllegalArgumentException invalid(String type, char[] ch, int start, int length) {
+        return new IllegalArgumentException("Invalid " + type + " value: \"" + new String(ch, start, length) + "\"");
+    }
+}
@@ -40,8 +40,13 @@
 
 package com.sun.xml.stream.buffer;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * {@link TestCase} with more convenience methods for testing XMLStreamBuffer.
@@ -56,6 +61,71 @@ public abstract class BaseBufferTestCase extends junit.framework.TestCase {
         super(name);
     }
 
+    /**
+     * Create a new buffer from a document.
+     */
+    public static MutableXMLStreamBuffer createBuffer(String document) throws XMLStreamException {
+        return createBuffer(new MutableXMLStreamBuffer(), document, false);
+    }
+
+    /**
+     * Create a buffer, configured by the caller, from a document.
+     */
+    public static MutableXMLStreamBuffer createBuffer(MutableXMLStreamBuffer b, String document)
+            throws XMLStreamException {
+        return createBuffer(b, document, false);
+    }
+
+    /**
+     * Create a buffer, configured by the caller, from a document that is
+     * read by a coalescing or non-coalescing {@link XMLStreamReader}.
+     */
+    public static MutableXMLStreamBuffer createBuffer(MutableXMLStreamBuffer b, String document,
+            boolean coalescing) throws XMLStreamException {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_COALESCING, coalescing);
+        b.createFromXMLStreamReader(f.createXMLStreamReader(new StringReader(document)));
+        return b;
+    }
+
+    /**
+     * Serialize a buffer, as a fragment, to a string. The trees of a forest
+     * are serialized as the children of a <code>forest</code> element.
+     */
+    public static String toXML(XMLStreamBuffer b) throws XMLStreamException {
+        StringWriter w = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(w);
+        if (b.isForest()) {
+            writer.writeStartElement("forest");
+        }
+        b.writeToXMLStreamWriter(writer, true);
+        if (b.isForest()) {
+            writer.writeEndElement();
+        }
+        writer.close();
+        return w.toString();
+    }
+
+    /**
+     * Read the names, namespaces and attributes of the elements of a buffer.
+     */
+    public static String readNames(XMLStreamBuffer b) throws XMLStreamException {
+        StringBuilder names = new StringBuilder();
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.START_ELEMENT) {
+                names.append(r.getName());
+                for (int i = 0; i < r.getNamespaceCount(); i++) {
+                    names.append(' ').append(r.getNamespacePrefix(i)).append('=').append(r.getNamespaceURI(i));
+                }
+                for (int i = 0; i < r.getAttributeCount(); i++) {
+                    names.append(' ').append(r.getAttributeName(i)).append('=').append(r.getAttributeValue(i));
+                }
+            }
+        }
+        return names.toString();
+    }
+
     public int next(XMLStreamReader reader) throws XMLStreamException {
         int readerEvent = reader.next();
 
@@ -0,0 +1,208 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests the enforcement of the budget of a buffer.
+ */
+public class BufferBudgetTest extends BaseBufferTestCase {
+
+    public BufferBudgetTest(String testName) {
+        super(testName);
+    }
+
+    public void testDepth() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxDepth(3);
+
+        // Siblings do not add to the depth
+        createFromXMLStreamReader(budget, "<a><b><c/><c/></b><b><c/></b></a>");
+        assertExceeded(BufferBudget.Limit.DEPTH, budget, "<a><b><c><d/></c></b></a>");
+    }
+
+    public void testAttributes() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxAttributes(2);
+
+        createFromXMLStreamReader(budget, "<a x='1' y='2' xmlns:p='urn:p'><b x='1' y='2'/></a>");
+        assertExceeded(BufferBudget.Limit.ATTRIBUTES, budget, "<a x='1' y='2' z='3'/>");
+    }
+
+    public void testTextLength() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxTextLength(10);
+
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setBudget(budget);
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        w.writeStartElement("a");
+        w.writeCharacters("12345");
+        w.writeCharacters("12345".toCharArray(), 0, 5);
+        w.writeStartElement("b");
+        w.writeEndElement();
+        w.writeCharacters("1234567890");
+        try {
+            // Text is limited across chunks
+            w.writeCharacters("1");
+            fail();
+        } catch (BufferBudgetExceededException e) {
+            assertEquals(BufferBudget.Limit.TEXT_LENGTH, e.getLimit());
+            assertEquals(10, e.getMaximum());
+        }
+    }
+
+    public void testTextLengthBetweenMarkup() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxTextLength(10);
+
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setBudget(budget);
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        w.writeStartElement("a");
+        // Comments, processing instructions and entity references end the text
+        w.writeCharacters("123456");
+        w.writeComment("c");
+        w.writeCharacters("123456");
+        w.writeProcessingInstruction("p", "d");
+        w.writeCharacters("123456");
+        w.writeEntityRef("e");
+        w.writeCharacters("123456");
+        w.writeEndElement();
+
+        createFromXMLStreamReader(budget, "<a>123456<!--c-->123456<?p d?>123456</a>");
+        assertExceeded(BufferBudget.Limit.TEXT_LENGTH, budget, "<a>123456<!--c-->12345678901</a>");
+    }
+
+    public void testBytes() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxBytes(64 * 1024);
+
+        String document = createDocument(1000);
+        createFromXMLStreamReader(budget, document);
+        assertExceeded(BufferBudget.Limit.TOTAL_BYTES, budget, createDocument(10000));
+
+        // A large attribute value is also limited
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setBudget(budget);
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        w.writeStartElement("a");
+        try {
+            w.writeAttribute("x", createText(32 * 1024));
+            fail();
+        } catch (BufferBudgetExceededException e) {
+            assertEquals(BufferBudget.Limit.TOTAL_BYTES, e.getLimit());
+        }
+    }
+
+    public void testFragments() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxFragments(8);
+        assertExceeded(BufferBudget.Limit.FRAGMENTS, budget, createDocument(10000));
+    }
+
+    public void testXMLReader() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxDepth(1);
+
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        XMLReader reader = f.newSAXParser().getXMLReader();
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setBudget(budget);
+        try {
+            b.createFromXMLReader(reader, new ByteArrayInputStream("<a><b/></a>".getBytes("UTF-8")));
+            fail();
+        } catch (BufferBudgetExceededException e) {
+            assertEquals(BufferBudget.Limit.DEPTH, e.getLimit());
+        }
+    }
+
+    public void testReset() throws Exception {
+        BufferBudget budget = new BufferBudget();
+        budget.setMaxDepth(2);
+
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(budget, "<a><b/></a>");
+        b.reset();
+        createBuffer(b, "<a><b/></a>");
+
+        b.setBudget(null);
+        b.reset();
+        createBuffer(b, "<a><b><c/></b></a>");
+    }
+
+    private static MutableXMLStreamBuffer createFromXMLStreamReader(BufferBudget budget, String document)
+            throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setBudget(budget);
+        return createBuffer(b, document);
+    }
+
+    private static void assertExceeded(BufferBudget.Limit limit, BufferBudget budget, String document)
+            throws Exception {
+        try {
+            createFromXMLStreamReader(budget, document);
+            fail();
+        } catch (BufferBudgetExceededException e) {
+            assertEquals(limit, e.getLimit());
+        }
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder b = new StringBuilder("<root>");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text ").append(i).append("</e>");
+        }
+        return b.append("</root>").toString();
+    }
+
+    private static String createText(int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append((char)('a' + i % 26));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferCreator;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.StringReader;
+
+/**
+ * Tests the statistics of the memory used by a buffer.
+ */
+public class BufferStatisticsTest extends BaseBufferTestCase {
+
+    public BufferStatisticsTest(String testName) {
+        super(testName);
+    }
+
+    public void testEmpty() throws Exception {
+        BufferStatistics s = new MutableXMLStreamBuffer().getStatistics();
+        assertEquals(0, s.getStructure().getUsedEntries());
+        assertEquals(0, s.getContentObjectCount());
+        assertEquals(0, s.getCharArrayCopyCount());
+        assertEquals(0, s.getStoredBytes());
+    }
+
+    public void testStatistics() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(new MutableXMLStreamBuffer(), createDocument(2000), true);
+
+        BufferStatistics s = b.getStatistics();
+        assertTrue(s.getStructure().getFragmentCount() > 1);
+        assertEquals(2, s.getCharArrayCopyCount());
+        assertEquals(5000 + 6000, s.getCharArrayCopyLength());
+        // The attribute values and the copied character arrays
+        assertEquals(2001 + 2, s.getContentObjectCount());
+        assertTrue(s.getRetainedBytes() > 2 * s.getCharArrayCopyLength());
+
+        // The entries used are those counted by compaction
+        long reclaimed = b.compact();
+        BufferStatistics c = b.getStatistics();
+        assertEquals(s.getRetainedBytes() - reclaimed, c.getRetainedBytes());
+        assertEquals(s.getStructure().getUsedEntries(), c.getStructure().getUsedEntries());
+        assertEquals(s.getStructureStrings().getUsedEntries(), c.getStructureStrings().getUsedEntries());
+        assertEquals(s.getContentCharacters().getUsedEntries(), c.getContentCharacters().getUsedEntries());
+        assertEquals(s.getContentObjects().getUsedEntries(), c.getContentObjects().getUsedEntries());
+        assertEquals(s.getCharArrayCopyCount(), c.getCharArrayCopyCount());
+
+        assertEquals(1, c.getStructure().getFragmentCount());
+        assertEquals(1, c.getStructure().getSlackEntries());
+        assertEquals(0, c.getStructureStrings().getSlackEntries());
+
+        b.reset();
+        assertEquals(0, b.getStatistics().getStructure().getUsedEntries());
+        assertEquals(0, b.getStatistics().getCharArrayCopyCount());
+    }
+
+    public void testStatisticsDuringCreation() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        w.writeStartElement("root");
+        w.writeStartElement("e");
+        w.writeCharacters("text".toCharArray(), 0, 4);
+        w.writeEndElement();
+
+        // T_ELEMENT, T_ELEMENT, T_TEXT, length, T_END
+        BufferStatistics s = b.getStatistics();
+        assertEquals(5, s.getStructure().getUsedEntries());
+        assertEquals(2, s.getStructureStrings().getUsedEntries());
+        assertEquals(4, s.getContentCharacters().getUsedEntries());
+
+        w.writeEndElement();
+        w.close();
+        assertEquals(6, b.getStatistics().getStructure().getUsedEntries());
+    }
+
+    public void testMark() throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(
+                new StringReader("<root><e a='1'>text</e><e a='2'>text</e></root>"));
+        reader.nextTag();
+        reader.nextTag();
+
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        StreamReaderBufferCreator creator = new StreamReaderBufferCreator(b);
+        creator.createElementFragment(reader, false);
+        XMLStreamBufferMark mark = new XMLStreamBufferMark(null, creator);
+        creator.createElementFragment(reader, false);
+
+        BufferStatistics s = mark.getStatistics();
+        assertEquals(b.getStatistics().getStructure().getUsedEntries() / 2,
+                s.getStructure().getUsedEntries());
+        assertEquals(1, s.getContentObjectCount());
+    }
+
+    private static String createDocument(int elements) {
+        // Text that does not fit in the first fragment is copied
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\">");
+        b.append("<t>").append(createText(5000)).append("</t>");
+        b.append("<t a=\"1\">").append(createText(6000)).append("</t>");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text ").append(i).append("</e>");
+        }
+        return b.append("</root>").toString();
+    }
+
+    private static String createText(int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append((char)('a' + i % 26));
+        }
+        return b.toString();
+    }
+}
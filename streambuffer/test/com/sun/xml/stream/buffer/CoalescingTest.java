@@ -0,0 +1,206 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.sax.SAXBufferCreator;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferCreator;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Tests the coalescing of adjacent character content when creating buffers.
+ */
+public class CoalescingTest extends BaseBufferTestCase {
+
+    public CoalescingTest(String testName) {
+        super(testName);
+    }
+
+    public void testXMLStreamWriter() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCoalescingEnabled(true);
+        XMLStreamWriter w = new StreamWriterBufferCreator(b);
+        w.writeStartDocument();
+        w.writeStartElement("a");
+        w.writeCharacters("abc");
+        w.writeCharacters("def".toCharArray(), 0, 3);
+        w.writeStartElement("b");
+        w.writeCharacters("ghi");
+        w.writeEndElement();
+        w.writeCharacters("jkl");
+        w.writeProcessingInstruction("pi");
+        w.writeCharacters("mno");
+        w.writeComment("comment");
+        w.writeCharacters("pqr".toCharArray(), 1, 2);
+        w.writeCharacters("stu");
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        assertEquals("[abcdef][ghi][jkl]?[mno]![qrstu]", trace(b));
+    }
+
+    public void testContentHandler() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCoalescingEnabled(true);
+        SAXBufferCreator c = new SAXBufferCreator(b);
+        c.startDocument();
+        c.startElement("", "a", "a", new AttributesImpl());
+        characters(c, "abc");
+        characters(c, "def");
+        c.ignorableWhitespace("  ".toCharArray(), 0, 2);
+        c.comment("comment".toCharArray(), 0, 7);
+        characters(c, "ghi");
+        c.endElement("", "a", "a");
+        c.endDocument();
+
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertEquals("abcdef  ", new String(r.getTextCharacters(), r.getTextStart(), r.getTextLength()));
+        assertEquals(XMLStreamReader.COMMENT, r.next());
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertEquals("ghi", r.getText());
+        assertEquals(XMLStreamReader.END_ELEMENT, r.next());
+    }
+
+    public void testNotCoalescing() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        XMLStreamWriter w = new StreamWriterBufferCreator(b);
+        w.writeStartElement("a");
+        w.writeCharacters("abc");
+        w.writeCharacters("def".toCharArray(), 0, 3);
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        assertEquals("[abc][def]", trace(b));
+    }
+
+    public void testLargeText() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCoalescingEnabled(true);
+        SAXBufferCreator c = new SAXBufferCreator(b);
+        c.startDocument();
+        c.startElement("", "a", "a", new AttributesImpl());
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String chunk = createText(1000, (char)('a' + i % 26));
+            characters(c, chunk);
+            expected.append(chunk);
+        }
+        c.endElement("", "a", "a");
+        c.endDocument();
+
+        // The text is too large for the buffer of character content
+        assertEquals(1, b.getStatistics().getCharArrayCopyCount());
+        assertEquals("[" + expected + "]", trace(b));
+    }
+
+    public void testCompactCharacters() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCoalescingEnabled(true);
+        b.setCompactCharactersEnabled(true);
+        XMLStreamWriter w = new StreamWriterBufferCreator(b);
+        w.writeStartElement("a");
+        w.writeCharacters("caf");
+        w.writeCharacters("\u00e9 ");
+        w.writeCharacters("\u4e2d");
+        w.writeEndElement();
+        w.writeStartElement("b");
+        w.writeCharacters("ab");
+        w.writeCharacters("c");
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        assertEquals("[caf\u00e9 \u4e2d][abc]", trace(b));
+    }
+
+    public void testMark() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCoalescingEnabled(true);
+        StreamWriterBufferCreator w = new StreamWriterBufferCreator(b);
+        w.writeStartElement("a");
+        w.writeCharacters("abc");
+        XMLStreamBuffer mark = new XMLStreamBufferMark(null, w);
+        w.writeStartElement("b");
+        w.writeCharacters("def");
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        XMLStreamReader r = mark.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, r.next());
+        assertEquals("b", r.getLocalName());
+        assertEquals("def", r.getElementText());
+        assertEquals(XMLStreamReader.END_DOCUMENT, r.next());
+        assertEquals("[abc][def]", trace(b));
+    }
+
+    private static void characters(SAXBufferCreator c, String s) throws Exception {
+        c.characters(s.toCharArray(), 0, s.length());
+    }
+
+    private static String trace(XMLStreamBuffer b) throws Exception {
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        StringBuilder sb = new StringBuilder();
+        while (r.hasNext()) {
+            switch (r.next()) {
+                case XMLStreamReader.CHARACTERS:
+                    sb.append('[').append(r.getText()).append(']');
+                    break;
+                case XMLStreamReader.PROCESSING_INSTRUCTION:
+                    sb.append('?');
+                    break;
+                case XMLStreamReader.COMMENT:
+                    sb.append('!');
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String createText(int length, char c) {
+        char[] ch = new char[length];
+        java.util.Arrays.fill(ch, c);
+        return new String(ch);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the compact storage of Latin-1 character content.
+ */
+public class CompactCharactersTest extends BaseBufferTestCase {
+
+    private static final String[] TEXTS = {
+        "a",
+        "ab",
+        "caf\u00e9",
+        "\u00ff\u0000\u00e9",
+        "mixed \u4e2d\u6587 text",
+        createText(255, 'a'),
+        createText(256, 'a'),
+        createText(511, '\u00e0'),
+        createText(600, 'a'),
+        createText(300, '\u4e00'),
+    };
+
+    public CompactCharactersTest(String testName) {
+        super(testName);
+    }
+
+    public void testXMLStreamReader() throws Exception {
+        XMLStreamReader r = createBuffer(true).readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+        for (String text : TEXTS) {
+            assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+            assertEquals(XMLStreamReader.CHARACTERS, r.next());
+            assertEquals(text, new String(r.getTextCharacters(), r.getTextStart(), r.getTextLength()));
+            assertEquals(text, r.getText());
+
+            char[] target = new char[text.length()];
+            assertEquals(text.length() - 1, r.getTextCharacters(1, target, 0, target.length));
+            assertEquals(text.substring(1), new String(target, 0, text.length() - 1));
+            assertEquals(XMLStreamReader.END_ELEMENT, r.next());
+        }
+    }
+
+    public void testContentHandler() throws Exception {
+        final StringBuilder b = new StringBuilder();
+        createBuffer(true).writeTo(new DefaultHandler() {
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                b.append(ch, start, length);
+            }
+        }, false);
+
+        StringBuilder expected = new StringBuilder();
+        for (String text : TEXTS) {
+            expected.append(text);
+        }
+        assertEquals(expected.toString(), b.toString());
+    }
+
+    public void testXMLStreamWriter() throws Exception {
+        assertEquals(toString(createBuffer(false)), toString(createBuffer(true)));
+    }
+
+    public void testCompactCharacters() throws Exception {
+        MutableXMLStreamBuffer expanded = createBuffer(false);
+        MutableXMLStreamBuffer packed = createBuffer(true);
+        expanded.compact();
+        packed.compact();
+        assertEquals(toString(expanded), toString(packed));
+
+        int expandedLength = expanded.getContentCharactersBuffer().getArray().length;
+        int packedLength = packed.getContentCharactersBuffer().getArray().length;
+        assertTrue(packedLength < expandedLength);
+    }
+
+    private static MutableXMLStreamBuffer createBuffer(boolean compactCharacters) throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCompactCharactersEnabled(compactCharacters);
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        for (String text : TEXTS) {
+            w.writeStartElement("e");
+            w.writeCharacters(text.toCharArray(), 0, text.length());
+            w.writeEndElement();
+        }
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return b;
+    }
+
+    private static String toString(XMLStreamBuffer b) throws Exception {
+        StringBuilder s = new StringBuilder();
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.CHARACTERS) {
+                s.append(r.getText()).append('|');
+            }
+        }
+        return s.toString();
+    }
+
+    private static String createText(int length, char first) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append((char)(first + i % 26));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests the compaction of the fragments of a buffer.
+ */
+public class CompactTest extends BaseBufferTestCase {
+
+    public CompactTest(String testName) {
+        super(testName);
+    }
+
+    public void testCompactXMLStreamReader() throws Exception {
+        String document = createDocument(2000);
+        MutableXMLStreamBuffer b = createBuffer(document);
+
+        String expected = toXML(b);
+        assertTrue(b.compact() > 0);
+        assertCompact(b);
+        assertEquals(expected, toXML(b));
+
+        // Compacting again reclaims nothing
+        assertEquals(0, b.compact());
+        assertEquals(expected, toXML(b));
+    }
+
+    public void testCompactXMLReader() throws Exception {
+        String document = createDocument(2000);
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        XMLReader reader = f.newSAXParser().getXMLReader();
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.createFromXMLReader(reader, new ByteArrayInputStream(document.getBytes("UTF-8")));
+
+        String expected = toXML(b);
+        assertTrue(b.compact() > 0);
+        assertCompact(b);
+        assertEquals(expected, toXML(b));
+    }
+
+    public void testCompactForest() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        XMLStreamWriter w = b.createFromXMLStreamWriter();
+        for (int i = 0; i < 3; i++) {
+            w.writeStartElement("p", "e", "urn:test");
+            w.writeNamespace("p", "urn:test");
+            w.writeAttribute("a", Integer.toString(i));
+            w.writeCharacters(createText(300 + i));
+            w.writeEndElement();
+        }
+        w.close();
+
+        String expected = toXML(b);
+        b.compact();
+        assertCompact(b);
+        assertEquals(expected, toXML(b));
+    }
+
+    public void testCompactEmpty() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        assertEquals(0, b.compact());
+
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.END_DOCUMENT, r.next());
+    }
+
+    public void testCreateAfterCompact() throws Exception {
+        String document = createDocument(100);
+        MutableXMLStreamBuffer b = createBuffer(document);
+        b.compact();
+
+        document = createDocument(1000);
+        MutableXMLStreamBuffer expected = createBuffer(document);
+        createBuffer(b, document);
+        assertEquals(toXML(expected), toXML(b));
+    }
+
+    private static void assertCompact(XMLStreamBuffer b) {
+        assertNull(b.getStructure().getNext());
+        assertNull(b.getStructureStrings().getNext());
+        assertNull(b.getContentCharactersBuffer().getNext());
+        assertNull(b.getContentObjects().getNext());
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\"><!--comment--><?pi data?>");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text ").append(i).append("</e>");
+            if (i % 100 == 0) {
+                b.append("<t>").append(createText(i * 3)).append("</t>");
+            }
+        }
+        return b.append("</root>").toString();
+    }
+
+    private static String createText(int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append((char)('a' + i % 26));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import javax.xml.stream.XMLStreamReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests buffers whose structure and character content are held by a
+ * {@link DirectFragmentStorage}.
+ */
+public class DirectFragmentStorageTest extends BaseBufferTestCase {
+
+    public DirectFragmentStorageTest(String testName) {
+        super(testName);
+    }
+
+    public void testProcess() throws Exception {
+        DirectFragmentStorage storage = new DirectFragmentStorage(64 * 1024);
+        MutableXMLStreamBuffer b = createBuffer(createDocument(1000));
+        String expected = toXML(b);
+
+        assertTrue(b.compact(storage) > 0);
+        assertTrue(storage.getAllocatedBytes() > 0);
+        assertEquals(expected, toXML(b));
+        assertEquals(expected, toXML(b));
+        assertFalse(b.isFragment());
+
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        int elements = 0;
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.START_ELEMENT) {
+                elements++;
+            }
+        }
+        assertEquals(1001, elements);
+
+        b.writeTo(new DefaultHandler(), false);
+    }
+
+    public void testArenaReuse() throws Exception {
+        DirectFragmentStorage storage = new DirectFragmentStorage(16 * 1024);
+        String document = createDocument(100);
+
+        for (int i = 0; i < 100; i++) {
+            MutableXMLStreamBuffer b = createBuffer(document);
+            b.compact(storage);
+            b.release();
+        }
+        assertEquals(16 * 1024, storage.getAllocatedBytes());
+
+        // A segment larger than an arena
+        MutableXMLStreamBuffer b = createBuffer(createDocument(2000));
+        String expected = toXML(b);
+        b.compact(storage);
+        assertTrue(storage.getAllocatedBytes() > 16 * 1024);
+        assertEquals(expected, toXML(b));
+        b.release();
+        assertEquals(16 * 1024, storage.getAllocatedBytes());
+    }
+
+    public void testCreateAfterStore() throws Exception {
+        DirectFragmentStorage storage = new DirectFragmentStorage();
+        MutableXMLStreamBuffer b = createBuffer(createDocument(10));
+        b.compact(storage);
+
+        String document = createDocument(20);
+        MutableXMLStreamBuffer expected = createBuffer(document);
+        createBuffer(b, document);
+        assertEquals(toXML(expected), toXML(b));
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\"><!--comment-->");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text \u00e9\u4e2d ").append(i).append("</e>");
+        }
+        return b.append("</root>").toString();
+    }
+}
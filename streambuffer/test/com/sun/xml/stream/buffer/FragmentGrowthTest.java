@@ -0,0 +1,162 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+/**
+ * Tests the growth of the fragments appended while creating a buffer.
+ */
+public class FragmentGrowthTest extends BaseBufferTestCase {
+
+    public FragmentGrowthTest(String testName) {
+        super(testName);
+    }
+
+    public void testGeometricGrowth() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        String document = createDocument(5000);
+
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+
+        FragmentedArray<byte[]> f = b.getStructure();
+        int length = f.getArray().length;
+        int fragments = 1;
+        for (f = f.getNext(); f != null; f = f.getNext()) {
+            assertEquals(Math.min(length * 2, MutableXMLStreamBuffer.DEFAULT_MAX_ARRAY_SIZE),
+                    f.getArray().length);
+            length = f.getArray().length;
+            fragments++;
+        }
+        assertTrue(fragments < 10);
+    }
+
+    public void testFixedSize() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setMaxArraySize(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE);
+        String document = createDocument(500);
+
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+
+        for (FragmentedArray<byte[]> f = b.getStructure(); f != null; f = f.getNext()) {
+            assertEquals(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, f.getArray().length);
+        }
+    }
+
+    public void testExpectedSize() throws Exception {
+        String document = createDocument(1000);
+        MutableXMLStreamBuffer b = MutableXMLStreamBuffer.createWithExpectedSize(document.length());
+
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+        assertNull(b.getStructure().getNext());
+        assertNull(b.getContentCharactersBuffer().getNext());
+
+        // Character content larger than the first array
+        b = MutableXMLStreamBuffer.createWithExpectedSize(100);
+        document = "<root>" + createText(300) + "</root>";
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+    }
+
+    public void testLazyAllocation() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        assertTrue(b.getStructure().getArray().length < MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE);
+        assertEquals(0, b.getContentCharactersBuffer().getArray().length);
+
+        String document = createDocument(10);
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+        assertEquals(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, b.getStructure().getArray().length);
+    }
+
+    public void testMinimumSizes() throws Exception {
+        int[][] sizes = { { 0, 16, 16, 16 }, { 16, 0, 16, 16 }, { 16, 16, 0, 16 }, { 16, 16, 16, 0 } };
+        for (int[] s : sizes) {
+            try {
+                new MutableXMLStreamBuffer(s[0], s[1], s[2], s[3], null);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        try {
+            new MutableXMLStreamBuffer(-1);
+            fail();
+        } catch (NegativeArraySizeException e) {
+        }
+
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(1, 1, 1, 1, null);
+        String document = createDocument(10);
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+    }
+
+    public void testSmallBuffer() throws Exception {
+        String header = "<wsa:To xmlns:wsa=\"http://www.w3.org/2005/08/addressing\">" +
+                "http://localhost:8080/service</wsa:To>";
+        MutableXMLStreamBuffer b = MutableXMLStreamBuffer.createWithExpectedSize(header.length());
+
+        createBuffer(b, header);
+        assertEquals(header, toXML(b));
+        assertNull(b.getStructure().getNext());
+        assertNull(b.getContentCharactersBuffer().getNext());
+        assertTrue(b.getStructure().getArray().length <= 64);
+        assertTrue(b.getStructureStrings().getArray().length <= 32);
+        assertTrue(b.getContentCharactersBuffer().getArray().length <= 64);
+        assertTrue(b.getContentObjects().getArray().length <= 16);
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\">");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text ").append(i).append("</e>");
+        }
+        return b.append("</root>").toString();
+    }
+
+    private static String createText(int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append((char)('a' + i % 26));
+        }
+        return b.toString();
+    }
+}
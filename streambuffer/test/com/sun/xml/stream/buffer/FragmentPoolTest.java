@@ -0,0 +1,144 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tests creation of buffers whose fragments are taken from a {@link FragmentPool}.
+ */
+public class FragmentPoolTest extends BaseBufferTestCase {
+
+    public FragmentPoolTest(String testName) {
+        super(testName);
+    }
+
+    public void testFragmentsAreReturnedOnReset() throws Exception {
+        FragmentPool pool = new FragmentPool(1024 * 1024, 0);
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, pool);
+        String document = createDocument(2000);
+
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+        assertEquals(0, pool.getPooledBytes());
+
+        b.reset();
+        long pooled = pool.getPooledBytes();
+        assertTrue(pooled > 0);
+
+        // The fragments are taken again from the pool
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+        assertTrue(pool.getPooledBytes() < pooled);
+    }
+
+    public void testRelease() throws Exception {
+        FragmentPool pool = new FragmentPool(1024 * 1024, 0);
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, pool);
+        String document = createDocument(100);
+
+        createBuffer(b, document);
+        b.release();
+        assertTrue(pool.getPooledBytes() > 0);
+
+        // A released buffer can be processed as an empty buffer
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.END_DOCUMENT, r.next());
+
+        // and created again
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+    }
+
+    public void testMarkedFragmentsAreNotRecycled() throws Exception {
+        FragmentPool pool = new FragmentPool(1024 * 1024, 0);
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, pool);
+        createBuffer(b, createDocument(2000));
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        XMLStreamBuffer mark = r.nextTagAndMark();
+        String marked = toXML(mark);
+
+        b.reset();
+        assertEquals(0, pool.getPooledBytes());
+
+        // Creation of another document does not overwrite the marked content
+        String document = createDocument(10);
+        createBuffer(b, document);
+        assertEquals(document, toXML(b));
+        assertEquals(marked, toXML(mark));
+
+        // Once the marked fragments are dropped the buffer recycles again
+        b.release();
+        assertTrue(pool.getPooledBytes() > 0);
+    }
+
+    public void testPoolCapacity() throws Exception {
+        FragmentPool pool = new FragmentPool(600, 0);
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, pool);
+
+        createBuffer(b, createDocument(2000));
+        b.release();
+        assertTrue(pool.getPooledBytes() <= 600);
+    }
+
+    public void testMagazines() throws Exception {
+        FragmentPool pool = new FragmentPool(1024 * 1024);
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(MutableXMLStreamBuffer.DEFAULT_ARRAY_SIZE, pool);
+        String document = createDocument(2000);
+
+        for (int i = 0; i < 4; i++) {
+            createBuffer(b, document);
+            assertEquals(document, toXML(b));
+            b.reset();
+        }
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\">");
+        for (int i = 0; i < elements; i++) {
+            b.append("<e a=\"").append(i).append("\">text ").append(i).append("</e>");
+        }
+        return b.append("</root>").toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tests buffers whose symbol table is pre-seeded with the {@link NameDictionary}.
+ */
+public class NameDictionaryTest extends BaseBufferTestCase {
+    private static final String SOAP_MESSAGE =
+            "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+            "<S:Header>" +
+            "<wsa:To xmlns:wsa=\"http://www.w3.org/2005/08/addressing\">http://localhost/service</wsa:To>" +
+            "<wsa:Action xmlns:wsa=\"http://www.w3.org/2005/08/addressing\" S:mustUnderstand=\"1\">urn:action</wsa:Action>" +
+            "</S:Header>" +
+            "<S:Body><ns:echo xmlns:ns=\"urn:test-vocabulary\"><ns:value>text</ns:value></ns:echo></S:Body>" +
+            "</S:Envelope>";
+
+    public NameDictionaryTest(String testName) {
+        super(testName);
+    }
+
+    public void testWellKnownNames() throws Exception {
+        MutableXMLStreamBuffer b = create(SOAP_MESSAGE);
+
+        // Only the names of the application vocabulary are stored with the buffer
+        assertTrue(b._symbolTable.size() <= 4);
+
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertSame("Envelope", r.getLocalName());
+        assertSame("http://schemas.xmlsoap.org/soap/envelope/", r.getNamespaceURI());
+        r.nextTag();
+        r.nextTag();
+        assertSame("To", r.getLocalName());
+        assertSame("http://www.w3.org/2005/08/addressing", r.getNamespaceURI());
+        assertEquals("http://localhost/service", r.getElementText());
+        r.nextTag();
+        assertSame("mustUnderstand", r.getAttributeLocalName(0));
+    }
+
+    public void testRegister() throws Exception {
+        MutableXMLStreamBuffer before = create(SOAP_MESSAGE);
+        int size = NameDictionary.size();
+
+        NameDictionary.register("urn:test-vocabulary", "echo", "value", "ns", "Envelope");
+        assertEquals(size + 4, NameDictionary.size());
+        assertSame("echo", NameDictionary.getCanonicalName(new String("echo")));
+
+        MutableXMLStreamBuffer after = create(SOAP_MESSAGE);
+        assertEquals(0, after._symbolTable.size());
+        assertEquals(readNames(before), readNames(after));
+    }
+
+    private static MutableXMLStreamBuffer create(String document) throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        return createBuffer(b, document);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.sax.SAXBufferProcessor;
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the replay of buffers using processors borrowed from a {@link ProcessorPool}.
+ */
+public class ProcessorPoolTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<a xmlns='urn:a' x='1'><b>text</b><c xmlns:p='urn:p' p:y='2'/><d/></a>";
+
+    public ProcessorPoolTest(String testName) {
+        super(testName);
+    }
+
+    public void testXMLStreamReaderIsReused() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+        String expected = trace(r);
+        r.close();
+        assertNull(r._buffer);
+
+        StreamReaderBufferProcessor r2 = b.readAsXMLStreamReader(pool);
+        assertSame(r, r2);
+        assertEquals(expected, trace(r2));
+        r2.close();
+    }
+
+    public void testAbandonedXMLStreamReader() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        String expected = trace(b.readAsXMLStreamReader());
+
+        // Close the reader in the middle of the document
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+        r.nextTag();
+        r.nextTag();
+        r.close();
+
+        r = b.readAsXMLStreamReader(pool);
+        assertEquals(expected, trace(r));
+        r.close();
+    }
+
+    public void testCloseTwice() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+        r.close();
+        r.close();
+
+        StreamReaderBufferProcessor r1 = b.readAsXMLStreamReader(pool);
+        StreamReaderBufferProcessor r2 = b.readAsXMLStreamReader(pool);
+        assertNotSame(r1, r2);
+    }
+
+    public void testCloseByPreviousBorrower() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        final MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        String expected = trace(b.readAsXMLStreamReader());
+
+        final StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+        r.close();
+        StreamReaderBufferProcessor r2 = b.readAsXMLStreamReader(pool);
+        assertSame(r, r2);
+        r2.nextTag();
+
+        // A second close by another thread does not return the reader in use
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    r.close();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertSame(pool, ((AbstractProcessor)r2)._pool);
+        assertNotSame(r2, b.readAsXMLStreamReader(pool));
+        assertEquals("a", r2.getLocalName());
+        r2.close();
+        assertSame(r2, b.readAsXMLStreamReader(pool));
+    }
+
+    public void testClosedReaderReleasesNames() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+        trace(r);
+        r.close();
+        for (String field : new String[] { "_namespaceAIIsPrefix", "_namespaceAIIsNamespaceName" }) {
+            Field f = StreamReaderBufferProcessor.class.getDeclaredField(field);
+            f.setAccessible(true);
+            for (Object o : (Object[])f.get(r)) {
+                assertNull(field, o);
+            }
+        }
+    }
+
+    public void testCapacity() throws Exception {
+        ProcessorPool pool = new ProcessorPool(1);
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        StreamReaderBufferProcessor r1 = b.readAsXMLStreamReader(pool);
+        StreamReaderBufferProcessor r2 = b.readAsXMLStreamReader(pool);
+        r1.close();
+        r2.close();
+
+        assertSame(r1, b.readAsXMLStreamReader(pool));
+        assertNotSame(r2, b.readAsXMLStreamReader(pool));
+    }
+
+    public void testWriteTo() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        final List<String> names = new ArrayList<String>();
+        DefaultHandler handler = new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, org.xml.sax.Attributes attributes) {
+                names.add(localName);
+            }
+        };
+        b.writeTo(handler, false, pool);
+        b.writeTo(handler, false, pool);
+        assertEquals("[a, b, c, d, a, b, c, d]", names.toString());
+
+        // The handler is not retained by the pooled processor
+        SAXBufferProcessor p = pool.borrowSAXProcessor();
+        assertNotSame(handler, p.getContentHandler());
+        assertNull(p._buffer);
+    }
+
+    public void testWriteToXMLStreamWriter() throws Exception {
+        ProcessorPool pool = new ProcessorPool();
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+
+        String expected = toXML(b, false, null);
+        assertEquals(expected, toXML(b, false, pool));
+        assertEquals(expected, toXML(b, false, pool));
+        assertEquals(toXML(b, true, null), toXML(b, true, pool));
+    }
+
+    public void testConcurrentUse() throws Exception {
+        final ProcessorPool pool = new ProcessorPool(2);
+        final MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        final String expected = trace(b.readAsXMLStreamReader());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            StreamReaderBufferProcessor r = b.readAsXMLStreamReader(pool);
+                            assertEquals(expected, trace(r));
+                            r.close();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private String toXML(XMLStreamBuffer b, boolean fragment, ProcessorPool pool) throws Exception {
+        StringWriter w = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(w);
+        if (pool != null) {
+            b.writeToXMLStreamWriter(writer, fragment, pool);
+        } else {
+            b.writeToXMLStreamWriter(writer, fragment);
+        }
+        writer.flush();
+        return w.toString();
+    }
+
+    private static String trace(XMLStreamReader r) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (r.hasNext()) {
+            int event = r.next();
+            sb.append(event);
+            if (event == XMLStreamReader.START_ELEMENT) {
+                sb.append(r.getName());
+                for (int i = 0; i < r.getAttributeCount(); i++) {
+                    sb.append(' ').append(r.getAttributeName(i)).append('=').append(r.getAttributeValue(i));
+                }
+            } else if (event == XMLStreamReader.CHARACTERS) {
+                sb.append(r.getText());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
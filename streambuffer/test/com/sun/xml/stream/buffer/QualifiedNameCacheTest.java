@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.sax.SAXBufferProcessor;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the sharing of the qualified names reported by a processor.
+ */
+public class QualifiedNameCacheTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<p:root xmlns:p='urn:p' xmlns:q='urn:q' r='0'>" +
+            "<p:item q:a='1' p:b='2'/>" +
+            "<p:item q:a='3' p:b='4'/>" +
+            "<q:item/>" +
+            "</p:root>";
+
+    private static final String[] NAMES = {
+        "xmlns:p", "xmlns:q", "r", "p:root",
+        "q:a", "p:b", "p:item", "p:item",
+        "q:a", "p:b", "p:item", "p:item",
+        "q:item", "q:item",
+        "p:root"
+    };
+
+    public QualifiedNameCacheTest(String testName) {
+        super(testName);
+    }
+
+    public void testNames() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        List<String> names = replay(b);
+        assertEquals(NAMES.length, names.size());
+        for (int i = 0; i < NAMES.length; i++) {
+            assertEquals(NAMES[i], names.get(i));
+        }
+    }
+
+    public void testNamesShared() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        SAXBufferProcessor p = new SAXBufferProcessor();
+        List<String> first = replay(b, p);
+        // The same name of different events is the same instance
+        assertSame(first.get(4), first.get(8));
+        assertSame(first.get(6), first.get(11));
+
+        // The names are shared by the replays of a processor
+        List<String> second = replay(b, p);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+
+        // and by the replays of pooled processors
+        ProcessorPool pool = new ProcessorPool();
+        first = replay(b, pool);
+        second = replay(createBuffer(DOCUMENT), pool);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    public void testNamesNotRetainedByBuffer() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        long retained = b.getStatistics().getRetainedBytes();
+        replay(b);
+        assertEquals(retained, b.getStatistics().getRetainedBytes());
+
+        // A replay by a new processor builds the names again
+        assertNotSame(replay(b).get(4), replay(b).get(4));
+    }
+
+    public void testInternedNames() throws Exception {
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        XMLReader reader = f.newSAXParser().getXMLReader();
+        assertTrue(reader.getFeature("http://xml.org/sax/features/string-interning"));
+
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.createFromXMLReader(reader, new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")));
+        assertTrue(b.hasInternedStrings());
+
+        // Names cached for a buffer without interned strings are not reported
+        SAXBufferProcessor p = new SAXBufferProcessor();
+        replay(createBuffer(DOCUMENT), p);
+        for (int i = 0; i < 2; i++) {
+            List<String> names = replay(b, p);
+            assertEquals(NAMES.length, names.size());
+            for (String name : names) {
+                assertSame(name.intern(), name);
+            }
+        }
+    }
+
+    private List<String> replay(XMLStreamBuffer b) throws Exception {
+        return replay(b, new SAXBufferProcessor());
+    }
+
+    private List<String> replay(XMLStreamBuffer b, ProcessorPool pool) throws Exception {
+        SAXBufferProcessor p = pool.borrowSAXProcessor();
+        try {
+            return replay(b, p);
+        } finally {
+            pool.release(p);
+        }
+    }
+
+    private List<String> replay(XMLStreamBuffer b, SAXBufferProcessor p) throws Exception {
+        final List<String> names = new ArrayList<String>();
+        DefaultHandler h = new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes a) {
+                for (int i = 0; i < a.getLength(); i++) {
+                    names.add(a.getQName(i));
+                }
+                names.add(qName);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                names.add(qName);
+            }
+        };
+
+        p.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        p.setContentHandler(h);
+        p.setXMLStreamBuffer(b, false);
+        p.process();
+        return names;
+    }
+}
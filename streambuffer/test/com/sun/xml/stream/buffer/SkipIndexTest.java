@@ -0,0 +1,201 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests the skipping of elements using the skip index of a buffer.
+ */
+public class SkipIndexTest extends BaseBufferTestCase {
+
+    public SkipIndexTest(String testName) {
+        super(testName);
+    }
+
+    public void testSkipElement() throws Exception {
+        String document = createDocument();
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(document, 64);
+        assertTrue(b._skipIndex.size() > 0);
+        assertEquals(trace(createFromXMLStreamReader(document, 0)), trace(b));
+    }
+
+    public void testSkipElementSmallFragments() throws Exception {
+        String document = createDocument();
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(16);
+        b.setMaxArraySize(32);
+        b.setSkipIndexThreshold(1);
+        createBuffer(b, document);
+        assertEquals(trace(createFromXMLStreamReader(document, 0)), trace(b));
+    }
+
+    public void testSkipElementXMLReader() throws Exception {
+        String document = createDocument();
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        XMLReader reader = f.newSAXParser().getXMLReader();
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSkipIndexThreshold(64);
+        b.setSymbolTableEnabled(true);
+        b.createFromXMLReader(reader, new ByteArrayInputStream(document.getBytes("UTF-8")));
+        assertTrue(b._skipIndex.size() > 0);
+        assertEquals(trace(createFromXMLStreamReader(document, 0)), trace(b));
+    }
+
+    public void testSkipElementAfterCompact() throws Exception {
+        String document = createDocument();
+        String expected = trace(createFromXMLStreamReader(document, 0));
+
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(document, 64);
+        b.compact();
+        assertTrue(b._skipIndex.size() > 0);
+        assertEquals(expected, trace(b));
+
+        b = createFromXMLStreamReader(document, 64);
+        DirectFragmentStorage storage = new DirectFragmentStorage();
+        b.compact(storage);
+        assertEquals(expected, trace(b));
+        b.release();
+    }
+
+    public void testSkipElementOfMark() throws Exception {
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(createDocument(), 64);
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        XMLStreamBuffer mark = r.nextTagAndMark();
+
+        StreamReaderBufferProcessor m = mark.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("skip", m.getLocalName());
+        m.skipElement();
+        assertEquals(XMLStreamReader.END_ELEMENT, m.getEventType());
+        assertEquals("skip", m.getLocalName());
+        assertEquals(XMLStreamReader.END_DOCUMENT, m.next());
+    }
+
+    public void testSkipElementOfMarkAfterReset() throws Exception {
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(
+                "<root><alpha><e>1</e><e>2</e></alpha><beta/></root>", 1);
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        XMLStreamBuffer mark = r.markCurrentElement();
+
+        // The mark keeps the skip index of the marked creation
+        b.reset();
+        createBuffer(b, "<other><gamma><e>3</e></gamma><e>4</e></other>");
+
+        StreamReaderBufferProcessor m = mark.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("root", m.getLocalName());
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("alpha", m.getLocalName());
+        m.skipElement();
+        assertEquals(XMLStreamReader.END_ELEMENT, m.getEventType());
+        assertEquals("alpha", m.getLocalName());
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("beta", m.getLocalName());
+    }
+
+    public void testSkipElementNotAtStartElement() throws Exception {
+        StreamReaderBufferProcessor r = createFromXMLStreamReader("<a/>", 1).readAsXMLStreamReader();
+        try {
+            r.skipElement();
+            fail();
+        } catch (javax.xml.stream.XMLStreamException e) {
+        }
+    }
+
+    private static MutableXMLStreamBuffer createFromXMLStreamReader(String document, int threshold)
+            throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSkipIndexThreshold(threshold);
+        return createBuffer(b, document);
+    }
+
+    /**
+     * Read the buffer, skipping the elements named "skip".
+     */
+    private static String trace(XMLStreamBuffer b) throws Exception {
+        StringBuilder s = new StringBuilder();
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        while (r.hasNext()) {
+            switch (r.next()) {
+                case XMLStreamReader.START_ELEMENT:
+                    s.append('<').append(r.getLocalName());
+                    for (int i = 0; i < r.getAttributeCount(); i++) {
+                        s.append(' ').append(r.getAttributeLocalName(i)).append('=').append(r.getAttributeValue(i));
+                    }
+                    s.append('>');
+                    if (r.getLocalName().equals("skip")) {
+                        r.skipElement();
+                        s.append("</").append(r.getLocalName()).append(' ').append(r.getNamespaceURI()).append('>');
+                    }
+                    break;
+                case XMLStreamReader.END_ELEMENT:
+                    s.append("</").append(r.getLocalName()).append(' ').append(r.getNamespaceURI()).append('>');
+                    break;
+                case XMLStreamReader.CHARACTERS:
+                    s.append(r.getText());
+                    break;
+            }
+        }
+        return s.toString();
+    }
+
+    private static String createDocument() {
+        StringBuilder b = new StringBuilder("<root xmlns=\"urn:test\">");
+        for (int i = 0; i < 20; i++) {
+            b.append("<skip n=\"").append(i).append("\" xmlns:p=\"urn:p\">");
+            for (int j = 0; j < i * 10; j++) {
+                b.append("<p:e a=\"").append(j).append("\">text ").append(j).append("<!--c--></p:e>");
+                if (j % 7 == 0) {
+                    b.append("<skip><e>").append(j).append("</e></skip>");
+                }
+            }
+            b.append("</skip><keep>").append(i).append("</keep>");
+        }
+        return b.append("</root>").toString();
+    }
+}
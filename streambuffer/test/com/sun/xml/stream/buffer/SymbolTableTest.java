@@ -0,0 +1,154 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.stax.StreamReaderBufferProcessor;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests buffers whose structure strings are stored in a symbol table.
+ */
+public class SymbolTableTest extends BaseBufferTestCase {
+
+    public SymbolTableTest(String testName) {
+        super(testName);
+    }
+
+    public void testXMLStreamReader() throws Exception {
+        String document = createDocument(300);
+        MutableXMLStreamBuffer expected = createFromXMLStreamReader(document, false);
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(document, true);
+
+        assertNotNull(b._symbolTable);
+        assertTrue(b._symbolTable.size() < 400);
+        assertEquals(toXML(expected), toXML(b));
+        assertEquals(toSAX(expected), toSAX(b));
+        assertEquals(readNames(expected), readNames(b));
+    }
+
+    public void testXMLReader() throws Exception {
+        String document = createDocument(300);
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        XMLReader reader = f.newSAXParser().getXMLReader();
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        b.createFromXMLReader(reader, new ByteArrayInputStream(document.getBytes("UTF-8")));
+
+        MutableXMLStreamBuffer expected = createFromXMLStreamReader(document, false);
+        assertEquals(toXML(expected), toXML(b));
+        assertEquals(readNames(expected), readNames(b));
+    }
+
+    public void testCompact() throws Exception {
+        String document = createDocument(300);
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(document, true);
+        String expected = toXML(b);
+
+        assertTrue(b.compact() > 0);
+        assertEquals(expected, toXML(b));
+    }
+
+    public void testDisable() throws Exception {
+        String document = createDocument(10);
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(document, true);
+        String expected = toXML(b);
+
+        // The buffer is still processed using the symbol table
+        b.setSymbolTableEnabled(false);
+        assertEquals(expected, toXML(b));
+
+        b.reset();
+        assertNull(b._symbolTable);
+        createBuffer(b, document);
+        assertEquals(expected, toXML(b));
+    }
+
+    public void testMarkAfterReset() throws Exception {
+        MutableXMLStreamBuffer b = createFromXMLStreamReader(
+                "<root><alpha a=\"1\">text</alpha><beta/></root>", true);
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        XMLStreamBuffer mark = r.markCurrentElement();
+        String expected = toXML(mark);
+
+        // The mark keeps the names of the symbol table of the marked creation
+        String document = "<other><gamma b=\"2\"/></other>";
+        b.reset();
+        createBuffer(b, document);
+        assertEquals(expected, toXML(mark));
+        assertEquals(toXML(createFromXMLStreamReader(document, false)), toXML(b));
+    }
+
+    private static String createDocument(int names) {
+        StringBuilder b = new StringBuilder(
+                "<s:root xmlns:s=\"urn:s\" xmlns=\"urn:test\"><?target data?><!--comment-->");
+        for (int i = 0; i < 1000; i++) {
+            b.append("<e").append(i % names).append(" a=\"").append(i).append("\" s:b=\"x\">");
+            b.append("<s:f xmlns:t=\"urn:t\" t:c=\"y\">text ").append(i).append("</s:f>");
+            b.append("</e").append(i % names).append(">");
+        }
+        return b.append("</s:root>").toString();
+    }
+
+    private static MutableXMLStreamBuffer createFromXMLStreamReader(String document, boolean symbolTable)
+            throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(symbolTable);
+        return createBuffer(b, document);
+    }
+
+    private static String toSAX(XMLStreamBuffer b) throws Exception {
+        StringWriter w = new StringWriter();
+        TransformerHandler h = ((SAXTransformerFactory)TransformerFactory.newInstance()).newTransformerHandler();
+        h.setResult(new StreamResult(w));
+        b.writeTo(h, false);
+        return w.toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer;
+
+import com.sun.xml.stream.buffer.sax.SAXBufferCreator;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferCreator;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Tests the flagging of whitespace only text and the stripping of
+ * whitespace when creating buffers.
+ */
+public class WhitespaceTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<a>\n" +
+            "  <b>text</b>\n" +
+            "  <c> two words </c>\n" +
+            "  <d>\t</d>\n" +
+            "</a>";
+
+    public WhitespaceTest(String testName) {
+        super(testName);
+    }
+
+    public void testIsWhiteSpace() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(new MutableXMLStreamBuffer(), DOCUMENT, true);
+        assertEquals("[W][text][W][ two words ][W][W][W]", trace(b));
+
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+        assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+        assertEquals("b", r.getLocalName());
+    }
+
+    public void testRoundTrip() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(new MutableXMLStreamBuffer(), DOCUMENT, true);
+        assertEquals(DOCUMENT, toXML(b));
+
+        b.compact();
+        assertEquals(DOCUMENT, toXML(b));
+    }
+
+    public void testCompactCharacters() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setCompactCharactersEnabled(true);
+        createBuffer(b, DOCUMENT, true);
+        assertEquals("[W][text][W][ two words ][W][W][W]", trace(b));
+        assertEquals(DOCUMENT, toXML(b));
+    }
+
+    public void testCharacterLayout() throws Exception {
+        // Whitespace is stored as other text unless characters are compacted
+        MutableXMLStreamBuffer b = createBuffer(new MutableXMLStreamBuffer(), DOCUMENT, true);
+        assertEquals(26, b.getStatistics().getContentCharacters().getUsedEntries());
+
+        MutableXMLStreamBuffer compact = new MutableXMLStreamBuffer();
+        compact.setCompactCharactersEnabled(true);
+        createBuffer(compact, DOCUMENT, true);
+        assertTrue(compact.getStatistics().getContentCharacters().getUsedEntries() < 26);
+
+        // Processors that do not check for whitespace read it as other text
+        assertEquals(AbstractProcessor.STATE_TEXT_AS_CHAR_ARRAY_SMALL,
+                AbstractProcessor.getEIIState(AbstractCreatorProcessor.T_TEXT_AS_WHITESPACE_SMALL));
+        assertEquals(AbstractProcessor.STATE_TEXT_AS_CHAR_ARRAY_MEDIUM,
+                AbstractProcessor.getEIIState(AbstractCreatorProcessor.T_TEXT_AS_WHITESPACE_MEDIUM));
+    }
+
+    public void testXMLStreamWriter() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        XMLStreamWriter w = new StreamWriterBufferCreator(b);
+        w.writeStartElement("a");
+        w.writeCharacters("\n  ");
+        w.writeStartElement("b");
+        w.writeCharacters("text");
+        w.writeEndElement();
+        w.writeCharacters("\n".toCharArray(), 0, 1);
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        assertEquals("[W][text][W]", trace(b));
+        // Text written as a string is kept as a string, only the character array is stored as characters
+        assertEquals(1, b.getStatistics().getContentCharacters().getUsedEntries());
+    }
+
+    public void testStripWhitespace() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setStripWhitespaceEnabled(true);
+        createBuffer(b, DOCUMENT, true);
+        assertEquals("[text][ two words ]", trace(b));
+
+        MutableXMLStreamBuffer unstripped = createBuffer(new MutableXMLStreamBuffer(), DOCUMENT, true);
+        assertTrue(b.getStatistics().getStructure().getUsedEntries() <
+                unstripped.getStatistics().getStructure().getUsedEntries());
+    }
+
+    public void testStripWhitespaceKeepsText() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setStripWhitespaceEnabled(true);
+        SAXBufferCreator c = new SAXBufferCreator(b);
+        c.startDocument();
+        c.startElement("", "a", "a", new AttributesImpl());
+        characters(c, "  ");
+        c.startElement("", "b", "b", new AttributesImpl());
+        characters(c, "one");
+        characters(c, " ");
+        characters(c, "two");
+        c.endElement("", "b", "b");
+        characters(c, "\n");
+        c.endElement("", "a", "a");
+        c.endDocument();
+
+        assertEquals("[one two]", trace(b));
+    }
+
+    private static void characters(SAXBufferCreator c, String s) throws Exception {
+        c.characters(s.toCharArray(), 0, s.length());
+    }
+
+    private static String trace(XMLStreamBuffer b) throws Exception {
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        StringBuilder sb = new StringBuilder();
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.CHARACTERS) {
+                sb.append('[').append(r.isWhiteSpace() ? "W" : r.getText()).append(']');
+            }
+        }
+        return sb.toString();
+    }
+}
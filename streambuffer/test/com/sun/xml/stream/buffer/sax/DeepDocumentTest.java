@@ -0,0 +1,210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.sax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import com.sun.xml.stream.buffer.XMLStreamBuffer;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferCreator;
+import java.io.ByteArrayInputStream;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the replay of deeply nested documents by {@link SAXBufferProcessor}.
+ */
+public class DeepDocumentTest extends BaseBufferTestCase {
+    private static final int DEPTH = 100000;
+
+    public DeepDocumentTest(String testName) {
+        super(testName);
+    }
+
+    public void testDeepDocument() throws Throwable {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        StreamWriterBufferCreator w = new StreamWriterBufferCreator(b);
+        w.writeStartDocument();
+        for (int i = 0; i < DEPTH; i++) {
+            w.writeStartElement("p", "e", "urn:p");
+            if (i % 1000 == 0) {
+                w.writeNamespace("p", "urn:p");
+            }
+            w.writeAttribute("i", Integer.toString(i));
+        }
+        w.writeCharacters("leaf");
+        for (int i = 0; i < DEPTH; i++) {
+            w.writeEndElement();
+        }
+        w.writeEndDocument();
+
+        final XMLStreamBuffer buffer = b;
+        final CountingHandler h = new CountingHandler();
+        final Throwable[] failure = new Throwable[1];
+
+        // A small stack that cannot hold a frame for each element
+        Thread t = new Thread(null, new Runnable() {
+            public void run() {
+                try {
+                    buffer.writeTo(h, false);
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        }, "replay", 256 * 1024);
+        t.start();
+        t.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        assertEquals(DEPTH, h.starts);
+        assertEquals(DEPTH, h.ends);
+        assertEquals(DEPTH, h.maxDepth);
+        assertEquals(DEPTH / 1000, h.prefixStarts);
+        assertEquals(DEPTH / 1000, h.prefixEnds);
+        assertEquals("leaf", h.text.toString());
+    }
+
+    public void testEvents() throws Exception {
+        String xml =
+                "<a:x xmlns:a='urn:a' id='1'>" +
+                  "<a:y xmlns:b='urn:b' b:id='2'>text<b:z/><?pi data?>more</a:y>" +
+                  "<w><v xmlns='urn:c'><u/></v></w>" +
+                "</a:x>";
+
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        XMLReader r = spf.newSAXParser().getXMLReader();
+        RecordingHandler expected = new RecordingHandler();
+        r.setContentHandler(expected);
+        r.parse(new org.xml.sax.InputSource(new ByteArrayInputStream(xml.getBytes())));
+
+        XMLStreamBuffer b = XMLStreamBuffer.createNewBufferFromXMLReader(
+                spf.newSAXParser().getXMLReader(), new ByteArrayInputStream(xml.getBytes()));
+        RecordingHandler actual = new RecordingHandler();
+        b.writeTo(actual, false);
+        assertEquals(expected.events.toString(), actual.events.toString());
+    }
+
+    private static final class CountingHandler extends DefaultHandler {
+        int starts;
+        int ends;
+        int depth;
+        int maxDepth;
+        int prefixStarts;
+        int prefixEnds;
+        final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (!"urn:p".equals(uri) || !"p:e".equals(qName)
+                    || !Integer.toString(starts).equals(attributes.getValue("i"))) {
+                throw new SAXException("Unexpected element " + qName + " at " + starts);
+            }
+            starts++;
+            maxDepth = Math.max(maxDepth, ++depth);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            ends++;
+            depth--;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            prefixStarts++;
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            prefixEnds++;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+    }
+
+    private static final class RecordingHandler extends DefaultHandler {
+        final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            events.append("\nstart ").append(uri).append(' ').append(localName).append(' ').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                events.append(' ').append(attributes.getQName(i)).append('=').append(attributes.getValue(i));
+            }
+            events.append('\n');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.append("\nend ").append(uri).append(' ').append(localName).append(' ').append(qName).append('\n');
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            events.append("\nmap ").append(prefix).append('=').append(uri).append('\n');
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            events.append("\nunmap ").append(prefix).append('\n');
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            events.append("\npi ").append(target).append(' ').append(data).append('\n');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            // Text may be split differently, so it is not delimited
+            events.append(ch, start, length);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.sax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the reporting of the events of a buffer to several handlers with a {@link TeeHandler}.
+ */
+public class TeeHandlerTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<p:root xmlns:p='urn:p' a='1'>" +
+            "<!--one-->" +
+            "<p:first>text</p:first>" +
+            "<?pi data?>" +
+            "<second b='2'><!--two--></second>" +
+            "</p:root>";
+
+    public TeeHandlerTest(String testName) {
+        super(testName);
+    }
+
+    public void testEvents() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        RecordingHandler expected = new RecordingHandler();
+        b.writeTo(expected, false);
+        assertTrue(expected.events.contains("comment:two"));
+
+        RecordingHandler h1 = new RecordingHandler();
+        RecordingHandler h2 = new RecordingHandler();
+        DefaultHandler h3 = new DefaultHandler();
+        RecordingHandler h4 = new RecordingHandler();
+        TeeHandler tee = new TeeHandler(h1, h2, h3);
+        tee.add(h4, null);
+        assertEquals(4, tee.getHandlerCount());
+        b.writeTo(tee, false);
+
+        assertEquals(expected.events, h1.events);
+        assertEquals(expected.events, h2.events);
+        // Lexical events are not reported without a lexical handler
+        List<String> events = new ArrayList<String>(expected.events);
+        events.remove("comment:one");
+        events.remove("comment:two");
+        assertEquals(events, h4.events);
+        assertFalse(tee.isFinished());
+    }
+
+    public void testStopFinishedHandlers() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        RecordingHandler h1 = new FinishingHandler("first");
+        RecordingHandler h2 = new RecordingHandler();
+        RecordingHandler h3 = new FinishingHandler("second");
+        TeeHandler tee = new TeeHandler(h1, h2, h3);
+        tee.setStopFinishedHandlers(true);
+        b.writeTo(tee, false);
+
+        // The event that finishes a handler is the last one it receives
+        assertEquals("end:first", last(h1.events));
+        assertEquals("endDocument", last(h2.events));
+        assertEquals("end:second", last(h3.events));
+        assertFalse(tee.isFinished());
+
+        h2 = new FinishingHandler("root");
+        tee = new TeeHandler(h1, h2, h3);
+        tee.setStopFinishedHandlers(true);
+        h1.events.clear();
+        h3.events.clear();
+        b.writeTo(tee, false);
+        assertTrue(tee.isFinished());
+        assertEquals("end:root", last(h2.events));
+
+        // A reset handler receives all events
+        tee.reset();
+        h2.events.clear();
+        b.writeTo(tee, false);
+        assertEquals("end:root", last(h2.events));
+        assertEquals("startDocument", h2.events.get(0));
+    }
+
+    public void testFinishedHandlersNotStopped() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        RecordingHandler expected = new RecordingHandler();
+        b.writeTo(expected, false);
+
+        RecordingHandler h = new FinishingHandler("first");
+        TeeHandler tee = new TeeHandler(h);
+        b.writeTo(tee, false);
+        assertEquals(expected.events, h.events);
+        assertFalse(tee.isFinished());
+    }
+
+    private static String last(List<String> events) {
+        return events.get(events.size() - 1);
+    }
+
+    private static class RecordingHandler extends DefaultWithLexicalHandler {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void startDocument() {
+            events.add("startDocument");
+        }
+
+        @Override
+        public void endDocument() {
+            events.add("endDocument");
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            events.add("startPrefix:" + prefix + "=" + uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            events.add("endPrefix:" + prefix);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes a) {
+            StringBuilder sb = new StringBuilder("start:").append(qName);
+            for (int i = 0; i < a.getLength(); i++) {
+                sb.append(' ').append(a.getQName(i)).append('=').append(a.getValue(i));
+            }
+            events.add(sb.toString());
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.add("end:" + localName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.add("characters:" + new String(ch, start, length));
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            events.add("pi:" + target + " " + data);
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            events.add("comment:" + new String(ch, start, length));
+        }
+    }
+
+    private static class FinishingHandler extends RecordingHandler implements TeeHandler.Finishable {
+        private final String _lastElement;
+
+        FinishingHandler(String lastElement) {
+            _lastElement = lastElement;
+        }
+
+        public boolean isFinished() {
+            return last(events).equals("end:" + _lastElement);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.sax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import com.sun.xml.stream.buffer.stax.StreamWriterBufferCreator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import org.jvnet.staxex.Base64Data;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the reporting of text held as strings and objects by {@link SAXBufferProcessor}.
+ */
+public class TextDispatchTest extends BaseBufferTestCase {
+
+    public TextDispatchTest(String testName) {
+        super(testName);
+    }
+
+    public void testStrings() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        StreamWriterBufferCreator w = new StreamWriterBufferCreator(b);
+        w.writeStartDocument();
+        w.writeStartElement("r");
+        String[] texts = { "a longer first text \u20ac\ud834\udd1e", "second", "", "3" };
+        for (String text : texts) {
+            w.writeStartElement("t");
+            w.writeCharacters(text);
+            w.writeEndElement();
+        }
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        RecordingHandler h = new RecordingHandler();
+        b.writeTo(h, false);
+        assertEquals(texts.length, h.texts.size());
+        for (int i = 0; i < texts.length; i++) {
+            assertEquals(texts[i], h.texts.get(i));
+        }
+
+        // The characters are reported from a single scratch buffer, the
+        // empty text is held as whitespace
+        assertSame(h.arrays.get(0), h.arrays.get(1));
+        assertSame(h.arrays.get(1), h.arrays.get(3));
+    }
+
+    public void testBinary() throws Exception {
+        Random random = new Random(22);
+        int[] lengths = { 0, 1, 2, 3, 4, 3071, 3072, 3073, 100000 };
+        for (int length : lengths) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            verifyBinary(bytes, false);
+            verifyBinary(bytes, true);
+        }
+    }
+
+    private void verifyBinary(final byte[] bytes, boolean dataHandler) throws Exception {
+        final int[] opened = new int[1];
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        StreamWriterBufferCreator w = new StreamWriterBufferCreator(b);
+        w.writeStartDocument();
+        w.writeStartElement("r");
+        if (dataHandler) {
+            w.writeBinary(new DataHandler(new DataSource() {
+                public InputStream getInputStream() throws IOException {
+                    // The data source can be read once
+                    if (opened[0]++ > 0) {
+                        throw new IOException("read twice");
+                    }
+                    // Return fewer bytes than requested to exercise partial reads
+                    return new ByteArrayInputStream(bytes) {
+                        @Override
+                        public synchronized int read(byte[] b, int off, int len) {
+                            return super.read(b, off, Math.min(len, 1000));
+                        }
+                    };
+                }
+
+                public OutputStream getOutputStream() throws IOException {
+                    throw new IOException();
+                }
+
+                public String getContentType() {
+                    return "application/octet-stream";
+                }
+
+                public String getName() {
+                    return "data";
+                }
+            }));
+        } else {
+            w.writeBinary(bytes, 0, bytes.length, null);
+        }
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        Base64Data expected = new Base64Data();
+        expected.set(bytes, null);
+
+        // Each replay reports the same data
+        for (int replay = 0; replay < 2; replay++) {
+            RecordingHandler h = new RecordingHandler();
+            b.writeTo(h, false);
+
+            StringBuilder actual = new StringBuilder();
+            for (String text : h.texts) {
+                assertTrue(text.length() <= 4096);
+                actual.append(text);
+            }
+            assertEquals(bytes.length + " " + dataHandler, expected.toString(), actual.toString());
+            assertEquals((bytes.length + 3071) / 3072, h.texts.size());
+        }
+        assertTrue(opened[0] <= 1);
+    }
+
+    private static final class RecordingHandler extends DefaultHandler {
+        final List<String> texts = new ArrayList<String>();
+        final List<char[]> arrays = new ArrayList<char[]>();
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            texts.add(new String(ch, start, length));
+            arrays.add(ch);
+        }
+    }
+}
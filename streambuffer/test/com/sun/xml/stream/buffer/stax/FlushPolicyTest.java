@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Tests the flushing of the writer by {@link StreamWriterBufferProcessor}.
+ */
+public class FlushPolicyTest extends BaseBufferTestCase {
+    private static final String DOCUMENT;
+    static {
+        StringBuilder sb = new StringBuilder("<!--a--><root>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<c>0123456789</c>");
+        }
+        DOCUMENT = sb.append("</root><!--b-->").toString();
+    }
+
+    private String _output;
+
+    public FlushPolicyTest(String testName) {
+        super(testName);
+    }
+
+    public void testTopLevel() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        StreamWriterBufferProcessor p = new StreamWriterBufferProcessor(b, false);
+        assertSame(FlushPolicy.TOP_LEVEL, p.getFlushPolicy());
+        // Flushed before the document, the comments, the element and the end
+        assertEquals(5, write(p));
+        String expected = _output;
+
+        assertEquals(5, write(b, false, FlushPolicy.TOP_LEVEL));
+        assertEquals(expected, _output);
+        assertEquals(0, write(b, true, FlushPolicy.TOP_LEVEL));
+    }
+
+    public void testNever() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        assertEquals(0, write(b, false, FlushPolicy.NEVER));
+        assertEquals(0, write(b, true, FlushPolicy.NEVER));
+    }
+
+    public void testAtEnd() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        assertEquals(1, write(b, false, FlushPolicy.AT_END));
+        assertEquals(1, write(b, true, FlushPolicy.AT_END));
+    }
+
+    public void testEveryItems() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        // 2 comments and 32 items of the element, flushed after 8, 16, 24 and 32 items and at the end
+        assertEquals(5, write(b, false, FlushPolicy.everyItems(8)));
+        assertEquals(35, write(b, false, FlushPolicy.everyItems(1)));
+        assertEquals(1, write(b, false, FlushPolicy.everyItems(100)));
+    }
+
+    public void testEveryCharacters() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        // 100 characters of text and 2 of comments
+        assertEquals(11, write(b, false, FlushPolicy.everyCharacters(10)));
+        assertEquals(3, write(b, false, FlushPolicy.everyCharacters(40)));
+        assertEquals(2, write(b, true, FlushPolicy.everyCharacters(100)));
+    }
+
+    public void testOutputUnchanged() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        write(b, false, FlushPolicy.TOP_LEVEL);
+        String expected = _output;
+        FlushPolicy[] policies = {
+            FlushPolicy.NEVER, FlushPolicy.AT_END,
+            FlushPolicy.everyItems(3), FlushPolicy.everyCharacters(7)
+        };
+        for (FlushPolicy policy : policies) {
+            write(b, false, policy);
+            assertEquals(policy.toString(), expected, _output);
+        }
+    }
+
+    public void testInvalidPolicy() throws Exception {
+        try {
+            FlushPolicy.everyItems(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            FlushPolicy.everyCharacters(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new StreamWriterBufferProcessor().setFlushPolicy(null);
+            fail();
+        } catch (NullPointerException e) {
+        }
+    }
+
+    private int write(MutableXMLStreamBuffer b, boolean fragment, FlushPolicy policy) throws Exception {
+        StreamWriterBufferProcessor p = new StreamWriterBufferProcessor(b, fragment);
+        p.setFlushPolicy(policy);
+        return write(p);
+    }
+
+    /**
+     * @return The number of flushes of the writer.
+     */
+    private int write(StreamWriterBufferProcessor p) throws Exception {
+        StringWriter out = new StringWriter();
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        final int[] flushes = new int[1];
+        XMLStreamWriter counting = (XMLStreamWriter)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { XMLStreamWriter.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                        if (m.getName().equals("flush")) {
+                            flushes[0]++;
+                        }
+                        try {
+                            return m.invoke(writer, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        p.process(counting);
+        writer.close();
+        _output = out.toString();
+        return flushes[0];
+    }
+}
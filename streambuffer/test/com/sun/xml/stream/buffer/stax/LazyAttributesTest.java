@@ -0,0 +1,145 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tests the decoding of attributes on first access by a
+ * {@link StreamReaderBufferProcessor}.
+ */
+public class LazyAttributesTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<a xmlns:p='urn:p' x='1' p:y='2'>" +
+            "<b z='3'>text</b>" +
+            "<c xmlns='urn:c' p:w='4' v='5'><d u='6'/></c>" +
+            "<e/>" +
+            "</a>";
+
+    public LazyAttributesTest(String testName) {
+        super(testName);
+    }
+
+    public void testAttributes() throws Exception {
+        verify(new MutableXMLStreamBuffer());
+    }
+
+    public void testAttributesSmallFragments() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(4);
+        b.setMaxArraySize(8);
+        verify(b);
+    }
+
+    public void testAttributesSymbolTable() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        verify(b);
+    }
+
+    public void testAttributesAreNotDecoded() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals(0, r._attributeCache.getLength());
+        assertEquals(2, r.getAttributeCount());
+        assertEquals(2, r._attributeCache.getLength());
+
+        // The attributes of the next element are not decoded
+        r.nextTag();
+        assertEquals(0, r._attributeCache.getLength());
+        assertEquals("text", r.getElementText());
+    }
+
+    private void verify(MutableXMLStreamBuffer b) throws Exception {
+        createBuffer(b, DOCUMENT);
+
+        // Never access the attributes
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        StringBuilder names = new StringBuilder();
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.START_ELEMENT) {
+                names.append(r.getLocalName());
+            } else if (r.getEventType() == XMLStreamReader.CHARACTERS) {
+                names.append(r.getText());
+            }
+        }
+        assertEquals("abtextcde", names.toString());
+
+        // Access the attributes of some elements only
+        r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals("1", r.getAttributeValue(null, "x"));
+        assertEquals("2", r.getAttributeValue("urn:p", "y"));
+        r.nextTag();
+        assertEquals("text", r.getElementText());
+        r.nextTag();
+        assertEquals("c", r.getLocalName());
+        r.nextTag();
+        assertEquals(1, r.getAttributeCount());
+        assertEquals(new QName("", "u"), r.getAttributeName(0));
+        assertEquals("6", r.getAttributeValue(0));
+        assertEquals("CDATA", r.getAttributeType(0));
+        r.nextTag();
+        r.nextTag();
+        r.nextTag();
+        assertEquals("e", r.getLocalName());
+        assertEquals(0, r.getAttributeCount());
+
+        // Access the attributes of all elements
+        r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals(2, r.getAttributeCount());
+        r.nextTag();
+        assertEquals("3", r.getAttributeValue(null, "z"));
+        r.getElementText();
+        r.nextTag();
+        assertEquals(2, r.getAttributeCount());
+        assertEquals("w", r.getAttributeLocalName(0));
+        assertEquals("urn:p", r.getAttributeNamespace(0));
+        assertEquals("p", r.getAttributePrefix(0));
+        assertEquals("4", r.getAttributeValue(0));
+        assertEquals("5", r.getAttributeValue(null, "v"));
+        assertEquals("urn:c", r.getNamespaceURI());
+    }
+}
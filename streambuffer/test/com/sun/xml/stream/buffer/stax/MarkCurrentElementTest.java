@@ -0,0 +1,203 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import com.sun.xml.stream.buffer.XMLStreamBuffer;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.Map;
+
+/**
+ * Tests the marking of the current element of a {@link StreamReaderBufferProcessor}.
+ */
+public class MarkCurrentElementTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<S:Envelope xmlns:S='urn:s' xmlns:a='urn:a'>" +
+            "<S:Header xmlns:b='urn:b'>" +
+            "<a:One x='1'><b:Child/></a:One>" +
+            "<b:Two xmlns:b='urn:b2' y='2'>two</b:Two>" +
+            "<Three xmlns='urn:c'><Child/></Three>" +
+            "</S:Header>" +
+            "<S:Body/>" +
+            "</S:Envelope>";
+
+    public MarkCurrentElementTest(String testName) {
+        super(testName);
+    }
+
+    public void testMarkCurrentElement() throws Exception {
+        verifyHeaderMarks(createBuffer(DOCUMENT));
+    }
+
+    public void testMarkCurrentElementSmallFragments() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(4);
+        b.setMaxArraySize(8);
+        verifyHeaderMarks(createBuffer(b, DOCUMENT));
+    }
+
+    public void testMarkCurrentElementSymbolTable() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        verifyHeaderMarks(createBuffer(b, DOCUMENT));
+    }
+
+    public void testNextTagAndMarkSharesNamespaces() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+
+        XMLStreamBuffer one = r.nextTagAndMark();
+        r.skipElement();
+        XMLStreamBuffer two = r.nextTagAndMark();
+        assertSame(one.getInscopeNamespaces(), two.getInscopeNamespaces());
+        assertEquals("urn:b", one.getInscopeNamespaces().get("b"));
+        assertEquals("One", readRootName(one));
+        assertEquals("Two", readRootName(two));
+    }
+
+    public void testMarkOfMark() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        r.nextTag();
+        XMLStreamBuffer one = r.markCurrentElement();
+
+        StreamReaderBufferProcessor m = one.readAsXMLStreamReader();
+        m.nextTag();
+        XMLStreamBuffer mark = m.markCurrentElement();
+        assertSame(one.getInscopeNamespaces(), mark.getInscopeNamespaces());
+
+        m.nextTag();
+        mark = m.markCurrentElement();
+        assertEquals("urn:a", mark.getInscopeNamespaces().get("a"));
+        assertEquals("urn:b", mark.getInscopeNamespaces().get("b"));
+
+        StreamReaderBufferProcessor c = mark.readAsXMLStreamReader();
+        c.nextTag();
+        assertEquals("urn:b", c.getNamespaceURI());
+        assertEquals("Child", c.getLocalName());
+    }
+
+    public void testNotAtStartElement() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        try {
+            r.markCurrentElement();
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    private void verifyHeaderMarks(MutableXMLStreamBuffer b) throws Exception {
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        assertEquals("Header", r.getLocalName());
+
+        r.nextTag();
+        XMLStreamBuffer one = r.markCurrentElement();
+        // The position of the reader is unchanged
+        assertEquals("One", r.getLocalName());
+        assertEquals("1", r.getAttributeValue(null, "x"));
+        r.skipElement();
+
+        r.nextTag();
+        XMLStreamBuffer two = r.markCurrentElement();
+        r.skipElement();
+
+        r.nextTag();
+        XMLStreamBuffer three = r.markCurrentElement();
+        r.skipElement();
+
+        assertEquals(XMLStreamReader.END_ELEMENT, r.nextTag());
+        assertEquals("Header", r.getLocalName());
+        assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+        assertEquals("Body", r.getLocalName());
+
+        // Siblings share the in-scope namespaces of the parent
+        Map<String,String> inscope = one.getInscopeNamespaces();
+        assertSame(inscope, two.getInscopeNamespaces());
+        assertSame(inscope, three.getInscopeNamespaces());
+        assertEquals(3, inscope.size());
+        assertEquals("urn:s", inscope.get("S"));
+        assertEquals("urn:a", inscope.get("a"));
+        assertEquals("urn:b", inscope.get("b"));
+        try {
+            inscope.put("c", "urn:c");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+
+        StreamReaderBufferProcessor m = one.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("urn:a", m.getNamespaceURI());
+        assertEquals("One", m.getLocalName());
+        assertEquals("1", m.getAttributeValue(null, "x"));
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("urn:b", m.getNamespaceURI());
+        assertEquals("Child", m.getLocalName());
+        assertEquals(XMLStreamReader.END_ELEMENT, m.nextTag());
+        assertEquals(XMLStreamReader.END_ELEMENT, m.nextTag());
+        assertEquals(XMLStreamReader.END_DOCUMENT, m.next());
+
+        m = two.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("urn:b2", m.getNamespaceURI());
+        assertEquals("2", m.getAttributeValue(null, "y"));
+        assertEquals("two", m.getElementText());
+        assertEquals(XMLStreamReader.END_DOCUMENT, m.next());
+
+        m = three.readAsXMLStreamReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("urn:c", m.getNamespaceURI());
+        assertEquals(XMLStreamReader.START_ELEMENT, m.nextTag());
+        assertEquals("urn:c", m.getNamespaceURI());
+        assertEquals("Child", m.getLocalName());
+    }
+
+    private String readRootName(XMLStreamBuffer b) throws Exception {
+        XMLStreamReader r = b.readAsXMLStreamReader();
+        r.nextTag();
+        return r.getLocalName();
+    }
+}
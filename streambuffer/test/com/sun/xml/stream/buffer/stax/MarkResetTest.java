@@ -0,0 +1,259 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tests the rewinding of a {@link StreamReaderBufferProcessor} with
+ * {@link StreamReaderBufferProcessor#mark()} and {@link StreamReaderBufferProcessor#reset()}.
+ */
+public class MarkResetTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<S:Envelope xmlns:S='urn:s'>" +
+            "<S:Header>" +
+            "<wsse:Security xmlns:wsse='urn:wsse' S:mustUnderstand='1'>" +
+            "<wsse:Token id='t1' xmlns:x='urn:x1'>abc<x:Inner/></wsse:Token>" +
+            "<wsse:Token id='t2' xmlns:x='urn:x2'>d\u00e9f<!--c--><?pi data?></wsse:Token>" +
+            "<Signature xmlns='urn:dsig'>  <Value>1234</Value></Signature>" +
+            "</wsse:Security>" +
+            "</S:Header>" +
+            "<S:Body><Content/></S:Body>" +
+            "</S:Envelope>";
+
+    public MarkResetTest(String testName) {
+        super(testName);
+    }
+
+    public void testMarkReset() throws Exception {
+        verifyMarkReset(createBuffer(DOCUMENT));
+    }
+
+    public void testMarkResetSmallFragments() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer(4);
+        b.setMaxArraySize(8);
+        verifyMarkReset(createBuffer(b, DOCUMENT));
+    }
+
+    public void testMarkResetSymbolTableAndSkipIndex() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        b.setSkipIndexThreshold(1);
+        verifyMarkReset(createBuffer(b, DOCUMENT));
+    }
+
+    public void testMarkAtEveryEvent() throws Exception {
+        MutableXMLStreamBuffer b = createBuffer(DOCUMENT);
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        int events = 0;
+        while (true) {
+            r.mark();
+            String expected = readRemaining(r);
+            r.reset();
+            assertEquals("Event " + events, expected, readRemaining(r));
+            r.reset();
+            if (!r.hasNext()) {
+                break;
+            }
+            r.next();
+            events++;
+        }
+        assertTrue(events > 20);
+    }
+
+    public void testLazyAttributes() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        moveTo(r, "Token");
+        r.mark();
+        r.skipElement();
+        r.nextTag();
+        assertEquals("t2", r.getAttributeValue(null, "id"));
+
+        r.reset();
+        assertEquals(XMLStreamReader.START_ELEMENT, r.getEventType());
+        assertEquals("t1", r.getAttributeValue(null, "id"));
+        assertEquals(1, r.getAttributeCount());
+
+        // The attributes are decoded when marked
+        r.mark();
+        r.next();
+        r.reset();
+        assertEquals("t1", r.getAttributeValue(0));
+    }
+
+    public void testSkipElementAfterReset() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSkipIndexThreshold(1);
+        StreamReaderBufferProcessor r = createBuffer(b, DOCUMENT).readAsXMLStreamReader();
+        moveTo(r, "Security");
+        r.mark();
+        r.skipElement();
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+        assertEquals("Security", r.getLocalName());
+
+        r.reset();
+        assertEquals("Security", r.getLocalName());
+        r.skipElement();
+        assertEquals("Security", r.getLocalName());
+        r.nextTag();
+        assertEquals("Header", r.getLocalName());
+        r.nextTag();
+        assertEquals("Body", r.getLocalName());
+
+        r.reset();
+        XMLStreamReader m = r.markCurrentElement().readAsXMLStreamReader();
+        m.nextTag();
+        assertEquals("Security", m.getLocalName());
+    }
+
+    public void testNotMarked() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        try {
+            r.reset();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        r.mark();
+        r.setXMLStreamBuffer(createBuffer(DOCUMENT));
+        try {
+            r.reset();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private void verifyMarkReset(MutableXMLStreamBuffer b) throws Exception {
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        moveTo(r, "Security");
+        r.mark();
+
+        // First pass
+        String first = readElement(r);
+        assertEquals("Security", r.getLocalName());
+        r.nextTag();
+        r.nextTag();
+        assertEquals("Body", r.getLocalName());
+        assertNull(r.getNamespaceURI("wsse"));
+
+        // Second pass
+        r.reset();
+        assertEquals("urn:wsse", r.getNamespaceURI("wsse"));
+        assertEquals("urn:s", r.getNamespaceURI("S"));
+        assertEquals(first, readElement(r));
+
+        // The mark is kept
+        r.reset();
+        assertEquals(first, readElement(r));
+        assertEquals("S", r.getNamespaceContext().getPrefix("urn:s"));
+
+        // Marking again replaces the mark
+        r.nextTag();
+        assertEquals("Header", r.getLocalName());
+        r.mark();
+        String rest = readRemaining(r);
+        r.reset();
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+        assertEquals("Header", r.getLocalName());
+        assertEquals(rest, readRemaining(r));
+    }
+
+    private String readElement(XMLStreamReader r) throws Exception {
+        StringBuilder s = new StringBuilder();
+        int depth = 0;
+        do {
+            appendEvent(r, s);
+            if (r.getEventType() == XMLStreamReader.START_ELEMENT) {
+                depth++;
+            } else if (r.getEventType() == XMLStreamReader.END_ELEMENT) {
+                depth--;
+            }
+            if (depth > 0) {
+                r.next();
+            }
+        } while (depth > 0);
+        return s.toString();
+    }
+
+    private String readRemaining(XMLStreamReader r) throws Exception {
+        StringBuilder s = new StringBuilder();
+        appendEvent(r, s);
+        while (r.hasNext()) {
+            r.next();
+            appendEvent(r, s);
+        }
+        return s.toString();
+    }
+
+    private void appendEvent(XMLStreamReader r, StringBuilder s) {
+        s.append(r.getEventType()).append(' ');
+        switch (r.getEventType()) {
+            case XMLStreamReader.START_ELEMENT:
+                s.append(r.getName()).append(r.getPrefix());
+                for (int i = 0; i < r.getNamespaceCount(); i++) {
+                    s.append(" xmlns:").append(r.getNamespacePrefix(i)).append('=').append(r.getNamespaceURI(i));
+                }
+                for (int i = 0; i < r.getAttributeCount(); i++) {
+                    s.append(' ').append(r.getAttributeName(i)).append('=').append(r.getAttributeValue(i));
+                }
+                s.append(" x=").append(r.getNamespaceURI("x"));
+                break;
+            case XMLStreamReader.END_ELEMENT:
+                s.append(r.getName()).append(" default=").append(r.getNamespaceURI(""));
+                break;
+            case XMLStreamReader.CHARACTERS:
+            case XMLStreamReader.COMMENT:
+                s.append(r.getText()).append(r.isWhiteSpace());
+                break;
+            case XMLStreamReader.PROCESSING_INSTRUCTION:
+                s.append(r.getPITarget()).append(r.getPIData());
+                break;
+        }
+        s.append('\n');
+    }
+
+    private void moveTo(XMLStreamReader r, String localName) throws Exception {
+        while (r.next() != XMLStreamReader.START_ELEMENT || !localName.equals(r.getLocalName()));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.XMLStreamBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import org.jvnet.staxex.NamespaceContextEx;
+
+/**
+ * Tests the resolution of in-scope namespaces of a {@link StreamReaderBufferProcessor}.
+ */
+public class NamespaceScopeIndexTest extends BaseBufferTestCase {
+    private static final int BINDINGS = 40;
+
+    public NamespaceScopeIndexTest(String testName) {
+        super(testName);
+    }
+
+    public void testManyBindings() throws Exception {
+        StringBuilder s = new StringBuilder("<root");
+        for (int i = 0; i < BINDINGS; i++) {
+            s.append(" xmlns:p").append(i).append("='urn:").append(i).append("'");
+        }
+        s.append("><child xmlns:p7='urn:seven' xmlns:q='urn:3'/><other/></root>");
+
+        StreamReaderBufferProcessor r = createBuffer(s.toString()).readAsXMLStreamReader();
+        r.nextTag();
+        for (int i = 0; i < BINDINGS; i++) {
+            assertEquals("urn:" + i, r.getNamespaceURI("p" + i));
+            assertEquals("p" + i, r.getNamespaceContext().getPrefix("urn:" + i));
+        }
+        assertNull(r.getNamespaceURI("q"));
+        assertEquals(BINDINGS, toMap(r.getNamespaceContext()).size());
+
+        // Shadowing
+        r.nextTag();
+        assertEquals("child", r.getLocalName());
+        NamespaceContext c = r.getNamespaceContext();
+        assertEquals("urn:seven", c.getNamespaceURI("p7"));
+        assertEquals("p7", c.getPrefix("urn:seven"));
+        assertNull(c.getPrefix("urn:7"));
+        assertFalse(c.getPrefixes("urn:7").hasNext());
+        assertEquals("urn:3", c.getNamespaceURI("q"));
+        assertEquals(set("q", "p3"), set(c.getPrefixes("urn:3")));
+
+        Map<String,String> bindings = toMap(r.getNamespaceContext());
+        assertEquals(BINDINGS + 1, bindings.size());
+        assertEquals("urn:seven", bindings.get("p7"));
+        assertEquals("urn:3", bindings.get("q"));
+
+        // The shadowed bindings are restored
+        r.nextTag();
+        r.nextTag();
+        assertEquals("other", r.getLocalName());
+        c = r.getNamespaceContext();
+        assertEquals("urn:7", c.getNamespaceURI("p7"));
+        assertEquals("p7", c.getPrefix("urn:7"));
+        assertNull(c.getPrefix("urn:seven"));
+        assertNull(c.getNamespaceURI("q"));
+        assertEquals(set("p3"), set(c.getPrefixes("urn:3")));
+        assertEquals(BINDINGS, toMap(c).size());
+    }
+
+    public void testDefaultNamespace() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(
+                "<a xmlns='urn:a'><b xmlns=''><c xmlns='urn:c'/></b><d/></a>").readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals("urn:a", r.getNamespaceURI(""));
+        assertEquals("", r.getNamespaceContext().getPrefix("urn:a"));
+        r.nextTag();
+        assertEquals("", r.getNamespaceURI(""));
+        assertNull(r.getNamespaceContext().getPrefix("urn:a"));
+        r.nextTag();
+        assertEquals("urn:c", r.getNamespaceURI(""));
+        r.nextTag();
+        r.nextTag();
+        assertEquals("", r.getNamespaceURI(""));
+        r.nextTag();
+        assertEquals("d", r.getLocalName());
+        assertEquals("urn:a", r.getNamespaceURI(""));
+        assertEquals("", r.getNamespaceContext().getPrefix("urn:a"));
+    }
+
+    public void testXmlPrefixes() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer("<a xmlns:p='urn:p'/>").readAsXMLStreamReader();
+        r.nextTag();
+        NamespaceContext c = r.getNamespaceContext();
+        assertEquals(XMLConstants.XML_NS_URI, c.getNamespaceURI(XMLConstants.XML_NS_PREFIX));
+        assertEquals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, c.getNamespaceURI(XMLConstants.XMLNS_ATTRIBUTE));
+        assertEquals(XMLConstants.XML_NS_PREFIX, c.getPrefix(XMLConstants.XML_NS_URI));
+        assertNull(c.getNamespaceURI("unknown"));
+        assertNull(c.getPrefix("urn:unknown"));
+    }
+
+    public void testReuseOfProcessor() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer("<a xmlns:p='urn:p'><b xmlns:p='urn:q'/></a>").readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        assertEquals("urn:q", r.getNamespaceURI("p"));
+
+        r.setXMLStreamBuffer(createBuffer("<a xmlns:r='urn:r'/>"));
+        r.nextTag();
+        assertNull(r.getNamespaceURI("p"));
+        assertNull(r.getNamespaceContext().getPrefix("urn:q"));
+        assertEquals("urn:r", r.getNamespaceURI("r"));
+        assertEquals("r", r.getNamespaceContext().getPrefix("urn:r"));
+    }
+
+    public void testInscopeNamespaces() throws Exception {
+        StreamReaderBufferProcessor p = createBuffer(
+                "<x xmlns:p='urn:p' xmlns:q='urn:q'><a xmlns:p='urn:p2'><b/></a></x>").readAsXMLStreamReader();
+        p.nextTag();
+        p.nextTag();
+        XMLStreamBuffer b = p.markCurrentElement();
+        assertEquals(2, b.getInscopeNamespaces().size());
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals("urn:p2", r.getNamespaceURI("p"));
+        assertEquals("urn:q", r.getNamespaceURI("q"));
+        assertNull(r.getNamespaceContext().getPrefix("urn:p"));
+        r.nextTag();
+        assertEquals("urn:p2", r.getNamespaceURI("p"));
+        assertEquals("q", r.getNamespaceContext().getPrefix("urn:q"));
+    }
+
+    private Map<String,String> toMap(NamespaceContext c) {
+        Map<String,String> m = new HashMap<String,String>();
+        for (NamespaceContextEx.Binding binding : (NamespaceContextEx)c) {
+            assertNull(m.put(binding.getPrefix(), binding.getNamespaceURI()));
+        }
+        return m;
+    }
+
+    private List<String> set(String... s) {
+        List<String> l = new ArrayList<String>();
+        Collections.addAll(l, s);
+        Collections.sort(l);
+        return l;
+    }
+
+    private List<String> set(Iterator<?> i) {
+        List<String> l = new ArrayList<String>();
+        while (i.hasNext()) {
+            l.add((String)i.next());
+        }
+        Collections.sort(l);
+        return l;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import javax.xml.namespace.QName;
+
+/**
+ * Tests the caching of the QName instances of a {@link StreamReaderBufferProcessor}.
+ */
+public class QNameCacheTest extends BaseBufferTestCase {
+    private static final String DOCUMENT =
+            "<p:list xmlns:p='urn:p' xmlns:q='urn:p'>" +
+            "<p:item id='1'/><p:item id='2'/><q:item id='3'/><item p:id='4'/>" +
+            "</p:list>";
+
+    public QNameCacheTest(String testName) {
+        super(testName);
+    }
+
+    public void testElementNames() throws Exception {
+        verifyElementNames(createBuffer(DOCUMENT));
+    }
+
+    public void testElementNamesSymbolTable() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        b.setSymbolTableEnabled(true);
+        verifyElementNames(createBuffer(b, DOCUMENT));
+    }
+
+    public void testAttributeNames() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        QName first = r.getAttributeName(0);
+        assertEquals(new QName("id"), first);
+        r.nextTag();
+        r.nextTag();
+        assertSame(first, r.getAttributeName(0));
+        r.nextTag();
+        r.nextTag();
+        r.nextTag();
+        r.nextTag();
+
+        QName prefixed = r.getAttributeName(0);
+        assertEquals(new QName("urn:p", "id", "p"), prefixed);
+        assertEquals("p", prefixed.getPrefix());
+    }
+
+    public void testCacheAcrossBuffers() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        QName list = r.getName();
+
+        r.setXMLStreamBuffer(createBuffer(DOCUMENT));
+        r.nextTag();
+        assertEquals(list, r.getName());
+        assertEquals("p", r.getName().getPrefix());
+    }
+
+    public void testInvalidAttributeIndex() throws Exception {
+        StreamReaderBufferProcessor r = createBuffer(DOCUMENT).readAsXMLStreamReader();
+        r.nextTag();
+        try {
+            r.getAttributeName(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private void verifyElementNames(MutableXMLStreamBuffer b) throws Exception {
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        assertEquals(new QName("urn:p", "list", "p"), r.getName());
+
+        r.nextTag();
+        QName first = r.getName();
+        assertEquals(new QName("urn:p", "item", "p"), first);
+        assertEquals("p", first.getPrefix());
+        assertSame(first, r.getName());
+        r.nextTag();
+        assertSame(first, r.getName());
+
+        r.nextTag();
+        QName second = r.getName();
+        assertSame(first, second);
+        r.nextTag();
+        assertSame(first, r.getName());
+
+        // A different prefix is a different instance
+        r.nextTag();
+        QName third = r.getName();
+        assertEquals(first, third);
+        assertNotSame(first, third);
+        assertEquals("q", third.getPrefix());
+
+        r.nextTag();
+        r.nextTag();
+        assertEquals(new QName("item"), r.getName());
+        assertEquals("", r.getName().getPrefix());
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.xml.stream.buffer.stax;
+
+import com.sun.xml.stream.buffer.BaseBufferTestCase;
+import com.sun.xml.stream.buffer.MutableXMLStreamBuffer;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Tests the typed accessors of {@link StreamReaderBufferProcessor} and the
+ * typed values of {@link StreamWriterBufferCreator}.
+ */
+public class TypedValueTest extends BaseBufferTestCase {
+
+    public TypedValueTest(String testName) {
+        super(testName);
+    }
+
+    public void testElementAsNumber() throws Exception {
+        StreamReaderBufferProcessor r = createReader(
+                "<r><i> -42 </i><l>-9223372036854775808</l><d>1.5e3</d><b>1</b><e>x</e></r>");
+        r.nextTag();
+        r.nextTag();
+        assertEquals(-42, r.getElementAsInt());
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+        assertEquals("i", r.getLocalName());
+        r.nextTag();
+        assertEquals(Long.MIN_VALUE, r.getElementAsLong());
+        r.nextTag();
+        assertEquals(1500.0, r.getElementAsDouble());
+        r.nextTag();
+        assertTrue(r.getElementAsBoolean());
+        r.nextTag();
+        try {
+            r.getElementAsInt();
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    public void testSplitText() throws Exception {
+        StreamReaderBufferProcessor r = createReader("<r><i>12<!--c-->34<![CDATA[5]]></i></r>");
+        r.nextTag();
+        r.nextTag();
+        assertEquals(12345, r.getElementAsInt());
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+    }
+
+    public void testNotAtStartElement() throws Exception {
+        StreamReaderBufferProcessor r = createReader("<r><i><j>1</j></i></r>");
+        try {
+            r.getElementAsInt();
+            fail();
+        } catch (XMLStreamException e) {
+        }
+
+        r.nextTag();
+        r.nextTag();
+        try {
+            r.getElementAsInt();
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    public void testParseInt() throws Exception {
+        assertEquals(Integer.MAX_VALUE, parseInt("2147483647"));
+        assertEquals(Integer.MIN_VALUE, parseInt("-2147483648"));
+        assertEquals(7, parseInt("+007"));
+        assertInvalidInt("2147483648");
+        assertInvalidInt("");
+        assertInvalidInt(" ");
+        assertInvalidInt("-");
+        assertInvalidInt("1 2");
+        assertInvalidInt("1.0");
+
+        assertEquals(Long.MAX_VALUE, parseLong("9223372036854775807"));
+        try {
+            parseLong("9223372036854775808");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testParseDouble() throws Exception {
+        String[] values = {
+            "0", "-0", "1", "0.1", ".5", "5.", "-1.25", "3.141592653589793",
+            "1e0", "1E-5", "-2.5e+10", "123456789012345678901", "0.000000000000000000001",
+            "1.7976931348623157E308", "4.9E-324", "0.30000000000000004", "100000000000000000000000"
+        };
+        for (String v : values) {
+            assertEquals(v, Double.doubleToLongBits(Double.parseDouble(v)),
+                    Double.doubleToLongBits(parseDouble(v)));
+        }
+        assertEquals(Double.POSITIVE_INFINITY, parseDouble("INF"));
+        assertEquals(Double.NEGATIVE_INFINITY, parseDouble(" -INF "));
+        assertTrue(Double.isNaN(parseDouble("NaN")));
+
+        String[] invalid = { "", ".", "-", "1e", "1e+", "1.0.0", "Infinity", "1d", "0x10", "1 e3" };
+        for (String v : invalid) {
+            try {
+                parseDouble(v);
+                fail(v);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    public void testParseDoubleRandom() throws Exception {
+        Random random = new Random(17);
+        for (int i = 0; i < 10000; i++) {
+            final double d;
+            switch (i % 3) {
+                case 0:
+                    d = random.nextDouble();
+                    break;
+                case 1:
+                    d = (random.nextInt(2000000) - 1000000) / 1000.0;
+                    break;
+                default:
+                    d = Double.longBitsToDouble(random.nextLong());
+            }
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                continue;
+            }
+            String s = Double.toString(d);
+            assertEquals(s, Double.doubleToLongBits(d), Double.doubleToLongBits(parseDouble(s)));
+        }
+    }
+
+    public void testParseBoolean() throws Exception {
+        char[] ch = " false ".toCharArray();
+        assertFalse(ValueParser.parseBoolean(ch, 0, ch.length));
+        ch = "true".toCharArray();
+        assertTrue(ValueParser.parseBoolean(ch, 0, ch.length));
+        ch = "TRUE".toCharArray();
+        try {
+            ValueParser.parseBoolean(ch, 0, ch.length);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testParseBase64() throws Exception {
+        assertEquals("Hello", new String(parseBase64("SGVsbG8="), "US-ASCII"));
+        assertEquals("Hell", new String(parseBase64("SGVs\n bA=="), "US-ASCII"));
+        assertEquals("Hel", new String(parseBase64("SGVs"), "US-ASCII"));
+        assertEquals(0, parseBase64("").length);
+
+        String[] invalid = { "SGVsbG8", "SGV=bG8=", "SG===", "SGVsbG8*" };
+        for (String v : invalid) {
+            try {
+                parseBase64(v);
+                fail(v);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    public void testElementAsBinary() throws Exception {
+        StreamReaderBufferProcessor r = createReader("<r><b>AAEC/w==</b></r>");
+        r.nextTag();
+        r.nextTag();
+        assertTrue(Arrays.equals(new byte[] {0, 1, 2, (byte)0xFF}, r.getElementAsBinary()));
+    }
+
+    public void testAttributeAsInt() throws Exception {
+        StreamReaderBufferProcessor r = createReader("<r a=' 12 ' b='x'/>");
+        r.nextTag();
+        assertEquals(12, r.getAttributeAsInt(0));
+        try {
+            r.getAttributeAsInt(1);
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    public void testTypedValues() throws Exception {
+        MutableXMLStreamBuffer b = new MutableXMLStreamBuffer();
+        StreamWriterBufferCreator w = new StreamWriterBufferCreator(b);
+        w.writeStartDocument();
+        w.writeStartElement("r");
+        w.writeStartElement("i");
+        w.writeInt(-42);
+        w.writeEndElement();
+        w.writeStartElement("l");
+        w.writeLong(1L << 40);
+        w.writeEndElement();
+        w.writeStartElement("d");
+        w.writeDouble(Double.NEGATIVE_INFINITY);
+        w.writeEndElement();
+        w.writeStartElement("b");
+        w.writeBoolean(true);
+        w.writeEndElement();
+        w.writeStartElement("x");
+        w.writeBinary(new byte[] {1, 2, 3, 4, 5}, 1, 3, null);
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+
+        StreamReaderBufferProcessor r = b.readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        assertEquals(-42, r.getElementAsInt());
+        r.nextTag();
+        assertEquals(1L << 40, r.getElementAsLong());
+        r.nextTag();
+        assertEquals(Double.NEGATIVE_INFINITY, r.getElementAsDouble());
+        r.nextTag();
+        assertTrue(r.getElementAsBoolean());
+        r.nextTag();
+        byte[] bytes = r.getElementAsBinary();
+        assertTrue(Arrays.equals(new byte[] {2, 3, 4}, bytes));
+
+        // Values of another type are parsed from their lexical form
+        r = b.readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        assertEquals(-42.0, r.getElementAsDouble());
+        r.nextTag();
+        try {
+            r.getElementAsInt();
+            fail();
+        } catch (XMLStreamException e) {
+        }
+
+        // Other processors see the lexical form
+        r = b.readAsXMLStreamReader();
+        r.nextTag();
+        r.nextTag();
+        assertEquals("-42", r.getElementText());
+
+        StringWriter s = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(s);
+        b.writeToXMLStreamWriter(writer, false);
+        writer.flush();
+        assertTrue(s.toString(), s.toString().endsWith(
+                "<r><i>-42</i><l>1099511627776</l><d>-INF</d><b>true</b><x>AgME</x></r>"));
+    }
+
+    private int parseInt(String s) {
+        return ValueParser.parseInt(s.toCharArray(), 0, s.length());
+    }
+
+    private long parseLong(String s) {
+        return ValueParser.parseLong(s.toCharArray(), 0, s.length());
+    }
+
+    private double parseDouble(String s) {
+        // Parse from the middle of an array
+        char[] ch = ("9" + s + "9").toCharArray();
+        return ValueParser.parseDouble(ch, 1, s.length());
+    }
+
+    private byte[] parseBase64(String s) {
+        return ValueParser.parseBase64(s.toCharArray(), 0, s.length());
+    }
+
+    private void assertInvalidInt(String s) {
+        try {
+            parseInt(s);
+            fail(s);
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private StreamReaderBufferProcessor createReader(String document) throws Exception {
+        return createBuffer(document).readAsXMLStreamReader();
+    }
+}